@@ -1,6 +1,7 @@
 package com.j256.simplemagic;
 
 import java.io.Serializable;
+import java.util.Set;
 
 /**
  * Information associated with some content, returned by the magic matching code in
@@ -20,8 +21,20 @@ public class ContentInfo implements Serializable {
 	private final String mimeType;
 	private final String[] fileExtensions;
 	private final boolean partial;
+	private final boolean limitExceeded;
+	private final TextEncoding textEncoding;
+	private final Set<LineTerminator> lineTerminators;
 
 	public ContentInfo(String name, String mimeType, String message, boolean partial) {
+		this(name, mimeType, message, partial, false, null, null);
+	}
+
+	public ContentInfo(String name, String mimeType, String message, boolean partial, boolean limitExceeded) {
+		this(name, mimeType, message, partial, limitExceeded, null, null);
+	}
+
+	public ContentInfo(String name, String mimeType, String message, boolean partial, boolean limitExceeded,
+			TextEncoding textEncoding, Set<LineTerminator> lineTerminators) {
 		this.contentType = ContentType.fromMimeType(mimeType);
 		if (this.contentType == ContentType.OTHER) {
 			this.name = name;
@@ -33,6 +46,9 @@ public class ContentInfo implements Serializable {
 		this.mimeType = mimeType;
 		this.message = message;
 		this.partial = partial;
+		this.limitExceeded = limitExceeded;
+		this.textEncoding = textEncoding;
+		this.lineTerminators = lineTerminators;
 	}
 
 	public ContentInfo(ContentType contentType) {
@@ -42,6 +58,9 @@ public class ContentInfo implements Serializable {
 		this.message = null;
 		this.fileExtensions = contentType.getFileExtensions();
 		this.partial = false;
+		this.limitExceeded = false;
+		this.textEncoding = null;
+		this.lineTerminators = null;
 	}
 
 	/**
@@ -92,6 +111,61 @@ public class ContentInfo implements Serializable {
 		return partial;
 	}
 
+	/**
+	 * Whether or not the matching was stopped because one of the {@link MatchLimits} was exceeded. If so then this is
+	 * the best match that was found before it stopped and a later magic entry might have matched better.
+	 */
+	public boolean isLimitExceeded() {
+		return limitExceeded;
+	}
+
+	/**
+	 * Returns the encoding of the text of the content, or {@link TextEncoding#BINARY} if it is not text, or null if it
+	 * was not determined.
+	 */
+	public TextEncoding getTextEncoding() {
+		return textEncoding;
+	}
+
+	/**
+	 * Returns the line terminators that the text of the content uses, which is empty if it has none or is binary, or
+	 * null if they were not determined.
+	 */
+	public Set<LineTerminator> getLineTerminators() {
+		return lineTerminators;
+	}
+
+	/**
+	 * Returns a description of the text of the content like the file(1) command prints such as "ASCII text, with CRLF
+	 * line terminators" or null if the content is binary or the encoding was not determined.
+	 */
+	public String getTextDescription() {
+		if (textEncoding == null || !textEncoding.isText()) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(textEncoding.getDescription()).append(" text");
+		if (lineTerminators == null) {
+			return sb.toString();
+		}
+		if (lineTerminators.isEmpty()) {
+			sb.append(", with no line terminators");
+		} else if (lineTerminators.contains(LineTerminator.CRLF) || lineTerminators.contains(LineTerminator.CR)) {
+			// newlines alone are the default so they are only mentioned with the others
+			sb.append(", with ");
+			boolean first = true;
+			for (LineTerminator terminator : lineTerminators) {
+				if (!first) {
+					sb.append(", ");
+				}
+				sb.append(terminator);
+				first = false;
+			}
+			sb.append(" line terminators");
+		}
+		return sb.toString();
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
@@ -11,10 +11,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPInputStream;
 
 import com.j256.simplemagic.entries.MagicEntries;
+import com.j256.simplemagic.entries.MagicSourceGenerator;
 
 /**
  * <p>
@@ -43,18 +56,54 @@ import com.j256.simplemagic.entries.MagicEntries;
 public class ContentInfoUtil {
 
 	private final static String INTERNAL_MAGIC_FILE = "/magic.gz";
+	/** compiled version of the internal magic file generated by the build, see {@link MagicFileCompiler} */
+	private final static String INTERNAL_COMPILED_MAGIC_FILE = "/magic.bin";
+	/** class generated by the generated-entries profile, see {@link MagicSourceGenerator} */
+	private final static String INTERNAL_GENERATED_CLASS =
+			MagicEntries.class.getPackage().getName() + "." + MagicSourceGenerator.DEFAULT_CLASS_NAME;
+
+	/**
+	 * System property which, if set to true, loads the internal entries from the classes that the generated-entries
+	 * maven profile generates instead of from the compiled magic file. The classes are about 800k so they are only in
+	 * jars built with the profile and the compiled magic file is used if they are missing. They load faster on newer
+	 * JVMs but slower on older ones because of the class loading and verification.
+	 */
+	public final static String GENERATED_ENTRIES_PROPERTY = "com.j256.simplemagic.generatedEntries";
+
+	/**
+	 * System property which, if set to true, only parses the top level lines of the magic files when they are read and
+	 * the lines of their children the first time that each of them matches. This loads a large magic file faster but
+	 * the problems with the lines of the children are reported later, if ever, and the search strings of the children
+	 * are not found in the one pass over the content with the others.
+	 * 
+	 * @see MagicEntries#setLazyParsing(boolean)
+	 */
+	public final static String LAZY_PARSING_PROPERTY = "com.j256.simplemagic.lazyParsing";
 
 	/**
 	 * Number of bytes that the utility class by default reads to determine the content type information.
 	 */
 	public final static int DEFAULT_READ_SIZE = 10 * 1024;
 
-	/** internal entries loaded once if the {@link ContentInfoUtil#MagicUtil()} constructor is used. */
-	private static MagicEntries internalMagicEntries;
+	/**
+	 * Number of times that {@link #warmUp()} runs each of its sample buffers through the magic entries.
+	 */
+	private final static int WARM_UP_ROUNDS = 500;
+
+	/**
+	 * Task which loads the internal entries once if the {@link ContentInfoUtil#ContentInfoUtil()} constructor is used.
+	 * It is run by the first thread that sets it and the other threads wait for it instead of loading them again.
+	 */
+	private final static AtomicReference<FutureTask<MagicEntries>> internalMagicEntries =
+			new AtomicReference<FutureTask<MagicEntries>>();
+
+	/** whether {@link #preload(boolean)} has started its thread */
+	private final static AtomicBoolean preloadStarted = new AtomicBoolean();
 
 	private final MagicEntries magicEntries;
 	private int fileReadSize = DEFAULT_READ_SIZE;
 	private ErrorCallBack errorCallBack;
+	private MatchLimits matchLimits;
 
 	/**
 	 * Construct a magic utility using the internal magic file built into the package.
@@ -67,28 +116,19 @@ public class ContentInfoUtil {
 	}
 
 	/**
-	 * Construct a magic utility using the internal magic file built into the package. This also allows the caller to
-	 * log any errors discovered in the file(s).
+	 * Construct a magic utility using the internal magic file built into the package. The entries of the internal magic
+	 * file are loaded once and shared by the utilities. They are normally loaded from the compiled form that the build
+	 * generates, which has no lines to parse, so the call-back is only called if that is missing and the lines have to
+	 * be parsed, and then only for the utility which loads them first.
 	 * 
 	 * @param errorCallBack
-	 *            Call back which shows any problems with the magic entries loaded.
+	 *            Call back which shows any problems with the lines of the internal magic file if they are parsed.
 	 * @throws IllegalStateException
 	 *             If there was a problem reading the magic entries from the internal magic file.
 	 */
 	public ContentInfoUtil(ErrorCallBack errorCallBack) {
 		this.errorCallBack = errorCallBack;
-		if (internalMagicEntries == null) {
-			try {
-				internalMagicEntries = readEntriesFromResource(INTERNAL_MAGIC_FILE);
-			} catch (IOException e) {
-				throw new IllegalStateException(
-						"Could not load entries from internal magic file: " + INTERNAL_MAGIC_FILE, e);
-			}
-			if (internalMagicEntries == null) {
-				throw new IllegalStateException("Internal magic file not found in class-path: " + INTERNAL_MAGIC_FILE);
-			}
-		}
-		this.magicEntries = internalMagicEntries;
+		this.magicEntries = getInternalMagicEntries();
 	}
 
 	/**
@@ -109,6 +149,7 @@ public class ContentInfoUtil {
 	 * 
 	 * @param fileOrDirectoryOrResourcePath
 	 *            A path which can be a magic file, or a directory of magic files, or a magic file in a resource path.
+	 *            The magic file can also have been compiled by {@link MagicFileCompiler}.
 	 * @param errorCallBack
 	 *            Call back which shows any problems with the magic entries loaded.
 	 * @throws IOException
@@ -187,6 +228,75 @@ public class ContentInfoUtil {
 		this.magicEntries = readEntries(reader);
 	}
 
+	private ContentInfoUtil(MagicEntries magicEntries, int fileReadSize, ErrorCallBack errorCallBack,
+			MatchLimits matchLimits) {
+		this.magicEntries = magicEntries;
+		this.fileReadSize = fileReadSize;
+		this.errorCallBack = errorCallBack;
+		this.matchLimits = matchLimits;
+	}
+
+	/**
+	 * Start loading the internal magic file in a background thread so that it is ready, or closer to ready, when a
+	 * utility is first constructed with {@link #ContentInfoUtil()}. This can be called when an application starts. Only
+	 * the first call starts a thread and the later calls return a future of the same load.
+	 * 
+	 * @return Future of a new magic utility using the internal magic file. Its get method throws an ExecutionException
+	 *         wrapping the IllegalStateException if there was a problem reading the internal magic file.
+	 */
+	public static Future<ContentInfoUtil> preload() {
+		return preload(false);
+	}
+
+	/**
+	 * Start loading the internal magic file in a background thread like {@link #preload()} and then optionally run the
+	 * entries through {@link #warmUp()} in the same thread. The future is done once the entries are loaded, it does not
+	 * wait for the warm-up. Only the first call starts a thread so its warm-up setting is the one used.
+	 * 
+	 * @param warmUp
+	 *            Set to true to warm up the matching code after loading the magic file.
+	 */
+	public static Future<ContentInfoUtil> preload(final boolean warmUp) {
+		final FutureTask<MagicEntries> task = getLoadTask(null);
+		if (preloadStarted.compareAndSet(false, true)) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					// this does nothing if a constructor got to the task first
+					task.run();
+					MagicEntries entries;
+					try {
+						entries = task.get();
+					} catch (Exception e) {
+						// let the next preload or utility try to load them again
+						internalMagicEntries.compareAndSet(task, null);
+						preloadStarted.set(false);
+						return;
+					}
+					if (warmUp) {
+						new ContentInfoUtil(entries, DEFAULT_READ_SIZE, null, null).warmUp();
+					}
+				}
+			}, "simplemagic-preload");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return new PreloadFuture(task);
+	}
+
+	/**
+	 * Run a number of sample buffers of common content types through the magic entries so that the JIT compiles the
+	 * matching code before the first real match instead of during it. This takes a second or so of CPU.
+	 */
+	public void warmUp() {
+		byte[][] buffers = warmUpBuffers();
+		for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+			for (byte[] bytes : buffers) {
+				findMatch(bytes);
+			}
+		}
+	}
+
 	/**
 	 * Return the content type for the file-path or null if none of the magic entries matched.
 	 * 
@@ -204,22 +314,7 @@ public class ContentInfoUtil {
 	 *             If there was a problem reading from the file.
 	 */
 	public ContentInfo findMatch(File file) throws IOException {
-		int readSize = fileReadSize;
-		if (file.length() < readSize) {
-			readSize = (int) file.length();
-		}
-		if (readSize == 0) {
-			return ContentInfo.EMPTY_INFO;
-		}
-		byte[] bytes = new byte[readSize];
-		FileInputStream fis = null;
-		try {
-			fis = new FileInputStream(file);
-			fis.read(bytes);
-		} finally {
-			closeQuietly(fis);
-		}
-		return findMatch(bytes);
+		return findMatch(readFile(file));
 	}
 
 	/**
@@ -236,16 +331,12 @@ public class ContentInfoUtil {
 	 * @see ContentInfoInputStreamWrapper
 	 */
 	public ContentInfo findMatch(InputStream inputStream) throws IOException {
-		byte[] bytes = new byte[fileReadSize];
-		int numRead = inputStream.read(bytes);
-		if (numRead < 0) {
+		byte[] bytes = readInputStream(inputStream);
+		if (bytes == null) {
 			return null;
+		} else {
+			return findMatch(bytes);
 		}
-		if (numRead < bytes.length) {
-			// move the bytes into a smaller array
-			bytes = Arrays.copyOf(bytes, numRead);
-		}
-		return findMatch(bytes);
 	}
 
 	/**
@@ -255,10 +346,153 @@ public class ContentInfoUtil {
 		if (bytes.length == 0) {
 			return ContentInfo.EMPTY_INFO;
 		} else {
-			return magicEntries.findMatch(bytes);
+			return magicEntries.findMatch(bytes, matchLimits);
+		}
+	}
+
+	/**
+	 * Return the content type from the associated bytes or null if none of the magic entries matched. The magic entries
+	 * of the content type that matches the extension of the file-name are tried first and if one of them fully matches
+	 * then it is returned right away. This is a lot faster if the extension is usually right but may return the type of
+	 * the extension where {@link #findMatch(byte[])} would return another type whose entries also match. If the
+	 * extension is unknown or its entries don't fully match then this returns the same as {@link #findMatch(byte[])}.
+	 */
+	public ContentInfo findMatch(byte[] bytes, String fileName) {
+		if (bytes.length == 0) {
+			return ContentInfo.EMPTY_INFO;
+		}
+		ContentInfo extensionInfo = (fileName == null ? null : findExtensionMatch(fileName));
+		if (extensionInfo == null) {
+			return magicEntries.findMatch(bytes, matchLimits);
+		} else {
+			return magicEntries.findMatch(bytes, extensionInfo.getMimeType(), matchLimits);
 		}
 	}
 
+	/**
+	 * Return the mime-type from the associated bytes or null if none of the magic entries matched or if the match has
+	 * no mime-type. This returns the same mime-type as {@link #findMatch(byte[])} but is faster because it does not
+	 * build the full message about the content. If one of the match limits is exceeded then this returns the mime-type
+	 * of the best match so far, if any, so use {@link #findMimeTypeInfo(byte[])} to know if that happened.
+	 */
+	public String findMimeType(byte[] bytes) {
+		ContentInfo info = findMimeTypeInfo(bytes);
+		if (info == null) {
+			return null;
+		} else {
+			return info.getMimeType();
+		}
+	}
+
+	/**
+	 * Return the match for the mime-type from the associated bytes, without its message, or null if none of the magic
+	 * entries matched. The match limits are reported as with {@link #findMatch(byte[])}.
+	 * 
+	 * @see #findMimeType(byte[])
+	 */
+	public ContentInfo findMimeTypeInfo(byte[] bytes) {
+		if (bytes.length == 0) {
+			return ContentInfo.EMPTY_INFO;
+		} else {
+			return magicEntries.findMimeTypeInfo(bytes, matchLimits);
+		}
+	}
+
+	/**
+	 * Return the mime-type for the file or null if none of the magic entries matched or if the match has no mime-type.
+	 * 
+	 * @throws IOException
+	 *             If there was a problem reading from the file.
+	 * @see #findMimeType(byte[])
+	 */
+	public String findMimeType(File file) throws IOException {
+		return findMimeType(readFile(file));
+	}
+
+	/**
+	 * Return the mime-type for the input-stream or null if none of the magic entries matched or if the match has no
+	 * mime-type.
+	 * 
+	 * <p>
+	 * <b>NOTE:</b> The caller is responsible for closing the input-stream.
+	 * </p>
+	 * 
+	 * @throws IOException
+	 *             If there was a problem reading from the input-stream.
+	 * @see #findMimeType(byte[])
+	 */
+	public String findMimeType(InputStream inputStream) throws IOException {
+		byte[] bytes = readInputStream(inputStream);
+		if (bytes == null) {
+			return null;
+		} else {
+			return findMimeType(bytes);
+		}
+	}
+
+	/**
+	 * Return true if the bytes match the magic entries of the expected content type. Only the magic entries which can
+	 * produce its mime-type are tested so this is a lot faster than finding the match and comparing the types. This is
+	 * useful to verify the type that content claims to be, for example from its file extension. It may return true
+	 * even if {@link #findMatch(byte[])} would return another type because one of its entries matched first.
+	 */
+	public boolean matches(byte[] bytes, ContentType expected) {
+		return matchesMimeType(bytes, expected.getMimeType());
+	}
+
+	/**
+	 * Return true if the bytes match the magic entries of the expected mime-type. If one of the match limits is
+	 * exceeded before they match then this returns false, so use {@link #matchMimeType(byte[], String)} to know if that
+	 * happened.
+	 * 
+	 * @see #matches(byte[], ContentType)
+	 */
+	public boolean matchesMimeType(byte[] bytes, String expectedMimeType) {
+		ContentInfo info = matchMimeType(bytes, expectedMimeType);
+		return (info != null && !info.isLimitExceeded());
+	}
+
+	/**
+	 * Return the match, without its message, if the bytes match the magic entries of the expected mime-type or null if
+	 * they don't. If one of the match limits is exceeded before they match then an info of the
+	 * {@link ContentType#OTHER} type is returned with {@link ContentInfo#isLimitExceeded()} set.
+	 * 
+	 * @see #matches(byte[], ContentType)
+	 */
+	public ContentInfo matchMimeType(byte[] bytes, String expectedMimeType) {
+		if (expectedMimeType == null) {
+			return null;
+		} else {
+			return magicEntries.matchMimeType(bytes, expectedMimeType, matchLimits);
+		}
+	}
+
+	/**
+	 * Return a utility which only returns matches with the mime-types of the content types. The magic entries that can't
+	 * produce one of them are never tested so the matching is faster if you are only interested in a couple of types.
+	 * Content that matches another type is treated as if it did not match it. This utility is not changed and the
+	 * magic entries are shared with it.
+	 */
+	public ContentInfoUtil restrictTo(ContentType... contentTypes) {
+		List<String> mimeTypes = new ArrayList<String>(contentTypes.length);
+		for (ContentType contentType : contentTypes) {
+			mimeTypes.add(contentType.getMimeType());
+		}
+		return new ContentInfoUtil(magicEntries.restrictToMimeTypes(mimeTypes), fileReadSize, errorCallBack,
+				matchLimits);
+	}
+
+	/**
+	 * Return a utility which only returns matches with the mime-types. A mime-type ending with '*' such as "image/*"
+	 * matches all of the mime-types that start with it.
+	 * 
+	 * @see #restrictTo(ContentType...)
+	 */
+	public ContentInfoUtil restrictToMimeTypes(String... mimeTypes) {
+		return new ContentInfoUtil(magicEntries.restrictToMimeTypes(Arrays.asList(mimeTypes)), fileReadSize,
+				errorCallBack, matchLimits);
+	}
+
 	/**
 	 * Return the content type if the extension from the file-name matches our internal list. This can either be just
 	 * the extension part or it will look for the last period and take the string after that as the extension.
@@ -311,6 +545,16 @@ public class ContentInfoUtil {
 		this.fileReadSize = fileReadSize;
 	}
 
+	/**
+	 * Set the limits on the work that the find-match, find-mime-type, and matches methods do for each content or null
+	 * for no limits. If one of them is exceeded then the best match so far is returned with
+	 * {@link ContentInfo#isLimitExceeded()} set or, if nothing matched yet, an info of the {@link ContentType#OTHER}
+	 * type.
+	 */
+	public void setMatchLimits(MatchLimits matchLimits) {
+		this.matchLimits = matchLimits;
+	}
+
 	/**
 	 * Set our class which will get called whenever we get a configuration error.
 	 */
@@ -318,27 +562,120 @@ public class ContentInfoUtil {
 		this.errorCallBack = errorCallBack;
 	}
 
+	/**
+	 * Return the internal entries, loading them if this is the first utility to use them. The entries are loaded by
+	 * the thread that first runs the load task and the other threads wait for the task to finish.
+	 */
+	private MagicEntries getInternalMagicEntries() {
+		FutureTask<MagicEntries> task = getLoadTask(errorCallBack);
+		// this does nothing if another thread has already run the task or is running it
+		task.run();
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					// we can't stop a constructor so we keep waiting and interrupt ourselves afterwards
+					interrupted = true;
+				} catch (ExecutionException e) {
+					// let the next utility try to load them again
+					internalMagicEntries.compareAndSet(task, null);
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					} else {
+						throw new IllegalStateException("Could not load entries from internal magic file", cause);
+					}
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Return the task which loads the internal entries. If there is none then a task is set which loads them with the
+	 * error call-back. The task is run by the first thread to call its run method.
+	 */
+	private static FutureTask<MagicEntries> getLoadTask(final ErrorCallBack errorCallBack) {
+		while (true) {
+			FutureTask<MagicEntries> task = internalMagicEntries.get();
+			if (task != null) {
+				return task;
+			}
+			task = new FutureTask<MagicEntries>(new Callable<MagicEntries>() {
+				@Override
+				public MagicEntries call() {
+					return new ContentInfoUtil(null, DEFAULT_READ_SIZE, errorCallBack, null).loadInternalMagicEntries();
+				}
+			});
+			if (internalMagicEntries.compareAndSet(null, task)) {
+				return task;
+			}
+		}
+	}
+
+	private MagicEntries loadInternalMagicEntries() {
+		if (Boolean.getBoolean(GENERATED_ENTRIES_PROPERTY)) {
+			MagicEntries entries = new MagicEntries();
+			if (entries.addGeneratedEntries(INTERNAL_GENERATED_CLASS)) {
+				entries.optimizeFirstBytes();
+				entries.compileNumberTests();
+				return entries;
+			}
+		}
+		MagicEntries entries;
+		try {
+			entries = readEntriesFromResource(INTERNAL_COMPILED_MAGIC_FILE);
+			// the compiled file is missing if the classes were not built by maven
+			if (entries == null) {
+				entries = readEntriesFromResource(INTERNAL_MAGIC_FILE);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not load entries from internal magic file: " + INTERNAL_MAGIC_FILE,
+					e);
+		}
+		if (entries == null) {
+			throw new IllegalStateException("Internal magic file not found in class-path: " + INTERNAL_MAGIC_FILE);
+		}
+		return entries;
+	}
+
 	private MagicEntries readEntriesFromFile(File fileOrDirectory) throws FileNotFoundException, IOException {
 		if (fileOrDirectory.isFile()) {
-			FileReader reader = new FileReader(fileOrDirectory);
+			InputStream stream = new BufferedInputStream(new FileInputStream(fileOrDirectory));
 			try {
-				return readEntries(reader);
+				return readEntries(stream);
 			} finally {
-				closeQuietly(reader);
+				closeQuietly(stream);
 			}
 		} else if (fileOrDirectory.isDirectory()) {
-			MagicEntries entries = new MagicEntries();
+			// the files are read here but their lines are parsed in parallel
+			List<List<String>> fileLines = new ArrayList<List<String>>();
 			for (File subFile : fileOrDirectory.listFiles()) {
-				FileReader fr = new FileReader(subFile);
+				BufferedReader lineReader = new BufferedReader(new FileReader(subFile));
+				List<String> lines = new ArrayList<String>();
 				try {
-					readEntries(entries, fr);
+					String line;
+					while ((line = lineReader.readLine()) != null) {
+						lines.add(line);
+					}
 				} catch (IOException e) {
-					// ignore the file
+					// ignore the rest of the file
 				} finally {
-					closeQuietly(fr);
+					closeQuietly(lineReader);
 				}
+				fileLines.add(lines);
 			}
+			MagicEntries entries = newMagicEntries();
+			entries.readEntries(fileLines, errorCallBack);
 			entries.optimizeFirstBytes();
+			entries.compileNumberTests();
 			return entries;
 		} else {
 			return null;
@@ -350,26 +687,49 @@ public class ContentInfoUtil {
 		if (stream == null) {
 			return null;
 		}
-		Reader reader = null;
 		try {
 			// this suffix test is here for testing purposes so we can generate a simple magic file
 			if (resource.endsWith(".gz")) {
-				reader = new InputStreamReader(new GZIPInputStream(new BufferedInputStream(stream)));
+				stream = new BufferedInputStream(new GZIPInputStream(new BufferedInputStream(stream)));
 			} else {
-				reader = new InputStreamReader(new BufferedInputStream(stream));
+				stream = new BufferedInputStream(stream);
 			}
-			stream = null;
-			return readEntries(reader);
+			return readEntries(stream);
 		} finally {
-			closeQuietly(reader);
 			closeQuietly(stream);
 		}
 	}
 
-	private MagicEntries readEntries(Reader reader) throws IOException {
+	/**
+	 * Read the entries from a buffered stream of either a magic file or a compiled one.
+	 */
+	private MagicEntries readEntries(InputStream stream) throws IOException {
+		if (!MagicEntries.isCompiledEntries(stream)) {
+			return readEntries(new InputStreamReader(stream));
+		}
 		MagicEntries entries = new MagicEntries();
+		entries.readCompiledEntries(stream);
+		entries.optimizeFirstBytes();
+		entries.compileNumberTests();
+		return entries;
+	}
+
+	private MagicEntries readEntries(Reader reader) throws IOException {
+		MagicEntries entries = newMagicEntries();
 		readEntries(entries, reader);
 		entries.optimizeFirstBytes();
+		entries.compileNumberTests();
+		return entries;
+	}
+
+	/**
+	 * Create the entries to read a magic file into.
+	 * 
+	 * @see #LAZY_PARSING_PROPERTY
+	 */
+	private MagicEntries newMagicEntries() {
+		MagicEntries entries = new MagicEntries();
+		entries.setLazyParsing(Boolean.getBoolean(LAZY_PARSING_PROPERTY));
 		return entries;
 	}
 
@@ -382,6 +742,44 @@ public class ContentInfoUtil {
 		}
 	}
 
+	/**
+	 * Read the start of the file that we use for matching.
+	 */
+	private byte[] readFile(File file) throws IOException {
+		int readSize = fileReadSize;
+		if (file.length() < readSize) {
+			readSize = (int) file.length();
+		}
+		byte[] bytes = new byte[readSize];
+		if (readSize == 0) {
+			return bytes;
+		}
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(file);
+			fis.read(bytes);
+		} finally {
+			closeQuietly(fis);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Read the start of the input-stream that we use for matching or null if it is at EOF.
+	 */
+	private byte[] readInputStream(InputStream inputStream) throws IOException {
+		byte[] bytes = new byte[fileReadSize];
+		int numRead = inputStream.read(bytes);
+		if (numRead < 0) {
+			return null;
+		}
+		if (numRead < bytes.length) {
+			// move the bytes into a smaller array
+			bytes = Arrays.copyOf(bytes, numRead);
+		}
+		return bytes;
+	}
+
 	private void closeQuietly(Closeable closeable) {
 		if (closeable != null) {
 			try {
@@ -392,6 +790,85 @@ public class ContentInfoUtil {
 		}
 	}
 
+	/**
+	 * Return the sample buffers for {@link #warmUp()}: the headers of some common binary types, some common text types,
+	 * and random bytes which match nothing.
+	 */
+	private static byte[][] warmUpBuffers() {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 2048) {
+			sb.append("The quick brown fox jumps over the lazy dog and then takes a nap in the sun.\n");
+		}
+		String text = sb.toString();
+		byte[] random = new byte[4096];
+		new Random(0).nextBytes(random);
+		try {
+			return new byte[][] {
+					{ 'G', 'I', 'F', '8', '9', 'a', 0x10, 0, 0x10, 0, (byte) 0x80, 0, 0 },
+					{ (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 0x0d, 'I', 'H', 'D', 'R', 0, 0, 1,
+							0, 0, 0, 1, 0, 8, 2, 0, 0, 0 },
+					{ (byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0, 0, 0x10, 'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1,
+							0, 1, 0, 0 },
+					{ 'P', 'K', 3, 4, 20, 0, 0, 0, 8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 9, 0, 0, 0,
+							'R', 'E', 'A', 'D', 'M', 'E', '.', 'm', 'd' },
+					{ 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 3 },
+					{ 0x7f, 'E', 'L', 'F', 2, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0x3e, 0, 1, 0, 0, 0 },
+					("%PDF-1.4\n" + text).getBytes("US-ASCII"),
+					("<!DOCTYPE html>\n<html><head><title>Page</title></head><body>\n" + text + "</body></html>\n")
+							.getBytes("US-ASCII"),
+					("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<doc>\n" + text + "</doc>\n").getBytes("US-ASCII"),
+					("#!/bin/sh\necho \"" + text + "\"\n").getBytes("US-ASCII"),
+					text.getBytes("US-ASCII"),
+					("caf\u00e9 na\u00efve r\u00e9sum\u00e9\n" + text).getBytes("UTF-8"),
+					random,
+			};
+		} catch (UnsupportedEncodingException e) {
+			// won't happen since the encodings are required to be supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Future of a new utility using the internal entries once the task has loaded them.
+	 */
+	private static class PreloadFuture implements Future<ContentInfoUtil> {
+
+		private final FutureTask<MagicEntries> task;
+
+		PreloadFuture(FutureTask<MagicEntries> task) {
+			this.task = task;
+		}
+
+		/**
+		 * The load is shared by the utilities so it can't be cancelled.
+		 */
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return task.isDone();
+		}
+
+		@Override
+		public ContentInfoUtil get() throws InterruptedException, ExecutionException {
+			return new ContentInfoUtil(task.get(), DEFAULT_READ_SIZE, null, null);
+		}
+
+		@Override
+		public ContentInfoUtil get(long timeout, TimeUnit unit)
+				throws InterruptedException, ExecutionException, TimeoutException {
+			return new ContentInfoUtil(task.get(timeout, unit), DEFAULT_READ_SIZE, null, null);
+		}
+	}
+
 	/**
 	 * Optional call-back which will be made whenever we discover an error while parsing the magic configuration files.
 	 * There are usually tons of badly formed lines and other errors.
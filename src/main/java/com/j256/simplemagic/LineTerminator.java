@@ -0,0 +1,18 @@
+package com.j256.simplemagic;
+
+/**
+ * Line terminators that are used in text content.
+ * 
+ * @author graywatson
+ */
+public enum LineTerminator {
+
+	/** carriage-return followed by a newline as used by Windows */
+	CRLF,
+	/** carriage-return alone as used by old Macs */
+	CR,
+	/** newline alone as used by Unix */
+	LF,
+	// end
+	;
+}
@@ -0,0 +1,99 @@
+package com.j256.simplemagic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import com.j256.simplemagic.ContentInfoUtil.ErrorCallBack;
+import com.j256.simplemagic.entries.MagicEntries;
+import com.j256.simplemagic.entries.MagicSourceGenerator;
+
+/**
+ * Compiles magic files into the binary form that {@link ContentInfoUtil} loads without parsing the magic lines. The
+ * build uses this to generate the compiled version of the internal magic file. The compiled file can also be passed to
+ * the {@link ContentInfoUtil#ContentInfoUtil(String)} constructors instead of the magic files. The generated-entries
+ * maven profile also generates classes which build the internal entries with the {@link MagicSourceGenerator}, see
+ * {@link ContentInfoUtil#GENERATED_ENTRIES_PROPERTY}.
+ * 
+ * <pre>
+ * java -cp simplemagic.jar com.j256.simplemagic.MagicFileCompiler /etc/magic /tmp/magic.bin
+ * </pre>
+ * 
+ * <p>
+ * <b>NOTE:</b> The compiled file is tied to the version of this library that wrote it.
+ * </p>
+ * 
+ * @author graywatson
+ */
+public class MagicFileCompiler {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java " + MagicFileCompiler.class.getName()
+					+ " magic-file-or-directory[.gz] compiled-output-file");
+			System.exit(1);
+		}
+		compile(new File(args[0]), new File(args[1]), null);
+	}
+
+	/**
+	 * Compile a magic file, a gzipped magic file, or a directory of magic files into the compiled output file.
+	 * 
+	 * @param errorCallBack
+	 *            Call back which shows any problems with the magic entries or null if none.
+	 */
+	public static void compile(File fileOrDirectory, File outputFile, ErrorCallBack errorCallBack)
+			throws IOException {
+		MagicEntries entries = readMagicEntries(fileOrDirectory, errorCallBack);
+		File parent = outputFile.getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		OutputStream outputStream = new FileOutputStream(outputFile);
+		try {
+			entries.writeCompiledEntries(outputStream);
+		} finally {
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Read the entries of a magic file, a gzipped magic file, or a directory of magic files without optimizing them.
+	 * 
+	 * @param errorCallBack
+	 *            Call back which shows any problems with the magic entries or null if none.
+	 */
+	public static MagicEntries readMagicEntries(File fileOrDirectory, ErrorCallBack errorCallBack) throws IOException {
+		MagicEntries entries = new MagicEntries();
+		if (fileOrDirectory.isDirectory()) {
+			for (File subFile : fileOrDirectory.listFiles()) {
+				readEntries(entries, subFile, errorCallBack);
+			}
+		} else if (fileOrDirectory.isFile()) {
+			readEntries(entries, fileOrDirectory, errorCallBack);
+		} else {
+			throw new IllegalArgumentException("Magic path specified is not a file or directory: " + fileOrDirectory);
+		}
+		return entries;
+	}
+
+	private static void readEntries(MagicEntries entries, File file, ErrorCallBack errorCallBack) throws IOException {
+		InputStream stream = new BufferedInputStream(new FileInputStream(file));
+		if (file.getName().endsWith(".gz")) {
+			stream = new GZIPInputStream(stream);
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+		try {
+			entries.readEntries(reader, errorCallBack);
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.j256.simplemagic;
+
+/**
+ * Limits on the work done to find the match of some content so that crafted content can't make the detection take too
+ * long. The limits are checked as the magic entries are tested. When one of them is exceeded, the matching stops and
+ * returns the best match that it found so far with {@link ContentInfo#isLimitExceeded()} set. A limit of 0 means that
+ * there is no limit.
+ * 
+ * @author graywatson
+ */
+public class MatchLimits {
+
+	private long maxMillis;
+	private int maxEntries;
+	private long maxScannedBytes;
+
+	public MatchLimits() {
+		// no limits until they are set
+	}
+
+	public MatchLimits(long maxMillis, int maxEntries, long maxScannedBytes) {
+		this.maxMillis = maxMillis;
+		this.maxEntries = maxEntries;
+		this.maxScannedBytes = maxScannedBytes;
+	}
+
+	/**
+	 * Returns the maximum number of milliseconds that the matching can take or 0 if no limit.
+	 */
+	public long getMaxMillis() {
+		return maxMillis;
+	}
+
+	/**
+	 * Set the maximum number of milliseconds that the matching can take.
+	 */
+	public void setMaxMillis(long maxMillis) {
+		this.maxMillis = maxMillis;
+	}
+
+	/**
+	 * Returns the maximum number of magic entries, including the child entries, which can be tested or 0 if no limit.
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Set the maximum number of magic entries, including the child entries, which can be tested.
+	 */
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Returns the maximum number of bytes that the search and regex entries can scan or 0 if no limit.
+	 */
+	public long getMaxScannedBytes() {
+		return maxScannedBytes;
+	}
+
+	/**
+	 * Set the maximum number of bytes that the search and regex entries can scan. A search entry is counted as
+	 * scanning its range, from its offset to the last offset it tries plus the length of its pattern, clipped to the
+	 * end of the content. The long searches of the entries are all found in one pass over the content, which is
+	 * counted once as scanning the whole content, and then such a search entry is counted as scanning the bytes that it
+	 * compares at each hit that it tries. A regex entry is counted as scanning its line.
+	 */
+	public void setMaxScannedBytes(long maxScannedBytes) {
+		this.maxScannedBytes = maxScannedBytes;
+	}
+}
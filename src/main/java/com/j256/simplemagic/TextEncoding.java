@@ -0,0 +1,47 @@
+package com.j256.simplemagic;
+
+/**
+ * Encoding of the text of some content as it is determined from the bytes, similar to what the Unix file(1) command
+ * reports.
+ * 
+ * @author graywatson
+ */
+public enum TextEncoding {
+
+	/** only 7-bit ASCII characters */
+	ASCII("ASCII"),
+	/** valid UTF-8 with some multi-byte characters */
+	UTF_8("UTF-8 Unicode"),
+	/** 16-bit characters starting with a big-endian byte-order mark */
+	UTF_16_BIG_ENDIAN("Big-endian UTF-16 Unicode"),
+	/** 16-bit characters starting with a little-endian byte-order mark */
+	UTF_16_LITTLE_ENDIAN("Little-endian UTF-16 Unicode"),
+	/** 8-bit characters which are all printable in ISO-8859 */
+	ISO_8859("ISO-8859"),
+	/** 8-bit characters with some that are not printable in ISO-8859 such as the Windows code pages */
+	EXTENDED_ASCII("Non-ISO extended-ASCII"),
+	/** has control characters that don't appear in text */
+	BINARY("data"),
+	// end
+	;
+
+	private final String description;
+
+	private TextEncoding(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * Return the description of the encoding as the file(1) command would print it, such as "UTF-8 Unicode".
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Return true if the content is some kind of text.
+	 */
+	public boolean isText() {
+		return (this != BINARY);
+	}
+}
@@ -14,6 +14,12 @@ public interface EndianConverter {
 	 */
 	public Long convertNumber(int offset, byte[] bytes, int size);
 
+	/**
+	 * Convert a number of bytes starting at an offset into a primitive long integer without boxing. The caller must
+	 * have checked that there are enough bytes.
+	 */
+	public long convertLong(int offset, byte[] bytes, int size);
+
 	/**
 	 * Convert a number of bytes starting at an offset into a long integer where the high-bit in each byte is always 0.
 	 * 
@@ -13,12 +13,23 @@ public class LittleEndianConverter implements EndianConverter {
 
 	@Override
 	public Long convertNumber(int offset, byte[] bytes, int size) {
-		return convertNumber(offset, bytes, size, 8, 0xFF);
+		if (offset < 0 || offset + size > bytes.length) {
+			return null;
+		}
+		return convertLong(offset, bytes, size, 8, 0xFF);
+	}
+
+	@Override
+	public long convertLong(int offset, byte[] bytes, int size) {
+		return convertLong(offset, bytes, size, 8, 0xFF);
 	}
 
 	@Override
 	public Long convertId3(int offset, byte[] bytes, int size) {
-		return convertNumber(offset, bytes, size, 7, 0x7F);
+		if (offset < 0 || offset + size > bytes.length) {
+			return null;
+		}
+		return convertLong(offset, bytes, size, 7, 0x7F);
 	}
 
 	@Override
@@ -31,10 +42,7 @@ public class LittleEndianConverter implements EndianConverter {
 		return result;
 	}
 
-	private Long convertNumber(int offset, byte[] bytes, int size, int shift, int mask) {
-		if (offset < 0 || offset + size > bytes.length) {
-			return null;
-		}
+	private long convertLong(int offset, byte[] bytes, int size, int shift, int mask) {
 		long value = 0;
 		for (int i = offset + (size - 1); i >= offset; i--) {
 			value = value << shift | (bytes[i] & mask);
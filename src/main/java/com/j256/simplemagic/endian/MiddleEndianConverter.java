@@ -16,6 +16,12 @@ public class MiddleEndianConverter implements EndianConverter {
 		return convertNumber(offset, bytes, size, 8, 0xFF);
 	}
 
+	@Override
+	public long convertLong(int offset, byte[] bytes, int size) {
+		checkSize(size);
+		return convertLong(offset, bytes, 8, 0xFF);
+	}
+
 	@Override
 	public Long convertId3(int offset, byte[] bytes, int size) {
 		return convertNumber(offset, bytes, size, 7, 0x7F);
@@ -33,12 +39,20 @@ public class MiddleEndianConverter implements EndianConverter {
 	}
 
 	private Long convertNumber(int offset, byte[] bytes, int size, int shift, int mask) {
-		if (size != 4) {
-			throw new UnsupportedOperationException("Middle-endian only supports 4-byte integers");
-		}
+		checkSize(size);
 		if (offset < 0 || offset + size > bytes.length) {
 			return null;
 		}
+		return convertLong(offset, bytes, shift, mask);
+	}
+
+	private void checkSize(int size) {
+		if (size != 4) {
+			throw new UnsupportedOperationException("Middle-endian only supports 4-byte integers");
+		}
+	}
+
+	private long convertLong(int offset, byte[] bytes, int shift, int mask) {
 		long value = 0;
 		// BADC
 		value = (value << shift) | (bytes[offset + 1] & mask);
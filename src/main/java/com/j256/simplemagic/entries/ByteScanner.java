@@ -0,0 +1,43 @@
+package com.j256.simplemagic.entries;
+
+/**
+ * Kernels which scan a range of bytes for the first one of interest. These are byte at a time here so they run on all
+ * of the JVMs that we support. When the build runs on Java 17 or later the jar is a multi-release jar and the class
+ * in META-INF/versions/17 replaces this one on those JVMs with versions which test 8 bytes at a time.
+ * 
+ * @author graywatson
+ */
+public class ByteScanner {
+
+	/**
+	 * For static calls only.
+	 */
+	private ByteScanner() {
+	}
+
+	/**
+	 * Return the offset of the first byte in the range that is not printable ASCII, 0x20 to 0x7E, or the end of the
+	 * range if they all are.
+	 */
+	public static int skipPrintableAscii(byte[] bytes, int start, int end) {
+		for (int i = start; i < end; i++) {
+			int value = bytes[i] & 0xFF;
+			if (value < 0x20 || value >= 0x7F) {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Return the offset of the first byte in the range that is either of the values or -1 if none.
+	 */
+	public static int indexOf(byte[] bytes, int start, int end, byte value, byte otherValue) {
+		for (int i = start; i < end; i++) {
+			if (bytes[i] == value || bytes[i] == otherValue) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,85 @@
+package com.j256.simplemagic.entries;
+
+import java.util.Arrays;
+
+import com.j256.simplemagic.ContentInfoUtil.ErrorCallBack;
+
+/**
+ * Links the entries parsed from the lines of a magic file to their parents in the order of the lines. Each entry is a
+ * child of the last entry with the level above it. The special lines, such as the mime-type, change the entry before
+ * them.
+ * 
+ * @author graywatson
+ */
+class EntryLinker {
+
+	private final MagicEntry[] levelParents = new MagicEntry[MagicEntries.MAX_LEVELS];
+	private final MagicEntryParser parser = new MagicEntryParser();
+	private final ErrorCallBack errorCallBack;
+	private MagicEntry previousEntry;
+
+	EntryLinker(ErrorCallBack errorCallBack) {
+		this.errorCallBack = errorCallBack;
+	}
+
+	/**
+	 * Start the lines of a magic file so the entries are not linked to the ones before them.
+	 */
+	void startFile() {
+		Arrays.fill(levelParents, null);
+		previousEntry = null;
+	}
+
+	/**
+	 * Start the lines of the children of a top level entry.
+	 */
+	void startChildren(MagicEntry parent) {
+		startFile();
+		levelParents[0] = parent;
+		previousEntry = parent;
+	}
+
+	/**
+	 * Apply a special line to the entry before it, if any.
+	 */
+	void addSpecial(String line) {
+		// we need the previous entry because of mime-type, etc. which augment the previous line
+		parser.parse(previousEntry, line, errorCallBack);
+	}
+
+	/**
+	 * Link the entry parsed from the line, if any, to its parent.
+	 * 
+	 * @return True if the entry is a top level entry which has no parent.
+	 */
+	boolean addEntry(String line, MagicEntry entry) {
+		if (entry == null) {
+			return false;
+		}
+		int level = entry.getLevel();
+		if (previousEntry == null && level != 0) {
+			if (errorCallBack != null) {
+				errorCallBack.error(line, "first entry of the file but the level " + level + " should be 0", null);
+			}
+			return false;
+		}
+
+		if (level == 0) {
+			// top level entry
+		} else if (levelParents[level - 1] == null) {
+			if (errorCallBack != null) {
+				errorCallBack.error(line, "entry has level " + level + " but no parent entry with level " + (level - 1),
+						null);
+			}
+			return false;
+		} else {
+			// we are a child of the one above us
+			levelParents[level - 1].addChild(entry);
+		}
+		levelParents[level] = entry;
+		// the deeper levels of the entries before are not parents of the lines after this one
+		Arrays.fill(levelParents, level + 1, levelParents.length, null);
+		previousEntry = entry;
+		return (level == 0);
+	}
+}
@@ -0,0 +1,82 @@
+package com.j256.simplemagic.entries;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.j256.simplemagic.ContentInfoUtil.ErrorCallBack;
+
+/**
+ * Lines of the children of a top level entry which are not parsed until the entry first matches. Most of the entries
+ * of a magic file never match the content that an application sees so this saves parsing their children and the memory
+ * of the parsed entries.
+ * 
+ * <p>
+ * The mime-types of the lines are found when they are read so the entries can still be restricted to mime-types
+ * without parsing their children.
+ * </p>
+ * 
+ * @author graywatson
+ */
+class LazyChildren {
+
+	private final List<String> lines;
+	private final List<String> mimeTypes;
+	private final ErrorCallBack errorCallBack;
+	private boolean compileNumberTests;
+
+	LazyChildren(List<String> lines, List<String> mimeTypes, ErrorCallBack errorCallBack) {
+		this.lines = lines;
+		this.mimeTypes = mimeTypes;
+		this.errorCallBack = errorCallBack;
+	}
+
+	/**
+	 * Parse the lines and add the entries to the parent. The problems with the lines are passed to the error
+	 * call-back now instead of when the entries were read.
+	 */
+	void parse(MagicEntry parent) {
+		EntryLinker linker = new EntryLinker(errorCallBack);
+		linker.startChildren(parent);
+		MagicEntryParser parser = new MagicEntryParser();
+		for (String line : lines) {
+			if (LineChunk.isSpecial(line)) {
+				linker.addSpecial(line);
+			} else {
+				linker.addEntry(line, LineChunk.parseLine(parser, line, errorCallBack));
+			}
+		}
+	}
+
+	/**
+	 * Compile the number tests of the children when they are parsed.
+	 */
+	void setCompileNumberTests() {
+		compileNumberTests = true;
+	}
+
+	boolean isCompileNumberTests() {
+		return compileNumberTests;
+	}
+
+	/**
+	 * Return true if one of the mime-types of the lines is allowed by the filter.
+	 */
+	boolean hasMimeType(MimeTypeFilter filter) {
+		for (String mimeType : mimeTypes) {
+			if (filter.isAllowed(mimeType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add the mime-types of the lines to the set in lowercase.
+	 */
+	void addMimeTypes(Set<String> mimeTypeSet) {
+		for (String mimeType : mimeTypes) {
+			mimeTypeSet.add(mimeType.toLowerCase(Locale.ENGLISH));
+		}
+	}
+}
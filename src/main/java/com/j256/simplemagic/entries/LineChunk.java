@@ -0,0 +1,128 @@
+package com.j256.simplemagic.entries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.j256.simplemagic.ContentInfoUtil.ErrorCallBack;
+
+/**
+ * Lines of a magic file which are parsed into entries together, possibly in parallel with the other chunks of the
+ * file. The entries are then linked to their parents in the order of the lines by {@link MagicEntries} so the result is
+ * the same as if the lines were read one after another.
+ * 
+ * <p>
+ * The special lines, such as the mime-type, change the entry before them so they are left to be parsed when the
+ * entries are linked. The errors of the lines are recorded and passed to the error call-back when the entries are
+ * linked so that it is only called by one thread and in the order of the lines.
+ * </p>
+ * 
+ * @author graywatson
+ */
+class LineChunk implements Callable<LineChunk> {
+
+	private final List<String> lines;
+	private final boolean fileStart;
+	private final MagicEntry[] entries;
+	private final List<LineError> errors = new ArrayList<LineError>();
+	private int lineIndex;
+
+	/**
+	 * @param fileStart
+	 *            True if the lines are the start of a magic file so the entries are not linked to the ones before them.
+	 */
+	LineChunk(List<String> lines, boolean fileStart) {
+		this.lines = lines;
+		this.fileStart = fileStart;
+		this.entries = new MagicEntry[lines.size()];
+	}
+
+	/**
+	 * Parse the lines into entries.
+	 */
+	@Override
+	public LineChunk call() {
+		MagicEntryParser parser = new MagicEntryParser();
+		ErrorCallBack errorRecorder = new ErrorCallBack() {
+			@Override
+			public void error(String line, String details, Exception e) {
+				errors.add(new LineError(lineIndex, line, details, e));
+			}
+		};
+		for (lineIndex = 0; lineIndex < entries.length; lineIndex++) {
+			String line = lines.get(lineIndex);
+			if (isSkipped(line) || isSpecial(line)) {
+				continue;
+			}
+			entries[lineIndex] = parseLine(parser, line, errorRecorder);
+		}
+		return this;
+	}
+
+	/**
+	 * Parse a line that is not special into an entry or return null if it has problems.
+	 */
+	static MagicEntry parseLine(MagicEntryParser parser, String line, ErrorCallBack errorCallBack) {
+		try {
+			return parser.parse(null, line, errorCallBack);
+		} catch (IllegalArgumentException e) {
+			if (errorCallBack != null) {
+				errorCallBack.error(line, e.getMessage(), e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Return true if the line is blank or a comment.
+	 */
+	static boolean isSkipped(String line) {
+		return (line.length() == 0 || line.charAt(0) == '#');
+	}
+
+	/**
+	 * Return true if the line is a special line which changes the entry before it.
+	 */
+	static boolean isSpecial(String line) {
+		return line.startsWith("!:");
+	}
+
+	List<String> getLines() {
+		return lines;
+	}
+
+	boolean isFileStart() {
+		return fileStart;
+	}
+
+	/**
+	 * Return the entry parsed from the line at the index or null if none.
+	 */
+	MagicEntry getEntry(int index) {
+		return entries[index];
+	}
+
+	/**
+	 * Return the errors of the lines, in the order of the lines.
+	 */
+	List<LineError> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Error that was found parsing one of the lines.
+	 */
+	static class LineError {
+		final int lineIndex;
+		final String line;
+		final String details;
+		final Exception exception;
+
+		LineError(int lineIndex, String line, String details, Exception exception) {
+			this.lineIndex = lineIndex;
+			this.line = line;
+			this.details = details;
+			this.exception = exception;
+		}
+	}
+}
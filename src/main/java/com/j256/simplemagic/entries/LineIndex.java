@@ -0,0 +1,91 @@
+package com.j256.simplemagic.entries;
+
+import java.util.Arrays;
+
+/**
+ * Index of the lines of some content which is found once and shared by all of the entries that match lines. The lines
+ * end with a '\n', '\r', or "\r\n" like {@link java.io.BufferedReader#readLine()}. The lines are found as they are
+ * needed so we don't look at the whole content if the entries only need the first couple of lines.
+ * 
+ * @author graywatson
+ */
+public class LineIndex {
+
+	private static final int INITIAL_LINES = 16;
+
+	private byte[] bytes;
+	private int[] lineStarts = new int[INITIAL_LINES];
+	private int[] lineEnds = new int[INITIAL_LINES];
+	private int numLines;
+	/** offset after the last line that we have found */
+	private int nextLineStart;
+
+	public LineIndex() {
+		reset(new byte[0]);
+	}
+
+	public LineIndex(byte[] bytes) {
+		reset(bytes);
+	}
+
+	/**
+	 * Start indexing new content.
+	 */
+	public void reset(byte[] bytes) {
+		this.bytes = bytes;
+		this.numLines = 0;
+		this.nextLineStart = 0;
+	}
+
+	/**
+	 * Return the offset of the start of the line or -1 if there are not that many lines in the content. The first
+	 * line is line 0.
+	 */
+	public int getLineStart(int line) {
+		if (line < 0 || !findLines(line)) {
+			return -1;
+		} else {
+			return lineStarts[line];
+		}
+	}
+
+	/**
+	 * Return the offset after the end of the line, not including its line termination, or -1 if there are not that
+	 * many lines in the content.
+	 */
+	public int getLineEnd(int line) {
+		if (line < 0 || !findLines(line)) {
+			return -1;
+		} else {
+			return lineEnds[line];
+		}
+	}
+
+	/**
+	 * Find the lines up to and including the line and return true if there are that many.
+	 */
+	private boolean findLines(int line) {
+		while (numLines <= line) {
+			if (nextLineStart >= bytes.length) {
+				return false;
+			}
+			int end = nextLineStart;
+			while (end < bytes.length && bytes[end] != '\n' && bytes[end] != '\r') {
+				end++;
+			}
+			if (numLines == lineStarts.length) {
+				lineStarts = Arrays.copyOf(lineStarts, numLines * 2);
+				lineEnds = Arrays.copyOf(lineEnds, numLines * 2);
+			}
+			lineStarts[numLines] = nextLineStart;
+			lineEnds[numLines] = end;
+			numLines++;
+			if (end + 1 < bytes.length && bytes[end] == '\r' && bytes[end + 1] == '\n') {
+				nextLineStart = end + 2;
+			} else {
+				nextLineStart = end + 1;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,18 @@
+package com.j256.simplemagic.entries;
+
+/**
+ * Matcher which matches the lines of the content where the offset of the entry is the number of the line. The lines
+ * are found once per content and shared by all of the entries.
+ * 
+ * @author graywatson
+ */
+public interface LineMatcher extends MagicMatcher {
+
+	/**
+	 * Matches like {@link #isMatch(Object, Long, boolean, Object, MutableOffset, byte[])} but with the index of the
+	 * lines of the bytes.
+	 * 
+	 * @return The extracted-value object, or null if no match.
+	 */
+	public Object isLineMatch(Object testValue, MutableOffset offset, byte[] bytes, LineIndex lineIndex);
+}
@@ -1,12 +1,37 @@
 package com.j256.simplemagic.entries;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import com.j256.simplemagic.ContentInfo;
 import com.j256.simplemagic.ContentInfoUtil.ErrorCallBack;
+import com.j256.simplemagic.ContentType;
+import com.j256.simplemagic.MatchLimits;
+import com.j256.simplemagic.entries.LineChunk.LineError;
+import com.j256.simplemagic.entries.MagicEntry.ContentData;
 import com.j256.simplemagic.logger.Logger;
 import com.j256.simplemagic.logger.LoggerFactory;
 
@@ -17,89 +42,510 @@ import com.j256.simplemagic.logger.LoggerFactory;
  */
 public class MagicEntries {
 
-	private static final int MAX_LEVELS = 20;
+	static final int MAX_LEVELS = 20;
 	private static final int FIRST_BYTE_LIST_SIZE = 256;
+	private static final int NO_FIRST_BYTE = -1;
+	private static final int[] EMPTY_INDEXES = new int[0];
+	/** first bytes of the compiled entries, "SMCE" */
+	private static final int COMPILED_MAGIC_NUMBER = 0x534D4345;
+	private static final int COMPILED_VERSION = 1;
+	/** number of lines which are parsed together when reading the entries in parallel */
+	private static final int CHUNK_LINES = 1000;
+	/** fewer lines than this are not worth starting threads to parse */
+	private static final int PARALLEL_MIN_LINES = 4 * CHUNK_LINES;
 	private static Logger logger = LoggerFactory.getLogger(MagicEntries.class);
 
 	private final List<MagicEntry> entryList = new ArrayList<MagicEntry>();
-	@SuppressWarnings("unchecked")
-	private final List<MagicEntry>[] firstByteEntryLists = new ArrayList[FIRST_BYTE_LIST_SIZE];
+	/** entries indexed by the bytes that the content must start with, null if not optimized */
+	private PrefixTrie prefixTrie;
+	/** entries indexed by the bytes that the content must have at a fixed offset, null if not optimized */
+	private OffsetValueIndex offsetValueIndex;
+	/** first byte of each of the entries or {@link #NO_FIRST_BYTE} if none */
+	private int[] entryFirstBytes;
+	/** indexes of the entries not in the trie which have a first byte, by first byte */
+	private int[][] firstByteEntryIndexes;
+	/** indexes of the entries not in the trie */
+	private int[] unindexedEntryIndexes;
+	/** number of entries in the trie and the offset-value index */
+	private int numIndexedEntries;
+	/** indexes of the entries which can produce each of the lowercase mime-types, null if not optimized */
+	private Map<String, int[]> mimeTypeEntryIndexes;
+	/** all of the indexed searches of the entries, null if not optimized */
+	private MultiSearch multiSearch;
+	/** mime-types that we are restricted to returning or null if not restricted */
+	private MimeTypeFilter mimeTypeFilter;
+	/** whether the children of the top level entries are parsed when the entries first match */
+	private boolean lazyParsing;
+	private final ThreadLocal<MatchContext> matchContexts = new ThreadLocal<MatchContext>() {
+		@Override
+		protected MatchContext initialValue() {
+			return new MatchContext();
+		}
+	};
 
 	/**
 	 * Read the entries so later we can find matches with them.
 	 */
 	public void readEntries(BufferedReader lineReader, ErrorCallBack errorCallBack) throws IOException {
-		final MagicEntry[] levelParents = new MagicEntry[MAX_LEVELS];
-		MagicEntry previousEntry = null;
-		while (true) {
-			String line = lineReader.readLine();
-			if (line == null) {
-				break;
-			}
-			// skip blanks and comments
-			if (line.length() == 0 || line.charAt(0) == '#') {
-				continue;
+		readEntries(Collections.singletonList(readLines(lineReader)), errorCallBack);
+	}
+
+	/**
+	 * Set whether the entries that are read after this only have their top level lines parsed. The lines of the
+	 * children of each top level entry are parsed, in a thread-safe manner, the first time that the entry matches
+	 * which saves the time and memory of parsing the many entries that never match. Default is false.
+	 * 
+	 * <p>
+	 * <b>NOTE:</b> The problems with the lines of the children are not passed to the error call-back until they are
+	 * parsed, which may be on the thread of a later match. Also the search strings of the children that are parsed
+	 * after the entries are optimized are not found in the one pass over the content with the others so each of those
+	 * searches scans the content on its own.
+	 * </p>
+	 */
+	public void setLazyParsing(boolean lazyParsing) {
+		this.lazyParsing = lazyParsing;
+	}
+
+	/**
+	 * Read the entries from the lines of a number of magic files, such as the files of a directory. If there are enough
+	 * lines and processors then they are parsed in parallel by a temporary pool of threads.
+	 */
+	public void readEntries(List<List<String>> fileLines, ErrorCallBack errorCallBack) throws IOException {
+		int numLines = 0;
+		for (List<String> lines : fileLines) {
+			numLines += lines.size();
+		}
+		int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), numLines / CHUNK_LINES + 1);
+		if (numLines < PARALLEL_MIN_LINES || numThreads <= 1) {
+			readEntries(fileLines, errorCallBack, null);
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "simplemagic-loader");
+				// so a stuck load does not keep the JVM from exiting
+				thread.setDaemon(true);
+				return thread;
 			}
+		});
+		try {
+			readEntries(fileLines, errorCallBack, executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
 
-			MagicEntry entry;
+	/**
+	 * Read the entries from the lines of a number of magic files. Each file is split into chunks at its top level
+	 * entries which are parsed by the executor, or by this thread if it is null. The entries are then linked in the
+	 * order of the lines so the matching is the same as if the files were read one after another and the error
+	 * call-back is only called by this thread.
+	 */
+	public void readEntries(List<List<String>> fileLines, ErrorCallBack errorCallBack, ExecutorService executor)
+			throws IOException {
+		if (lazyParsing) {
+			readLazyEntries(fileLines, errorCallBack);
+			return;
+		}
+		List<LineChunk> chunks = splitChunks(fileLines);
+		if (executor == null) {
+			for (LineChunk chunk : chunks) {
+				chunk.call();
+			}
+		} else {
+			List<Future<LineChunk>> futures = new ArrayList<Future<LineChunk>>(chunks.size());
+			for (LineChunk chunk : chunks) {
+				futures.add(executor.submit(chunk));
+			}
 			try {
-				// we need the previous entry because of mime-type, etc. which augment the previous line
-				entry = MagicEntryParser.parseLine(previousEntry, line, errorCallBack);
-				if (entry == null) {
-					continue;
+				for (Future<LineChunk> future : futures) {
+					future.get();
 				}
-			} catch (IllegalArgumentException e) {
-				if (errorCallBack != null) {
-					errorCallBack.error(line, e.getMessage(), e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while parsing the magic entries");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				} else {
+					throw new IOException("Could not parse the magic entries", cause);
+				}
+			} finally {
+				for (Future<LineChunk> future : futures) {
+					future.cancel(true);
 				}
-				continue;
 			}
+		}
+		linkChunks(chunks, errorCallBack);
+	}
 
-			int level = entry.getLevel();
-			if (previousEntry == null && level != 0) {
-				if (errorCallBack != null) {
-					errorCallBack.error(line, "first entry of the file but the level " + level + " should be 0", null);
+	/**
+	 * Split the lines of the files into chunks of at least {@link #CHUNK_LINES} lines which start with a top level
+	 * entry.
+	 */
+	private List<LineChunk> splitChunks(List<List<String>> fileLines) {
+		List<LineChunk> chunks = new ArrayList<LineChunk>();
+		for (List<String> lines : fileLines) {
+			int start = 0;
+			for (int i = CHUNK_LINES; i < lines.size(); i++) {
+				String line = lines.get(i);
+				if (i - start >= CHUNK_LINES && !LineChunk.isSkipped(line) && line.charAt(0) != '>'
+						&& !LineChunk.isSpecial(line)) {
+					chunks.add(new LineChunk(lines.subList(start, i), start == 0));
+					start = i;
 				}
-				continue;
 			}
+			chunks.add(new LineChunk(lines.subList(start, lines.size()), start == 0));
+		}
+		return chunks;
+	}
 
-			if (level == 0) {
-				// top level entry
-				entryList.add(entry);
-			} else if (levelParents[level - 1] == null) {
-				if (errorCallBack != null) {
-					errorCallBack.error(line,
-							"entry has level " + level + " but no parent entry with level " + (level - 1), null);
+	/**
+	 * Link the entries of the chunks to their parents, in the order of their lines, and report the errors of the lines.
+	 */
+	private void linkChunks(List<LineChunk> chunks, ErrorCallBack errorCallBack) {
+		EntryLinker linker = new EntryLinker(errorCallBack);
+		for (LineChunk chunk : chunks) {
+			if (chunk.isFileStart()) {
+				linker.startFile();
+			}
+			List<String> lines = chunk.getLines();
+			Iterator<LineError> errorIterator = chunk.getErrors().iterator();
+			LineError nextError = (errorIterator.hasNext() ? errorIterator.next() : null);
+			for (int i = 0; i < lines.size(); i++) {
+				while (nextError != null && nextError.lineIndex == i) {
+					if (errorCallBack != null) {
+						errorCallBack.error(nextError.line, nextError.details, nextError.exception);
+					}
+					nextError = (errorIterator.hasNext() ? errorIterator.next() : null);
 				}
-				continue;
-			} else {
-				// we are a child of the one above us
-				levelParents[level - 1].addChild(entry);
+				String line = lines.get(i);
+				if (LineChunk.isSpecial(line)) {
+					linker.addSpecial(line);
+				} else {
+					MagicEntry entry = chunk.getEntry(i);
+					if (linker.addEntry(line, entry)) {
+						entryList.add(entry);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the top level entries from the lines and leave the lines of their children to be parsed when the entries
+	 * first match. The lines before the first top level entry of a file, and the special lines right after a top level
+	 * entry, are handled right away so the entries are the same as if all of the lines were parsed.
+	 */
+	private void readLazyEntries(List<List<String>> fileLines, ErrorCallBack errorCallBack) {
+		EntryLinker linker = new EntryLinker(errorCallBack);
+		MagicEntryParser parser = new MagicEntryParser();
+		for (List<String> lines : fileLines) {
+			linker.startFile();
+			MagicEntry parent = null;
+			List<String> childLines = null;
+			List<String> mimeTypes = null;
+			for (String line : lines) {
+				if (LineChunk.isSkipped(line)) {
+					continue;
+				}
+				boolean special = LineChunk.isSpecial(line);
+				if (parent == null || (special && childLines.isEmpty())) {
+					// no top level entry to put the line under or a special line for the top level entry
+					if (special) {
+						linker.addSpecial(line);
+					} else {
+						MagicEntry entry = LineChunk.parseLine(parser, line, errorCallBack);
+						if (linker.addEntry(line, entry)) {
+							entryList.add(entry);
+							parent = entry;
+							childLines = new ArrayList<String>();
+							mimeTypes = new ArrayList<String>();
+						}
+					}
+				} else if (!special && parser.isTopLevel(line)) {
+					MagicEntry entry = LineChunk.parseLine(parser, line, errorCallBack);
+					// if the line has problems then the children after it go with the entry before
+					if (linker.addEntry(line, entry)) {
+						setLazyChildren(parent, childLines, mimeTypes, errorCallBack);
+						entryList.add(entry);
+						parent = entry;
+						childLines = new ArrayList<String>();
+						mimeTypes = new ArrayList<String>();
+					}
+				} else {
+					childLines.add(line);
+					String mimeType = parser.parseMimeType(line);
+					if (mimeType != null) {
+						mimeTypes.add(mimeType);
+					}
+				}
+			}
+			if (parent != null) {
+				setLazyChildren(parent, childLines, mimeTypes, errorCallBack);
+			}
+		}
+	}
+
+	private void setLazyChildren(MagicEntry parent, List<String> childLines, List<String> mimeTypes,
+			ErrorCallBack errorCallBack) {
+		if (!childLines.isEmpty()) {
+			parent.setLazyChildren(new LazyChildren(childLines, mimeTypes, errorCallBack));
+		}
+	}
+
+	private List<String> readLines(BufferedReader lineReader) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		while (true) {
+			String line = lineReader.readLine();
+			if (line == null) {
+				return lines;
+			}
+			// skip blanks and comments
+			if (!LineChunk.isSkipped(line)) {
+				lines.add(line);
 			}
-			levelParents[level] = entry;
-			previousEntry = entry;
 		}
 	}
 
 	/**
-	 * Optimize the magic entries by removing the first-bytes information into their own lists
+	 * Add an entry from the classes generated by {@link MagicSourceGenerator} as a top level entry or as a child of the
+	 * last entry of the level above it.
+	 */
+	MagicEntry addEntry(MagicEntry[] levelParents, MagicEntry entry) {
+		int level = entry.getLevel();
+		if (level == 0) {
+			entryList.add(entry);
+		} else {
+			levelParents[level - 1].addChild(entry);
+		}
+		levelParents[level] = entry;
+		return entry;
+	}
+
+	/**
+	 * Add the entries which are built by the classes that {@link MagicSourceGenerator} generated so they don't have to
+	 * be read at all.
+	 * 
+	 * @return False if the generated class is not in the class-path.
+	 */
+	public boolean addGeneratedEntries(String className) {
+		Class<?> clazz;
+		try {
+			clazz = Class.forName(className);
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+		try {
+			clazz.getDeclaredMethod(MagicSourceGenerator.ADD_ENTRIES_METHOD, MagicEntries.class).invoke(null, this);
+		} catch (Exception e) {
+			throw new IllegalStateException("Could not add the entries from the generated class: " + className, e);
+		}
+		return true;
+	}
+
+	/**
+	 * Write the entries in a compiled binary form which {@link #readCompiledEntries(InputStream)} can read back without
+	 * parsing any magic lines. The test values of the entries are written already decoded. The indexes are not written
+	 * so the entries still need to be optimized after they are read.
+	 */
+	public void writeCompiledEntries(OutputStream outputStream) throws IOException {
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+		output.writeInt(COMPILED_MAGIC_NUMBER);
+		output.writeInt(COMPILED_VERSION);
+		output.writeInt(entryList.size());
+		for (MagicEntry entry : entryList) {
+			entry.write(output);
+		}
+		output.flush();
+	}
+
+	/**
+	 * Read the entries that were written by {@link #writeCompiledEntries(OutputStream)}.
+	 * 
+	 * @throws IOException
+	 *             If the stream does not have compiled entries or they were written by a different version.
+	 */
+	public void readCompiledEntries(InputStream inputStream) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+		if (input.readInt() != COMPILED_MAGIC_NUMBER) {
+			throw new IOException("Stream does not have compiled magic entries");
+		}
+		int version = input.readInt();
+		if (version != COMPILED_VERSION) {
+			throw new IOException("Compiled magic entries are version " + version + " but we can only read version "
+					+ COMPILED_VERSION);
+		}
+		int numEntries = input.readInt();
+		for (int i = 0; i < numEntries; i++) {
+			entryList.add(MagicEntry.read(input));
+		}
+	}
+
+	/**
+	 * Return true if the stream starts with compiled entries. The stream must support mark and reset and is reset back
+	 * to where it was.
+	 */
+	public static boolean isCompiledEntries(InputStream inputStream) throws IOException {
+		inputStream.mark(4);
+		try {
+			int magicNumber = 0;
+			for (int i = 0; i < 4; i++) {
+				int value = inputStream.read();
+				if (value < 0) {
+					return false;
+				}
+				magicNumber = (magicNumber << 8) | value;
+			}
+			return (magicNumber == COMPILED_MAGIC_NUMBER);
+		} finally {
+			inputStream.reset();
+		}
+	}
+
+	/**
+	 * Generate the Java source of classes which build the entries, see {@link MagicSourceGenerator}.
+	 */
+	void writeSource(MagicSourceGenerator generator) throws IOException {
+		for (MagicEntry entry : entryList) {
+			entry.writeSource(generator);
+		}
+	}
+
+	/**
+	 * Optimize the magic entries by indexing them by their first byte and by the bytes that the content has to start
+	 * with, or has to have at a fixed offset, for them to match. The children of the entries are also indexed.
 	 */
 	public void optimizeFirstBytes() {
-		// now we post process the entries and remove the first byte ones we can optimize
+		MultiSearch search = new MultiSearch();
 		for (MagicEntry entry : entryList) {
+			entry.optimizeChildren();
+			// this may parse the lazy children so it is done before their searches are added
+			entry.findTextOnly();
+			entry.addSearches(search);
+		}
+		search.build();
+		this.multiSearch = search;
+		indexEntries();
+	}
+
+	/**
+	 * Return a copy of these entries which only returns matches whose mime-type is one of the mime-types. A mime-type
+	 * ending with '*' such as "image/*" matches all of the mime-types that start with it. The top-level entries that
+	 * can't produce one of the mime-types are left out of the copy so they are never tested. If an entry matches but
+	 * its mime-type is not one of the mime-types then we keep looking as if it did not match.
+	 * 
+	 * <p>
+	 * The entries themselves are shared with this object so this should be called after they have been optimized.
+	 * </p>
+	 */
+	public MagicEntries restrictToMimeTypes(Collection<String> mimeTypes) {
+		MimeTypeFilter filter = new MimeTypeFilter(mimeTypes);
+		MagicEntries restricted = new MagicEntries();
+		for (MagicEntry entry : entryList) {
+			if (entry.hasMimeType(filter)) {
+				restricted.entryList.add(entry);
+			}
+		}
+		restricted.mimeTypeFilter = filter;
+		restricted.multiSearch = multiSearch;
+		if (prefixTrie != null) {
+			restricted.indexEntries();
+		}
+		return restricted;
+	}
+
+	/**
+	 * Index the top-level entries by their first byte and by the bytes that they require.
+	 */
+	private void indexEntries() {
+		PrefixTrie trie = new PrefixTrie();
+		OffsetValueIndex offsetIndex = new OffsetValueIndex();
+		int[] firstBytes = new int[entryList.size()];
+		List<Integer> unindexedList = new ArrayList<Integer>();
+		@SuppressWarnings("unchecked")
+		List<Integer>[] firstByteLists = new List[FIRST_BYTE_LIST_SIZE];
+		for (int i = 0; i < entryList.size(); i++) {
+			MagicEntry entry = entryList.get(i);
 			byte[] startingBytes = entry.getStartsWithByte();
 			if (startingBytes == null || startingBytes.length == 0) {
-				continue;
+				firstBytes[i] = NO_FIRST_BYTE;
+			} else {
+				firstBytes[i] = (0xFF & startingBytes[0]);
 			}
-			int index = (0xFF & startingBytes[0]);
-			if (firstByteEntryLists[index] == null) {
-				firstByteEntryLists[index] = new ArrayList<MagicEntry>();
+			byte[] requiredBytes = entry.getRequiredStartingBytes();
+			if (requiredBytes != null && requiredBytes.length > 0) {
+				// the entry can only match if the content starts with these bytes
+				trie.add(requiredBytes, i);
+			} else if (entry.getFixedOffset() >= 0 && (requiredBytes = entry.getRequiredBytes()) != null
+					&& requiredBytes.length > 0) {
+				// the entry can only match if the content has these bytes at the offset
+				offsetIndex.add(entry.getFixedOffset(), false, requiredBytes, entry.getRequiredBytesMask(), i);
+			} else if (firstBytes[i] == NO_FIRST_BYTE) {
+				unindexedList.add(i);
+			} else {
+				/*
+				 * We put an entry in the first-byte list but need to leave it in the main list because there may be
+				 * optional characters or != or > comparisons in the match
+				 */
+				List<Integer> firstByteList = firstByteLists[firstBytes[i]];
+				if (firstByteList == null) {
+					firstByteList = new ArrayList<Integer>();
+					firstByteLists[firstBytes[i]] = firstByteList;
+				}
+				firstByteList.add(i);
+				unindexedList.add(i);
+			}
+		}
+		int[][] firstByteIndexes = new int[FIRST_BYTE_LIST_SIZE][];
+		for (int i = 0; i < FIRST_BYTE_LIST_SIZE; i++) {
+			firstByteIndexes[i] = toIntArray(firstByteLists[i]);
+		}
+		this.entryFirstBytes = firstBytes;
+		this.firstByteEntryIndexes = firstByteIndexes;
+		this.unindexedEntryIndexes = toIntArray(unindexedList);
+		this.numIndexedEntries = entryList.size() - unindexedList.size();
+		this.offsetValueIndex = offsetIndex;
+		this.prefixTrie = trie;
+		this.mimeTypeEntryIndexes = buildMimeTypeIndexes();
+	}
+
+	/**
+	 * Build the map from the mime-types to the indexes of the entries which can produce them.
+	 */
+	private Map<String, int[]> buildMimeTypeIndexes() {
+		Map<String, List<Integer>> mimeTypeLists = new HashMap<String, List<Integer>>();
+		Set<String> mimeTypes = new HashSet<String>();
+		for (int i = 0; i < entryList.size(); i++) {
+			mimeTypes.clear();
+			entryList.get(i).addMimeTypes(mimeTypes);
+			for (String mimeType : mimeTypes) {
+				List<Integer> indexList = mimeTypeLists.get(mimeType);
+				if (indexList == null) {
+					indexList = new ArrayList<Integer>();
+					mimeTypeLists.put(mimeType, indexList);
+				}
+				indexList.add(i);
 			}
-			firstByteEntryLists[index].add(entry);
-			/*
-			 * We put an entry in the first-byte list but need to leave it in the main list because there may be
-			 * optional characters or != or > comparisons in the match
-			 */
+		}
+		Map<String, int[]> mimeTypeIndexes = new HashMap<String, int[]>();
+		for (Map.Entry<String, List<Integer>> mapEntry : mimeTypeLists.entrySet()) {
+			mimeTypeIndexes.put(mapEntry.getKey(), toIntArray(mapEntry.getValue()));
+		}
+		return mimeTypeIndexes;
+	}
+
+	/**
+	 * Compile the number tests of the entries so the ones that don't match are rejected without boxing or going
+	 * through the matchers. The entries fall back to the matchers for everything else.
+	 */
+	public void compileNumberTests() {
+		for (MagicEntry entry : entryList) {
+			entry.compileNumberTests();
 		}
 	}
 
@@ -107,49 +553,312 @@ public class MagicEntries {
 	 * Find and return a match for the associated bytes.
 	 */
 	public ContentInfo findMatch(byte[] bytes) {
+		return findMatch(bytes, false, null);
+	}
+
+	/**
+	 * Find and return a match for the associated bytes but stop if one of the limits is exceeded. In that case the best
+	 * match found so far is returned with its limit-exceeded flag set, or an info of the {@link ContentType#OTHER}
+	 * type if nothing matched yet.
+	 */
+	public ContentInfo findMatch(byte[] bytes, MatchLimits limits) {
+		return findMatch(bytes, false, limits);
+	}
+
+	/**
+	 * Find and return the mime-type for the associated bytes or null if no match or the match has no mime-type. This
+	 * returns the same mime-type as {@link #findMatch(byte[])} but is faster because the messages are not rendered and
+	 * the child entries which can't change the mime-type are skipped.
+	 */
+	public String findMimeType(byte[] bytes) {
+		ContentInfo info = findMimeTypeInfo(bytes, null);
+		if (info == null) {
+			return null;
+		} else {
+			return info.getMimeType();
+		}
+	}
+
+	/**
+	 * Same as {@link #findMimeType(byte[])} but returns the match, without its message, and stops if one of the limits
+	 * is exceeded.
+	 * 
+	 * @see #findMatch(byte[], MatchLimits)
+	 */
+	public ContentInfo findMimeTypeInfo(byte[] bytes, MatchLimits limits) {
+		return findMatch(bytes, true, limits);
+	}
+
+	/**
+	 * Return true if the bytes match one of the entries which can produce the mime-type and the match has the
+	 * mime-type. Only those entries are tested so this is a lot faster than finding the match and comparing its
+	 * mime-type. It may return true when {@link #findMatch(byte[])} returns another type because an earlier entry
+	 * matched.
+	 */
+	public boolean matchesMimeType(byte[] bytes, String mimeType) {
+		return (matchMimeType(bytes, mimeType, null) != null);
+	}
+
+	/**
+	 * Same as {@link #matchesMimeType(byte[], String)} but returns the match, without its message, or null if none and
+	 * stops if one of the limits is exceeded. In that case, if nothing matched yet, an info of the
+	 * {@link ContentType#OTHER} type is returned with its limit-exceeded flag set.
+	 * 
+	 * @see #findMatch(byte[], MatchLimits)
+	 */
+	public ContentInfo matchMimeType(byte[] bytes, String mimeType, MatchLimits limits) {
 		if (bytes.length == 0) {
-			return ContentInfo.EMPTY_INFO;
+			if (ContentInfo.EMPTY_INFO.getMimeType().equalsIgnoreCase(mimeType)) {
+				return ContentInfo.EMPTY_INFO;
+			} else {
+				return null;
+			}
 		}
-		// first do the start byte ones
-		int index = (0xFF & bytes[0]);
-		if (index < firstByteEntryLists.length && firstByteEntryLists[index] != null) {
-			ContentInfo info = findMatch(bytes, firstByteEntryLists[index]);
-			if (info != null) {
-				// this seems to be right to return even if only a partial match here
-				return info;
+		MatchContext context = matchContexts.get();
+		context.startMatch(true, multiSearch);
+		context.setLimits(limits);
+		for (int index : getMimeTypeEntryIndexes(mimeType)) {
+			ContentData data = entryList.get(index).matchBytes(bytes, context);
+			if (data != null && isMimeType(data, mimeType)) {
+				return finishMatch(data.toContentInfo(), bytes, context);
+			}
+			if (context.isLimitExceeded()) {
+				break;
 			}
 		}
-		return findMatch(bytes, entryList);
+		return finishMatch(null, bytes, context);
 	}
 
-	private ContentInfo findMatch(byte[] bytes, List<MagicEntry> entryList) {
-		ContentInfo partialMatchInfo = null;
-		for (MagicEntry entry : entryList) {
-			ContentInfo info = entry.matchBytes(bytes);
+	/**
+	 * Find and return a match for the associated bytes but first try the entries which can produce the mime-type that
+	 * we expect, from the file extension for example. If one of them fully matches with that mime-type then it is
+	 * returned without testing the other entries even if {@link #findMatch(byte[])} would have returned the match of
+	 * an earlier entry. Otherwise this returns the same as {@link #findMatch(byte[])}.
+	 */
+	public ContentInfo findMatch(byte[] bytes, String expectedMimeType) {
+		return findMatch(bytes, expectedMimeType, null);
+	}
+
+	/**
+	 * Same as {@link #findMatch(byte[], String)} but stops if one of the limits is exceeded.
+	 * 
+	 * @see #findMatch(byte[], MatchLimits)
+	 */
+	public ContentInfo findMatch(byte[] bytes, String expectedMimeType, MatchLimits limits) {
+		if (bytes.length == 0 || expectedMimeType == null) {
+			return findMatch(bytes, false, limits);
+		}
+		MatchContext context = matchContexts.get();
+		context.startMatch(false, multiSearch);
+		context.setLimits(limits);
+		for (int index : getMimeTypeEntryIndexes(expectedMimeType)) {
+			MagicEntry entry = entryList.get(index);
+			ContentData data = entry.matchBytes(bytes, context);
+			if (data != null && !data.partial && isMimeType(data, expectedMimeType)) {
+				logger.trace("found full match of expected mime-type {}", entry);
+				return finishMatch(data.toContentInfo(), bytes, context);
+			}
+			if (context.isLimitExceeded()) {
+				return finishMatch(null, bytes, context);
+			}
+		}
+		return finishMatch(findMatch(bytes, context), bytes, context);
+	}
+
+	private boolean isMimeType(ContentData data, String mimeType) {
+		return (mimeType.equalsIgnoreCase(data.mimeType)
+				&& (mimeTypeFilter == null || mimeTypeFilter.isAllowed(data.mimeType)));
+	}
+
+	/**
+	 * Return the indexes of the entries which can produce the mime-type.
+	 */
+	private int[] getMimeTypeEntryIndexes(String mimeType) {
+		String lowerMimeType = mimeType.toLowerCase(Locale.ENGLISH);
+		if (mimeTypeEntryIndexes == null) {
+			return findMimeTypeEntryIndexes(lowerMimeType);
+		}
+		int[] indexes = mimeTypeEntryIndexes.get(lowerMimeType);
+		if (indexes == null) {
+			return EMPTY_INDEXES;
+		} else {
+			return indexes;
+		}
+	}
+
+	private int[] findMimeTypeEntryIndexes(String mimeType) {
+		MimeTypeFilter filter = new MimeTypeFilter(Collections.singletonList(mimeType));
+		List<Integer> indexList = new ArrayList<Integer>();
+		for (int i = 0; i < entryList.size(); i++) {
+			if (entryList.get(i).hasMimeType(filter)) {
+				indexList.add(i);
+			}
+		}
+		return toIntArray(indexList);
+	}
+
+	private ContentInfo findMatch(byte[] bytes, boolean mimeTypeOnly, MatchLimits limits) {
+		if (bytes.length == 0) {
+			return ContentInfo.EMPTY_INFO;
+		}
+		MatchContext context = matchContexts.get();
+		context.startMatch(mimeTypeOnly, multiSearch);
+		context.setLimits(limits);
+		return finishMatch(findMatch(bytes, context), bytes, context);
+	}
+
+	/**
+	 * Return the info with its limit-exceeded flag set if the matching was stopped by one of the limits and with the
+	 * encoding of the text of the bytes if we are not just looking for the mime-type.
+	 */
+	private ContentInfo finishMatch(ContentInfo info, byte[] bytes, MatchContext context) {
+		context.finishMatch();
+		if (context.isLimitExceeded()) {
+			logger.trace("match limits exceeded");
 			if (info == null) {
-				continue;
+				info = new ContentInfo(ContentType.OTHER.getSimpleName(), null, null, true, true);
 			}
-			if (!info.isPartial()) {
-				// first non-partial wins
-				logger.trace("found full match {}", entry);
-				logger.trace("returning full match {}", info);
-				return info;
-			} else if (partialMatchInfo == null) {
-				// first partial match may win
-				logger.trace("found partial match {}", entry);
-				partialMatchInfo = info;
-				// continue to look for non-partial
+		} else if (info == null) {
+			return null;
+		}
+		if (context.mimeTypeOnly) {
+			if (context.isLimitExceeded()) {
+				return new ContentInfo(info.getName(), info.getMimeType(), info.getMessage(), info.isPartial(), true);
 			} else {
-				// already have a partial match
+				return info;
 			}
 		}
-		if (partialMatchInfo == null) {
-			logger.trace("returning no match");
-			return null;
+		TextClassifier classifier = context.getTextClassifier(bytes);
+		return new ContentInfo(info.getName(), info.getMimeType(), info.getMessage(), info.isPartial(),
+				context.isLimitExceeded(), classifier.getEncoding(), classifier.getLineTerminators());
+	}
+
+	private ContentInfo findMatch(byte[] bytes, MatchContext context) {
+		if (prefixTrie == null) {
+			// not optimized so we have to go through all of them
+			ContentInfo info = null;
+			for (MagicEntry entry : entryList) {
+				info = betterMatch(info, entry, entry.matchBytes(bytes, context));
+				if ((info != null && !info.isPartial()) || context.isLimitExceeded()) {
+					break;
+				}
+			}
+			return logMatch(info);
+		}
+
+		/*
+		 * NOTE: the indexed entries whose required bytes are not in the content can never match so we never test them.
+		 * Each of the entries that we do test is tested only once.
+		 */
+		int firstByte = (0xFF & bytes[0]);
+		int[] indexedIndexes = context.getIndexedIndexes(numIndexedEntries);
+		int numIndexed = prefixTrie.findIndexes(bytes, indexedIndexes, 0);
+		numIndexed = offsetValueIndex.findIndexes(bytes, 0, indexedIndexes, numIndexed);
+		Arrays.sort(indexedIndexes, 0, numIndexed);
+		int[] indexes = context.getEntryIndexes(entryList.size());
+
+		// first do the start byte ones
+		int numIndexes =
+				mergeIndexes(indexedIndexes, numIndexed, firstByteEntryIndexes[firstByte], firstByte, true, indexes);
+		ContentInfo info = findMatch(bytes, indexes, numIndexes, context);
+		if (info != null || context.isLimitExceeded()) {
+			// this seems to be right to return even if only a partial match here
+			return info;
+		}
+
+		// now do all of the others in order
+		numIndexes = mergeIndexes(indexedIndexes, numIndexed, unindexedEntryIndexes, firstByte, false, indexes);
+		return findMatch(bytes, indexes, numIndexes, context);
+	}
+
+	private ContentInfo findMatch(byte[] bytes, int[] entryIndexes, int numIndexes, MatchContext context) {
+		ContentInfo info = null;
+		for (int i = 0; i < numIndexes; i++) {
+			MagicEntry entry = entryList.get(entryIndexes[i]);
+			info = betterMatch(info, entry, entry.matchBytes(bytes, context));
+			if ((info != null && !info.isPartial()) || context.isLimitExceeded()) {
+				break;
+			}
+		}
+		return logMatch(info);
+	}
+
+	/**
+	 * Return the better of our previous match and the data from the entry. We only create the content info from the
+	 * data if it is going to be used.
+	 */
+	private ContentInfo betterMatch(ContentInfo partialMatchInfo, MagicEntry entry, ContentData data) {
+		if (data == null) {
+			return partialMatchInfo;
+		}
+		if (mimeTypeFilter != null && !mimeTypeFilter.isAllowed(data.mimeType)) {
+			logger.trace("ignoring match with other mime-type {}", entry);
+			return partialMatchInfo;
+		}
+		if (!data.partial) {
+			// first non-partial wins
+			logger.trace("found full match {}", entry);
+			return data.toContentInfo();
+		} else if (partialMatchInfo == null) {
+			// first partial match may win
+			logger.trace("found partial match {}", entry);
+			// continue to look for non-partial
+			return data.toContentInfo();
 		} else {
-			// returning first partial match
-			logger.trace("returning partial match {}", partialMatchInfo);
+			// already have a partial match
 			return partialMatchInfo;
 		}
 	}
+
+	private ContentInfo logMatch(ContentInfo info) {
+		if (info == null) {
+			logger.trace("returning no match");
+		} else if (info.isPartial()) {
+			// returning first partial match
+			logger.trace("returning partial match {}", info);
+		} else {
+			logger.trace("returning full match {}", info);
+		}
+		return info;
+	}
+
+	/**
+	 * Merge the ascending entry indexes from the first array, up to its length, and the second array into the result
+	 * array, keeping the ones that are in the first-byte list (or not) according to the first-byte argument. Returns
+	 * the number of indexes in the result.
+	 */
+	private int mergeIndexes(int[] first, int firstLength, int[] second, int firstByte, boolean inFirstByteList,
+			int[] result) {
+		int firstPos = 0;
+		int secondPos = 0;
+		int count = 0;
+		while (true) {
+			int index;
+			if (firstPos < firstLength) {
+				if (secondPos < second.length && second[secondPos] < first[firstPos]) {
+					index = second[secondPos++];
+				} else {
+					index = first[firstPos++];
+				}
+			} else if (secondPos < second.length) {
+				index = second[secondPos++];
+			} else {
+				return count;
+			}
+			if ((entryFirstBytes[index] == firstByte) == inFirstByteList) {
+				result[count++] = index;
+			}
+		}
+	}
+
+	private static int[] toIntArray(List<Integer> list) {
+		if (list == null) {
+			return EMPTY_INDEXES;
+		}
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
 }
@@ -1,13 +1,24 @@
 package com.j256.simplemagic.entries;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 import com.j256.simplemagic.ContentInfo;
 import com.j256.simplemagic.endian.EndianConverter;
+import com.j256.simplemagic.endian.EndianType;
 import com.j256.simplemagic.entries.MagicMatcher.MutableOffset;
 import com.j256.simplemagic.logger.Logger;
 import com.j256.simplemagic.logger.LoggerFactory;
+import com.j256.simplemagic.types.BaseLongType;
+import com.j256.simplemagic.types.CompiledNumberTest;
+import com.j256.simplemagic.types.DefaultType;
+import com.j256.simplemagic.types.RegexType;
 
 /**
  * Representation of a line of information from the magic (5) format. A number of methods are package protected because
@@ -17,7 +28,21 @@ import com.j256.simplemagic.logger.LoggerFactory;
  */
 public class MagicEntry {
 
-	private static final String UNKNOWN_NAME = "unknown";
+	static final String UNKNOWN_NAME = "unknown";
+	private static final int TEXT_TESTS = 1;
+	private static final int BINARY_TESTS = 2;
+	/** flags of the fields of the entry in the compiled magic entries */
+	private static final int UNKNOWN_NAME_FLAG = 1 << 0;
+	private static final int ADD_OFFSET_FLAG = 1 << 1;
+	private static final int OFFSET_INFO_FLAG = 1 << 2;
+	private static final int AND_VALUE_FLAG = 1 << 3;
+	private static final int UNSIGNED_FLAG = 1 << 4;
+	private static final int TEST_VALUE_FLAG = 1 << 5;
+	private static final int SPACE_PREFIX_FLAG = 1 << 6;
+	private static final int CLEAR_FORMAT_FLAG = 1 << 7;
+	private static final int FORMATTER_FLAG = 1 << 8;
+	private static final int MIME_TYPE_FLAG = 1 << 9;
+	private static final int OPTIONAL_FLAG = 1 << 10;
 	private static Logger logger = LoggerFactory.getLogger(MagicEntry.class);
 
 	private final String name;
@@ -36,6 +61,20 @@ public class MagicEntry {
 
 	/** if this entry matches then check the children entry(s) which may provide more content type details */
 	private List<MagicEntry> children;
+	/** lines of the children which are parsed when this entry first matches, null if they have been parsed */
+	private volatile LazyChildren lazyChildren;
+	/** children indexed by the bytes they require, null if not optimized */
+	private OffsetValueIndex childIndex;
+	/** whether or not each of the children is in the child index */
+	private boolean[] indexedChildren;
+	/** compiled version of our test, null if not compiled */
+	private CompiledNumberTest compiledTest;
+	/** id of our search in the multi-search of the entries or -1 if none */
+	private int searchId = -1;
+	/** highest level with a mime-type in this entry and its children, -1 if none, or MAX_VALUE if not optimized */
+	private int maxMimeTypeLevel = Integer.MAX_VALUE;
+	/** if all of the tests of this entry and its children are text tests so it is not tested on binary content */
+	private boolean textOnly;
 	private String mimeType;
 	private boolean optional;
 
@@ -60,14 +99,18 @@ public class MagicEntry {
 	}
 
 	/**
-	 * Returns the content type associated with the bytes or null if it does not match.
+	 * Returns the data about the content associated with the bytes or null if it does not match. The data belongs to
+	 * the context and is overwritten by the next match.
 	 */
-	ContentInfo matchBytes(byte[] bytes) {
-		ContentData data = matchBytes(bytes, 0, 0, null);
+	ContentData matchBytes(byte[] bytes, MatchContext context) {
+		if (textOnly && !context.getTextClassifier(bytes).getEncoding().isText()) {
+			return null;
+		}
+		ContentData data = matchBytes(bytes, 0, 0, null, context);
 		if (data == null || data.name == UNKNOWN_NAME) {
 			return null;
 		} else {
-			return new ContentInfo(data.name, data.mimeType, data.sb.toString(), data.partial);
+			return data;
 		}
 	}
 
@@ -87,6 +130,55 @@ public class MagicEntry {
 		}
 	}
 
+	/**
+	 * Return the bytes that the content must start with for this entry to match or null if none.
+	 */
+	byte[] getRequiredStartingBytes() {
+		if (getFixedOffset() != 0 || andValue != null) {
+			return null;
+		} else {
+			return getRequiredBytes();
+		}
+	}
+
+	/**
+	 * Return the offset of the entry or -1 if it is not fixed but comes from the content or the parent's match.
+	 */
+	int getFixedOffset() {
+		if (offsetInfo != null || addOffset || offset < 0) {
+			return -1;
+		} else {
+			return offset;
+		}
+	}
+
+	/**
+	 * Return the bytes that the content must have at the offset, after being and-ed with
+	 * {@link #getRequiredBytesMask()}, for this entry to match or null if none. The offset may be relative to the
+	 * parent's match but it must not come from the content.
+	 */
+	byte[] getRequiredBytes() {
+		if (offsetInfo != null || offset < 0 || testValue == null) {
+			return null;
+		} else if (andValue != null && matcher.getRequiredBytesMask(andValue) == null) {
+			// we can't mask the content to compare it
+			return null;
+		} else {
+			return matcher.getRequiredStartingBytes(testValue);
+		}
+	}
+
+	/**
+	 * Return the mask for the bytes from the content or null if none.
+	 */
+	byte[] getRequiredBytesMask() {
+		if (andValue == null) {
+			return null;
+		} else {
+			return matcher.getRequiredBytesMask(andValue);
+		}
+	}
+
 	boolean isOptional() {
 		return optional;
 	}
@@ -95,6 +187,10 @@ public class MagicEntry {
 		this.optional = optional;
 	}
 
+	void setLazyChildren(LazyChildren lazyChildren) {
+		this.lazyChildren = lazyChildren;
+	}
+
 	void addChild(MagicEntry child) {
 		if (children == null) {
 			children = new ArrayList<MagicEntry>();
@@ -102,6 +198,307 @@ public class MagicEntry {
 		children.add(child);
 	}
 
+	/**
+	 * Write this entry and its children to the compiled magic entries. Only the fields from the magic file are written
+	 * and not the optimizations which are redone when the entries are read.
+	 */
+	void write(DataOutput output) throws IOException {
+		parseLazyChildren();
+		String typeStr = MagicType.stringFromMatcher(matcher);
+		if (typeStr == null) {
+			throw new IOException("Entry has a matcher which is not one of the magic types: " + this);
+		}
+		int flags = 0;
+		if (name == UNKNOWN_NAME) {
+			flags |= UNKNOWN_NAME_FLAG;
+		}
+		if (addOffset) {
+			flags |= ADD_OFFSET_FLAG;
+		}
+		if (offsetInfo != null) {
+			flags |= OFFSET_INFO_FLAG;
+		}
+		if (andValue != null) {
+			flags |= AND_VALUE_FLAG;
+		}
+		if (unsignedType) {
+			flags |= UNSIGNED_FLAG;
+		}
+		if (testValue != null) {
+			flags |= TEST_VALUE_FLAG;
+		}
+		if (formatSpacePrefix) {
+			flags |= SPACE_PREFIX_FLAG;
+		}
+		if (clearFormat) {
+			flags |= CLEAR_FORMAT_FLAG;
+		}
+		if (formatter != null) {
+			flags |= FORMATTER_FLAG;
+		}
+		if (mimeType != null) {
+			flags |= MIME_TYPE_FLAG;
+		}
+		if (optional) {
+			flags |= OPTIONAL_FLAG;
+		}
+		output.writeShort(flags);
+		if (name != UNKNOWN_NAME) {
+			output.writeUTF(name);
+		}
+		output.writeByte(level);
+		output.writeInt(offset);
+		if (offsetInfo != null) {
+			offsetInfo.write(output);
+		}
+		output.writeUTF(typeStr);
+		if (andValue != null) {
+			output.writeLong(andValue);
+		}
+		if (testValue != null) {
+			matcher.writeTestValue(testValue, output);
+		}
+		if (formatter != null) {
+			formatter.write(output);
+		}
+		if (mimeType != null) {
+			output.writeUTF(mimeType);
+		}
+		if (children == null) {
+			output.writeInt(0);
+		} else {
+			output.writeInt(children.size());
+			for (MagicEntry child : children) {
+				child.write(output);
+			}
+		}
+	}
+
+	/**
+	 * Read an entry and its children that were written by {@link #write(DataOutput)}.
+	 */
+	static MagicEntry read(DataInput input) throws IOException {
+		int flags = input.readShort();
+		String name;
+		if ((flags & UNKNOWN_NAME_FLAG) != 0) {
+			name = UNKNOWN_NAME;
+		} else {
+			name = input.readUTF();
+		}
+		int level = input.readByte();
+		int offset = input.readInt();
+		OffsetInfo offsetInfo = null;
+		if ((flags & OFFSET_INFO_FLAG) != 0) {
+			offsetInfo = OffsetInfo.read(input);
+		}
+		String typeStr = input.readUTF();
+		MagicMatcher matcher = MagicType.matcherfromString(typeStr);
+		if (matcher == null) {
+			throw new IOException("Unknown magic type in the compiled entries: " + typeStr);
+		}
+		Long andValue = null;
+		if ((flags & AND_VALUE_FLAG) != 0) {
+			andValue = input.readLong();
+		}
+		Object testValue = null;
+		if ((flags & TEST_VALUE_FLAG) != 0) {
+			testValue = matcher.readTestValue(input);
+		}
+		MagicFormatter formatter = null;
+		if ((flags & FORMATTER_FLAG) != 0) {
+			formatter = MagicFormatter.read(input);
+		}
+		MagicEntry entry = new MagicEntry(name, level, (flags & ADD_OFFSET_FLAG) != 0, offset, offsetInfo, matcher,
+				andValue, (flags & UNSIGNED_FLAG) != 0, testValue, (flags & SPACE_PREFIX_FLAG) != 0,
+				(flags & CLEAR_FORMAT_FLAG) != 0, formatter);
+		if ((flags & MIME_TYPE_FLAG) != 0) {
+			entry.mimeType = input.readUTF();
+		}
+		entry.optional = ((flags & OPTIONAL_FLAG) != 0);
+		int numChildren = input.readInt();
+		for (int i = 0; i < numChildren; i++) {
+			entry.addChild(read(input));
+		}
+		return entry;
+	}
+
+	/**
+	 * Add the Java source which creates this entry and its children to the generated classes. Like
+	 * {@link #write(DataOutput)}, only the fields from the magic file are generated.
+	 */
+	void writeSource(MagicSourceGenerator generator) throws IOException {
+		parseLazyChildren();
+		String typeStr = MagicType.stringFromMatcher(matcher);
+		if (typeStr == null) {
+			throw new IOException("Entry has a matcher which is not one of the magic types: " + this);
+		}
+		String matcherSource = generator.getMatcherSource(typeStr);
+		String nameSource;
+		if (name == UNKNOWN_NAME) {
+			nameSource = "MagicEntry.UNKNOWN_NAME";
+		} else if (UNKNOWN_NAME.equals(name)) {
+			// a name from the magic file must not be the same object as the unknown name
+			nameSource = "new String(\"" + UNKNOWN_NAME + "\")";
+		} else {
+			nameSource = MagicSourceGenerator.stringSource(name);
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("new MagicEntry(").append(nameSource);
+		sb.append(", ").append(level).append(", ").append(addOffset).append(", ").append(offset);
+		sb.append(", ").append(offsetInfo == null ? "null" : offsetInfo.getSource());
+		sb.append(", ").append(matcherSource);
+		sb.append(", ").append(andValue == null ? "null" : andValue + "L");
+		sb.append(", ").append(unsignedType);
+		sb.append(", ").append(testValue == null ? "null" : matcher.getTestValueSource(testValue, matcherSource));
+		sb.append(", ").append(formatSpacePrefix).append(", ").append(clearFormat);
+		sb.append(", ").append(formatter == null ? "null" : formatter.getSource());
+		sb.append(')');
+		generator.addEntry(sb.toString(), mimeType, optional);
+		if (children != null) {
+			for (MagicEntry child : children) {
+				child.writeSource(generator);
+			}
+		}
+	}
+
+	/**
+	 * Optimize the children of this entry and their children by indexing the ones that require particular bytes so
+	 * the siblings that test the same offset are handled with one extraction and lookup.
+	 */
+	void optimizeChildren() {
+		if (lazyChildren != null) {
+			// they are optimized when they are parsed
+			return;
+		}
+		indexChildren();
+	}
+
+	private void indexChildren() {
+		maxMimeTypeLevel = (mimeType == null ? -1 : level);
+		if (children == null) {
+			return;
+		}
+		OffsetValueIndex index = new OffsetValueIndex();
+		boolean[] indexed = new boolean[children.size()];
+		boolean found = false;
+		for (int i = 0; i < indexed.length; i++) {
+			MagicEntry child = children.get(i);
+			child.optimizeChildren();
+			maxMimeTypeLevel = Math.max(maxMimeTypeLevel, child.maxMimeTypeLevel);
+			byte[] requiredBytes = child.getRequiredBytes();
+			if (requiredBytes != null && requiredBytes.length > 0) {
+				index.add(child.offset, child.addOffset, requiredBytes, child.getRequiredBytesMask(), i);
+				indexed[i] = true;
+				found = true;
+			}
+		}
+		if (found) {
+			this.childIndex = index;
+			this.indexedChildren = indexed;
+		}
+	}
+
+	/**
+	 * Compile the number test of this entry and its children so the entries that don't match are rejected without
+	 * going through the matcher. The matcher is still used if the compiled test matches or if the type can't be
+	 * compiled.
+	 */
+	void compileNumberTests() {
+		if (testValue != null && matcher instanceof BaseLongType) {
+			compiledTest = ((BaseLongType) matcher).compileNumberTest(testValue, andValue, unsignedType);
+		}
+		LazyChildren lazy = lazyChildren;
+		if (lazy != null) {
+			lazy.setCompileNumberTests();
+		} else if (children != null) {
+			for (MagicEntry child : children) {
+				child.compileNumberTests();
+			}
+		}
+	}
+
+	/**
+	 * Mark the entry as text-only if all of the tests of the entry and its children are text tests. The default tests
+	 * don't count either way.
+	 */
+	void findTextOnly() {
+		textOnly = (findTestKinds() == TEXT_TESTS);
+	}
+
+	private int findTestKinds() {
+		int kinds = 0;
+		if (matcher instanceof TextMatcher && testValue != null && ((TextMatcher) matcher).isTextTest(testValue)) {
+			kinds |= TEXT_TESTS;
+		} else if (!(matcher instanceof DefaultType)) {
+			kinds |= BINARY_TESTS;
+		}
+		if (kinds != BINARY_TESTS) {
+			// the children decide if we are text-only
+			parseLazyChildren();
+		}
+		if (children != null) {
+			for (MagicEntry child : children) {
+				kinds |= child.findTestKinds();
+			}
+		}
+		return kinds;
+	}
+
+	/**
+	 * Add the search strings of this entry and its children to the multi-search so the content is scanned for all of
+	 * them at once.
+	 */
+	void addSearches(MultiSearch multiSearch) {
+		if (testValue != null && matcher instanceof SearchMatcher) {
+			String searchString = ((SearchMatcher) matcher).getSearchString(testValue);
+			if (searchString != null) {
+				searchId = multiSearch.add(searchString);
+			}
+		}
+		if (children != null) {
+			for (MagicEntry child : children) {
+				child.addSearches(multiSearch);
+			}
+		}
+	}
+
+	/**
+	 * Return true if this entry or one of its children has a mime-type that is allowed by the filter.
+	 */
+	boolean hasMimeType(MimeTypeFilter filter) {
+		if (filter.isAllowed(mimeType)) {
+			return true;
+		}
+		LazyChildren lazy = lazyChildren;
+		if (lazy != null) {
+			return lazy.hasMimeType(filter);
+		} else if (children != null) {
+			for (MagicEntry child : children) {
+				if (child.hasMimeType(filter)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add the mime-types of this entry and its children to the set in lowercase.
+	 */
+	void addMimeTypes(Set<String> mimeTypes) {
+		if (mimeType != null) {
+			mimeTypes.add(mimeType.toLowerCase(Locale.ENGLISH));
+		}
+		LazyChildren lazy = lazyChildren;
+		if (lazy != null) {
+			lazy.addMimeTypes(mimeTypes);
+		} else if (children != null) {
+			for (MagicEntry child : children) {
+				child.addMimeTypes(mimeTypes);
+			}
+		}
+	}
+
 	void setMimeType(String mimeType) {
 		this.mimeType = mimeType;
 	}
@@ -128,7 +525,11 @@ public class MagicEntry {
 	/**
 	 * Main processing method which can go recursive.
 	 */
-	private ContentData matchBytes(byte[] bytes, int prevOffset, int level, ContentData contentData) {
+	private ContentData matchBytes(byte[] bytes, int prevOffset, int level, ContentData contentData,
+			MatchContext context) {
+		if (!context.testEntry()) {
+			return null;
+		}
 		int offset = this.offset;
 		if (offsetInfo != null) {
 			offset = offsetInfo.getOffset(bytes);
@@ -136,14 +537,52 @@ public class MagicEntry {
 		if (addOffset) {
 			offset = prevOffset + offset;
 		}
-		boolean required = (testValue == null && formatter != null);
-		Object val = matcher.extractValueFromBytes(offset, bytes, required);
-		if (val == null) {
+		if (compiledTest != null && !compiledTest.isMatch(bytes, offset)) {
 			return null;
 		}
+		Object val;
+		if (testValue != null && matcher instanceof BaseLongType) {
+			// the value is extracted when it is matched below so it is only boxed if it matches
+			if (!((BaseLongType) matcher).canExtract(offset, bytes)) {
+				return null;
+			}
+			val = null;
+		} else {
+			boolean required = (testValue == null && formatter != null);
+			val = matcher.extractValueFromBytes(offset, bytes, required);
+			if (val == null) {
+				return null;
+			}
+		}
 		if (testValue != null) {
-			MutableOffset mutableOffset = new MutableOffset(offset);
-			val = matcher.isMatch(testValue, andValue, unsignedType, val, mutableOffset, bytes);
+			MutableOffset mutableOffset = context.mutableOffset;
+			mutableOffset.offset = offset;
+			if (searchId >= 0) {
+				MultiSearch.Hits hits = context.getSearchHits(bytes);
+				if (hits == null) {
+					return null;
+				}
+				val = ((SearchMatcher) matcher).isSearchMatch(testValue, mutableOffset, bytes,
+						hits.getOffsets(searchId), hits.getNumOffsets(searchId), context);
+			} else if (matcher instanceof SearchMatcher) {
+				val = ((SearchMatcher) matcher).isSearchMatch(testValue, mutableOffset, bytes, context);
+			} else if (matcher instanceof LineMatcher) {
+				LineIndex lineIndex = context.getLineIndex(bytes);
+				int lineStart = lineIndex.getLineStart(offset);
+				if (lineStart >= 0 && !context.scanBytes(lineIndex.getLineEnd(offset) - lineStart)) {
+					return null;
+				}
+				if (matcher instanceof RegexType) {
+					val = ((RegexType) matcher).isLineMatch(testValue, mutableOffset, bytes, lineIndex,
+							context.regexState);
+				} else {
+					val = ((LineMatcher) matcher).isLineMatch(testValue, mutableOffset, bytes, lineIndex);
+				}
+			} else if (matcher instanceof BaseLongType) {
+				val = ((BaseLongType) matcher).isLongMatch(testValue, andValue, unsignedType, mutableOffset, bytes);
+			} else {
+				val = matcher.isMatch(testValue, andValue, unsignedType, val, mutableOffset, bytes);
+			}
 			if (val == null) {
 				return null;
 			}
@@ -151,11 +590,12 @@ public class MagicEntry {
 		}
 
 		if (contentData == null) {
-			contentData = new ContentData(name, mimeType, level);
+			contentData = context.contentData;
+			contentData.reset(name, mimeType, level);
 			// default is a child didn't match, set a partial so the matcher will keep looking
 			contentData.partial = true;
 		}
-		if (formatter != null) {
+		if (formatter != null && !context.mimeTypeOnly) {
 			if (clearFormat) {
 				contentData.sb.setLength(0);
 			}
@@ -167,18 +607,41 @@ public class MagicEntry {
 		}
 		logger.trace("matched data: {}: {}", this, contentData);
 
+		parseLazyChildren();
 		if (children == null) {
 			// no children so we have a full match and can set partial to false
 			contentData.partial = false;
 		} else {
 			// run through the children to add more content-type details
 			boolean allOptional = true;
-			for (MagicEntry entry : children) {
+			/*
+			 * The indexed children that aren't in the candidates can't match so we skip them. The candidates are in
+			 * ascending order like the children.
+			 */
+			int[] candidates = null;
+			int numCandidates = 0;
+			int candidatePos = 0;
+			if (childIndex != null) {
+				candidates = context.getChildIndexes(level, children.size());
+				numCandidates = childIndex.findIndexes(bytes, offset, candidates, 0);
+				Arrays.sort(candidates, 0, numCandidates);
+			}
+			for (int i = 0; i < children.size(); i++) {
+				MagicEntry entry = children.get(i);
 				if (!entry.isOptional()) {
 					allOptional = false;
 				}
+				if (candidates != null && indexedChildren[i]) {
+					if (candidatePos >= numCandidates || candidates[candidatePos] != i) {
+						continue;
+					}
+					candidatePos++;
+				}
+				if (context.mimeTypeOnly && !entry.canChangeMimeTypeMatch(contentData)) {
+					continue;
+				}
 				// goes recursive here
-				entry.matchBytes(bytes, offset, level + 1, contentData);
+				entry.matchBytes(bytes, offset, level + 1, contentData, context);
 				// we continue to match to see if we can add additional children info to the name
 			}
 			if (allOptional) {
@@ -208,6 +671,45 @@ public class MagicEntry {
 		return contentData;
 	}
 
+	/**
+	 * Parse the lines of the children if they have not been parsed yet. Other threads may be matching this entry so the
+	 * children are only published when they are all parsed and optimized.
+	 */
+	private void parseLazyChildren() {
+		LazyChildren lazy = lazyChildren;
+		if (lazy == null) {
+			return;
+		}
+		synchronized (lazy) {
+			if (lazyChildren == null) {
+				// another thread parsed them while we waited
+				return;
+			}
+			lazy.parse(this);
+			if (lazy.isCompileNumberTests() && children != null) {
+				for (MagicEntry child : children) {
+					child.compileNumberTests();
+				}
+			}
+			indexChildren();
+			lazyChildren = null;
+		}
+	}
+
+	/**
+	 * Return true if matching this entry could change the name, mime-type, or partial flag of the content data.
+	 * Otherwise it only would add to the message so it can be skipped when we are only looking for the mime-type.
+	 */
+	private boolean canChangeMimeTypeMatch(ContentData contentData) {
+		if (contentData.partial || contentData.name == UNKNOWN_NAME) {
+			return true;
+		} else if (contentData.mimeType == null) {
+			return (maxMimeTypeLevel >= 0);
+		} else {
+			return (maxMimeTypeLevel > contentData.mimeTypeLevel);
+		}
+	}
+
 	/**
 	 * Internal processing data about the content.
 	 */
@@ -218,10 +720,22 @@ public class MagicEntry {
 		int mimeTypeLevel;
 		final StringBuilder sb = new StringBuilder();
 
-		private ContentData(String name, String mimeType, int mimeTypeLevel) {
+		/**
+		 * Reset the data so it can be reused for another match.
+		 */
+		void reset(String name, String mimeType, int mimeTypeLevel) {
 			this.name = name;
+			this.partial = false;
 			this.mimeType = mimeType;
 			this.mimeTypeLevel = mimeTypeLevel;
+			this.sb.setLength(0);
+		}
+
+		/**
+		 * Return the content information from the data.
+		 */
+		ContentInfo toContentInfo() {
+			return new ContentInfo(name, mimeType, sb.toString(), partial);
 		}
 	}
 
@@ -244,6 +758,34 @@ public class MagicEntry {
 			this.add = add;
 		}
 
+		void write(DataOutput output) throws IOException {
+			output.writeInt(offset);
+			output.writeByte(endianType().ordinal());
+			output.writeBoolean(isId3);
+			output.writeByte(size);
+			output.writeInt(add);
+		}
+
+		String getSource() throws IOException {
+			return "new OffsetInfo(" + offset + ", EndianType." + endianType().name() + ".getConverter(), " + isId3
+					+ ", " + size + ", " + add + ")";
+		}
+
+		static OffsetInfo read(DataInput input) throws IOException {
+			int offset = input.readInt();
+			EndianConverter converter = EndianType.values()[input.readByte()].getConverter();
+			return new OffsetInfo(offset, converter, input.readBoolean(), input.readByte(), input.readInt());
+		}
+
+		private EndianType endianType() throws IOException {
+			for (EndianType endianType : EndianType.values()) {
+				if (endianType.getConverter() == converter) {
+					return endianType;
+				}
+			}
+			throw new IOException("Offset has an unknown endian converter: " + converter);
+		}
+
 		public Integer getOffset(byte[] bytes) {
 			Long val;
 			if (isId3) {
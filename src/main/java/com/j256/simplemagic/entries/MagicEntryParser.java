@@ -1,7 +1,7 @@
 package com.j256.simplemagic.entries;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.j256.simplemagic.ContentInfoUtil.ErrorCallBack;
 import com.j256.simplemagic.endian.EndianConverter;
@@ -11,26 +11,55 @@ import com.j256.simplemagic.entries.MagicEntry.OffsetInfo;
 /**
  * Class which parses a line from the magic (5) format and produces a {@link MagicEntry} class.
  * 
+ * <p>
+ * The line is tokenized in one pass over a buffer of its characters. The numbers are decoded in place and problems are
+ * returned as values instead of with exceptions. The strings of the tokens, which repeat a lot between the lines, are
+ * shared so they are only created the first time they are seen. A parser should be reused for all of the lines of a
+ * magic file and must only be used by one thread at a time.
+ * </p>
+ * 
  * @author graywatson
  */
 public class MagicEntryParser {
 
-	private static final String UNKNOWN_NAME = "unknown";
+	private static final String UNKNOWN_NAME = MagicEntry.UNKNOWN_NAME;
 	// special lines, others are put into the extensionMap
 	private static final String MIME_TYPE_LINE = "!:mime";
 	private static final String OPTIONAL_LINE = "!:optional";
+	private static final String FIELDS_ERROR = "invalid number of whitespace separated fields, must be >= 4";
+	private static final String OFFSET_TYPE_CHARS = "bsilBSILm";
+	private static final int MIN_STRINGS_SIZE = 4096;
 
-	private final static Pattern OFFSET_PATTERN =
-			Pattern.compile("\\(([0-9a-fA-Fx]+)\\.?([bsilBSILm]?)([\\*\\+\\-]?)([0-9a-fA-Fx]*)\\)");
+	/** characters of the line that is being parsed */
+	private char[] chars = new char[256];
+	/** shared strings in an open-addressing hash table */
+	private String[] strings = new String[MIN_STRINGS_SIZE];
+	private int numStrings;
+	/** formatters shared by the entries with the same format */
+	private final Map<String, MagicFormatter> formatters = new HashMap<String, MagicFormatter>();
+	/** value of the last number that {@link #decodeNumber(int, int, long, long)} decoded */
+	private long decodedNumber;
 
 	/**
-	 * Parse a line from the magic configuration file into an entry.
+	 * Parse a line from the magic configuration file into an entry. It is faster to reuse a parser with
+	 * {@link #parse(MagicEntry, String, ErrorCallBack)} when parsing a number of lines.
 	 */
 	public static MagicEntry parseLine(MagicEntry previous, String line, ErrorCallBack errorCallBack) {
-		if (line.startsWith("!:")) {
+		return new MagicEntryParser().parse(previous, line, errorCallBack);
+	}
+
+	/**
+	 * Parse a line from the magic configuration file into an entry.
+	 * 
+	 * @return The entry or null if the line is special, blank, or has a problem which is passed to the error
+	 *         call-back.
+	 */
+	public MagicEntry parse(MagicEntry previous, String line, ErrorCallBack errorCallBack) {
+		int length = loadChars(line);
+		if (isSpecial(length)) {
 			if (previous != null) {
 				// we ignore it if there is no previous entry to add it to
-				handleSpecial(previous, line, errorCallBack);
+				handleSpecial(previous, line, length, errorCallBack);
 			}
 			return null;
 		}
@@ -41,105 +70,100 @@ public class MagicEntryParser {
 		// >7[ ]byte[ ]x[ ]\b.%c
 
 		// unfortunately, we cannot use split or even regex since the whitespace is not reliable (grumble)
-		String[] parts = splitLine(line, errorCallBack);
-		if (parts == null) {
+		int levelStart = findNonWhitespace(0, length);
+		if (levelStart < 0) {
 			return null;
 		}
-
-		// level and offset
-		int level;
-		int sindex = parts[0].lastIndexOf('>');
-		String offsetString;
-		if (sindex < 0) {
-			level = 0;
-			offsetString = parts[0];
-		} else {
-			level = sindex + 1;
-			offsetString = parts[0].substring(sindex + 1);
+		int levelEnd = findWhitespaceWithoutEscape(levelStart, length);
+		int typeStart = (levelEnd < 0 ? -1 : findNonWhitespace(levelEnd + 1, length));
+		int typeEnd = (typeStart < 0 ? -1 : findWhitespaceWithoutEscape(typeStart, length));
+		int testStart = (typeEnd < 0 ? -1 : findNonWhitespace(typeEnd + 1, length));
+		if (testStart < 0) {
+			return error(line, FIELDS_ERROR, errorCallBack);
+		}
+		int testEnd = findWhitespaceWithoutEscape(testStart, length);
+		if (testEnd < 0) {
+			testEnd = length;
 		}
+		// format is optional and is the rest of the line
+		int formatStart = findNonWhitespace(testEnd + 1, length);
 
-		int offset;
-		OffsetInfo offsetInfo;
-		if (offsetString.length() == 0) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid offset number:" + offsetString, null);
+		// level and offset
+		int level = 0;
+		int offsetStart = levelStart;
+		for (int pos = levelEnd - 1; pos >= levelStart; pos--) {
+			if (chars[pos] == '>') {
+				level = pos - levelStart + 1;
+				offsetStart = pos + 1;
+				break;
 			}
-			return null;
 		}
 		boolean addOffset = false;
-		if (offsetString.charAt(0) == '&') {
+		if (offsetStart < levelEnd && chars[offsetStart] == '&') {
 			addOffset = true;
-			offsetString = offsetString.substring(1);
+			offsetStart++;
+		}
+		if (offsetStart == levelEnd) {
+			return error(line, "invalid offset number:", errorCallBack);
 		}
-		if (offsetString.charAt(0) == '(') {
+		int offset;
+		OffsetInfo offsetInfo;
+		if (chars[offsetStart] == '(') {
 			offset = -1;
-			offsetInfo = parseOffset(offsetString, line, errorCallBack);
+			offsetInfo = parseOffset(offsetStart, levelEnd, line, errorCallBack);
 			if (offsetInfo == null) {
 				return null;
 			}
+		} else if (decodeNumber(offsetStart, levelEnd, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+			offset = (int) decodedNumber;
+			offsetInfo = null;
 		} else {
-			try {
-				offset = Integer.decode(offsetString);
-				offsetInfo = null;
-			} catch (NumberFormatException e) {
-				if (errorCallBack != null) {
-					errorCallBack.error(line, "invalid offset number:" + offsetString, e);
-				}
-				return null;
-			}
+			return error(line, "invalid offset number:" + line.substring(offsetStart, levelEnd), errorCallBack);
 		}
 
 		// process the AND (&) part of the type
-		String typeStr = parts[1];
-		sindex = typeStr.indexOf('&');
 		// we use long because of overlaps
 		Long andValue = null;
-		if (sindex >= 0) {
-			String andStr = typeStr.substring(sindex + 1);
-			try {
-				andValue = Long.decode(andStr);
-			} catch (NumberFormatException e) {
-				if (errorCallBack != null) {
-					errorCallBack.error(line, "invalid type AND-number: " + andStr, e);
+		for (int pos = typeStart; pos < typeEnd; pos++) {
+			if (chars[pos] == '&') {
+				if (!decodeNumber(pos + 1, typeEnd, Long.MIN_VALUE, Long.MAX_VALUE)) {
+					return error(line, "invalid type AND-number: " + line.substring(pos + 1, typeEnd), errorCallBack);
 				}
-				return null;
+				andValue = decodedNumber;
+				typeEnd = pos;
+				break;
 			}
-			typeStr = typeStr.substring(0, sindex);
 		}
-		if (typeStr.length() == 0) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "blank type string", null);
-			}
-			return null;
+		if (typeEnd == typeStart) {
+			return error(line, "blank type string", errorCallBack);
 		}
 
 		// process the type string
 		boolean unsignedType = false;
+		String typeStr = sharedString(typeStart, typeEnd);
 		MagicMatcher matcher = MagicType.matcherfromString(typeStr);
 		if (matcher == null) {
-			if (typeStr.charAt(0) == 'u') {
-				matcher = MagicType.matcherfromString(typeStr.substring(1));
+			if (chars[typeStart] == 'u') {
+				matcher = MagicType.matcherfromString(sharedString(typeStart + 1, typeEnd));
 				unsignedType = true;
 			} else {
-				int index = typeStr.indexOf('/');
-				if (index > 0) {
-					matcher = MagicType.matcherfromString(typeStr.substring(0, index));
+				int index = indexOf('/', typeStart, typeEnd);
+				if (index > typeStart) {
+					matcher = MagicType.matcherfromString(sharedString(typeStart, index));
 				}
 			}
 			if (matcher == null) {
-				if (errorCallBack != null) {
-					errorCallBack.error(line, "unknown magic type string: " + typeStr, null);
-				}
-				return null;
+				return error(line, "unknown magic type string: " + typeStr, errorCallBack);
 			}
 		}
 
 		// process the test-string
 		Object testValue;
-		String testStr = parts[2];
-		if (testStr.equals("x")) {
+		if (testEnd - testStart == 1 && chars[testStart] == 'x') {
 			testValue = null;
 		} else {
+			// the test strings are mostly different so they are not shared
+			String testStr = line.substring(testStart, testEnd);
 			try {
 				testValue = matcher.convertTestString(typeStr, testStr);
 			} catch (Exception e) {
@@ -154,168 +178,144 @@ public class MagicEntryParser {
 		String name;
 		boolean formatSpacePrefix = true;
 		boolean clearFormat = false;
-		if (parts.length == 3) {
+		if (formatStart < 0) {
 			formatter = null;
 			name = UNKNOWN_NAME;
 		} else {
-			String format = parts[3];
 			// a starting \\b or ^H means don't prepend a space when chaining content details
-			if (format.startsWith("\\b")) {
-				format = format.substring(2);
+			if (startsWith(formatStart, length, '\\', 'b')) {
+				formatStart += 2;
 				formatSpacePrefix = false;
-			} else if (format.startsWith("\010")) {
+			} else if (chars[formatStart] == '\010') {
 				// NOTE: sometimes the \b is expressed as a ^H character (grumble)
-				format = format.substring(1);
+				formatStart++;
 				formatSpacePrefix = false;
-			} else if (format.startsWith("\\r")) {
-				format = format.substring(2);
+			} else if (startsWith(formatStart, length, '\\', 'r')) {
+				formatStart += 2;
 				clearFormat = true;
 			}
-			formatter = new MagicFormatter(format);
-
-			String trimmedFormat = format.trim();
-			int spaceIndex = trimmedFormat.indexOf(' ');
-			if (spaceIndex < 0) {
-				spaceIndex = trimmedFormat.indexOf('\t');
-			}
-			if (spaceIndex > 0) {
-				name = trimmedFormat.substring(0, spaceIndex);
-			} else if (trimmedFormat.length() == 0) {
-				name = UNKNOWN_NAME;
-			} else {
-				name = trimmedFormat;
+			String format = sharedString(formatStart, length);
+			formatter = formatters.get(format);
+			if (formatter == null) {
+				formatter = new MagicFormatter(format);
+				formatters.put(format, formatter);
 			}
+			name = findName(formatStart, length);
 		}
 		MagicEntry entry = new MagicEntry(name, level, addOffset, offset, offsetInfo, matcher, andValue, unsignedType,
 				testValue, formatSpacePrefix, clearFormat, formatter);
 		return entry;
 	}
 
-	private static String[] splitLine(String line, ErrorCallBack errorCallBack) {
-		// skip opening whitespace if any
-		int startPos = findNonWhitespace(line, 0);
-		if (startPos < 0) {
-			return null;
+	/**
+	 * The name is the first word of the format.
+	 */
+	private String findName(int formatStart, int formatEnd) {
+		// trimmed like String.trim()
+		int start = formatStart;
+		int end = formatEnd;
+		while (start < end && chars[start] <= ' ') {
+			start++;
 		}
-
-		// find the level info
-		int endPos = findWhitespaceWithoutEscape(line, startPos);
-		if (endPos < 0) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid number of whitespace separated fields, must be >= 4", null);
-			}
-			return null;
+		while (end > start && chars[end - 1] <= ' ') {
+			end--;
+		}
+		if (start == end) {
+			return UNKNOWN_NAME;
 		}
-		String levelStr = line.substring(startPos, endPos);
+		int spaceIndex = indexOf(' ', start, end);
+		if (spaceIndex < 0) {
+			spaceIndex = indexOf('\t', start, end);
+		}
+		if (spaceIndex > start) {
+			return sharedString(start, spaceIndex);
+		} else {
+			return sharedString(start, end);
+		}
+	}
 
-		// skip whitespace
-		startPos = findNonWhitespace(line, endPos + 1);
-		if (startPos < 0) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid number of whitespace separated fields, must be >= 4", null);
-			}
-			return null;
+	/**
+	 * Return true if the line is a top level entry because there are no '>' characters in its level. The rest of the
+	 * line is not parsed so it may still have problems.
+	 */
+	boolean isTopLevel(String line) {
+		int length = loadChars(line);
+		if (isSpecial(length)) {
+			return false;
 		}
-		// find the type string
-		endPos = findWhitespaceWithoutEscape(line, startPos);
-		if (endPos < 0) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid number of whitespace separated fields, must be >= 4", null);
-			}
-			return null;
+		int levelStart = findNonWhitespace(0, length);
+		if (levelStart < 0) {
+			return false;
 		}
-		String typeStr = line.substring(startPos, endPos);
+		int levelEnd = findWhitespaceWithoutEscape(levelStart, length);
+		if (levelEnd < 0) {
+			levelEnd = length;
+		}
+		return (indexOf('>', levelStart, levelEnd) < 0);
+	}
 
-		// skip whitespace
-		startPos = findNonWhitespace(line, endPos + 1);
-		if (startPos < 0) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid number of whitespace separated fields, must be >= 4", null);
-			}
+	/**
+	 * Return the mime-type from a special line or null if it is not a mime-type line.
+	 */
+	String parseMimeType(String line) {
+		int length = loadChars(line);
+		if (!isSpecial(length) || line.equals(OPTIONAL_LINE)) {
 			return null;
 		}
-		// find the test string
-		endPos = findWhitespaceWithoutEscape(line, startPos);
-		if (endPos < 0) {
-			endPos = line.length();
-		}
-		String testStr = line.substring(startPos, endPos);
+		return findMimeType(line, length, null);
+	}
 
-		// skip any whitespace
-		startPos = findNonWhitespace(line, endPos + 1);
-		// format is optional, this could return length
-		if (startPos < 0) {
-			return new String[] { levelStr, typeStr, testStr };
-		} else {
-			// format is the rest of the line
-			return new String[] { levelStr, typeStr, testStr, line.substring(startPos) };
+	private int loadChars(String line) {
+		int length = line.length();
+		if (chars.length < length) {
+			chars = new char[Math.max(length, chars.length * 2)];
 		}
+		line.getChars(0, length, chars, 0);
+		return length;
+	}
+
+	private boolean isSpecial(int length) {
+		return (length >= 2 && chars[0] == '!' && chars[1] == ':');
 	}
 
-	private static void handleSpecial(MagicEntry previous, String line, ErrorCallBack errorCallBack) {
+	private void handleSpecial(MagicEntry previous, String line, int length, ErrorCallBack errorCallBack) {
 		if (line.equals(OPTIONAL_LINE)) {
 			previous.setOptional(true);
 			return;
 		}
-		int startPos = findNonWhitespace(line, 0);
-		int index = findWhitespaceWithoutEscape(line, startPos);
+		String mimeType = findMimeType(line, length, errorCallBack);
+		if (mimeType != null) {
+			previous.setMimeType(mimeType);
+		}
+	}
+
+	private String findMimeType(String line, int length, ErrorCallBack errorCallBack) {
+		int startPos = findNonWhitespace(0, length);
+		int index = findWhitespaceWithoutEscape(startPos, length);
 		if (index < 0) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid extension line has less than 2 whitespace separated fields", null);
-			}
-			return;
+			error(line, "invalid extension line has less than 2 whitespace separated fields", errorCallBack);
+			return null;
 		}
-		String key = line.substring(startPos, index);
-		startPos = findNonWhitespace(line, index);
+		int keyEnd = index;
+		startPos = findNonWhitespace(index, length);
 		if (startPos < 0) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid extension line has less than 2 whitespace separated fields", null);
-			}
-			return;
+			error(line, "invalid extension line has less than 2 whitespace separated fields", errorCallBack);
+			return null;
 		}
 		// find whitespace after value, if any
-		index = findWhitespaceWithoutEscape(line, startPos);
+		index = findWhitespaceWithoutEscape(startPos, length);
 		if (index < 0) {
-			index = line.length();
+			index = length;
 		}
-		String value = line.substring(startPos, index);
 
-		if (key.equals(MIME_TYPE_LINE)) {
-			previous.setMimeType(value);
+		if (line.startsWith(MIME_TYPE_LINE) && keyEnd == MIME_TYPE_LINE.length()) {
+			return sharedString(startPos, index);
 		} else {
 			// unknown extension key
+			return null;
 		}
 	}
 
-	private static int findNonWhitespace(String line, int startPos) {
-		for (int pos = startPos; pos < line.length(); pos++) {
-			if (!Character.isWhitespace(line.charAt(pos))) {
-				return pos;
-			}
-		}
-		return -1;
-	}
-
-	private static int findWhitespaceWithoutEscape(String line, int startPos) {
-		boolean lastEscape = false;
-		for (int pos = startPos; pos < line.length(); pos++) {
-			char ch = line.charAt(pos);
-			if (ch == ' ') {
-				if (!lastEscape) {
-					return pos;
-				}
-				lastEscape = false;
-			} else if (Character.isWhitespace(line.charAt(pos))) {
-				return pos;
-			} else if (ch == '\\') {
-				lastEscape = true;
-			} else {
-				lastEscape = false;
-			}
-		}
-		return -1;
-	}
-
 	/**
 	 * Copied from the magic(5) man page:
 	 * 
@@ -331,39 +331,36 @@ public class MagicEntryParser {
 	 * file. The default type if one is not specified is 4-byte long.
 	 * </p>
 	 */
-	private static OffsetInfo parseOffset(String offsetString, String line, ErrorCallBack errorCallBack) {
+	private OffsetInfo parseOffset(int start, int end, String line, ErrorCallBack errorCallBack) {
 		// (9.b+19)
 		// (0x3c.l)
 		// (8.s*16)
-		Matcher matcher = OFFSET_PATTERN.matcher(offsetString);
-		if (!matcher.matches()) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid offset pattern: " + offsetString, null);
-			}
-			return null;
+		int pos = start + 1;
+		int offsetEnd = skipOffsetDigits(pos, end);
+		int offsetStart = pos;
+		pos = offsetEnd;
+		if (pos < end && chars[pos] == '.') {
+			pos++;
 		}
-		int offset;
-		try {
-			offset = Integer.decode(matcher.group(1));
-		} catch (NumberFormatException e) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid long offset number: " + offsetString, e);
-			}
-			return null;
+		char ch = '\0';
+		if (pos < end && OFFSET_TYPE_CHARS.indexOf(chars[pos]) >= 0) {
+			ch = chars[pos++];
 		}
-		if (matcher.group(2) == null) {
-			if (errorCallBack != null) {
-				errorCallBack.error(line, "invalid long offset type: " + offsetString, null);
-			}
+		char offsetOperator = '\0';
+		if (pos < end && (chars[pos] == '*' || chars[pos] == '+' || chars[pos] == '-')) {
+			offsetOperator = chars[pos++];
+		}
+		int addStart = pos;
+		int addEnd = skipOffsetDigits(pos, end);
+		if (offsetEnd == offsetStart || addEnd != end - 1 || chars[addEnd] != ')') {
+			error(line, "invalid offset pattern: " + line.substring(start, end), errorCallBack);
 			return null;
 		}
-		char ch;
-		if (matcher.group(2).length() == 1) {
-			ch = matcher.group(2).charAt(0);
-		} else {
-			// it will use the default
-			ch = '\0';
+		if (!decodeNumber(offsetStart, offsetEnd, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+			error(line, "invalid long offset number: " + line.substring(start, end), errorCallBack);
+			return null;
 		}
+		int offset = (int) decodedNumber;
 		EndianConverter converter = null;
 		boolean isId3 = false;
 		int size = 0;
@@ -424,24 +421,191 @@ public class MagicEntryParser {
 		}
 		int add = 0;
 		// the +# section is optional
-		if (matcher.group(4) != null && matcher.group(4).length() > 0) {
-			try {
-				add = Integer.decode(matcher.group(4));
-			} catch (NumberFormatException e) {
-				if (errorCallBack != null) {
-					errorCallBack.error(line, "invalid long add value: " + matcher.group(4), e);
-				}
+		if (addEnd > addStart) {
+			if (!decodeNumber(addStart, addEnd, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+				error(line, "invalid long add value: " + line.substring(addStart, addEnd), errorCallBack);
 				return null;
 			}
-			// decode doesn't work with leading '+', grumble
-			String offsetOperator = matcher.group(3);
-			if ("-".equals(offsetOperator)) {
+			add = (int) decodedNumber;
+			// NOTE: we don't support multiplying so the * value is added like the + one
+			if (offsetOperator == '-') {
 				add = -add;
-			} else if ("-".equals(offsetOperator)) {
-				offset = add;
-				add = 0;
 			}
 		}
 		return new OffsetInfo(offset, converter, isId3, size, add);
 	}
+
+	/**
+	 * Decode a number like {@link Long#decode(String)} does, with its sign, and hex or octal prefix, and set the
+	 * {@link #decodedNumber}.
+	 * 
+	 * @return False if the characters are not a number or it is outside of the minimum and maximum values.
+	 */
+	private boolean decodeNumber(int start, int end, long minValue, long maxValue) {
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (chars[pos] == '-' || chars[pos] == '+')) {
+			negative = (chars[pos] == '-');
+			pos++;
+		}
+		int radix = 10;
+		if (startsWith(pos, end, '0', 'x') || startsWith(pos, end, '0', 'X')) {
+			radix = 16;
+			pos += 2;
+		} else if (pos < end && chars[pos] == '#') {
+			radix = 16;
+			pos++;
+		} else if (pos + 1 < end && chars[pos] == '0') {
+			radix = 8;
+			pos++;
+		}
+		if (pos == end || chars[pos] == '-' || chars[pos] == '+') {
+			return false;
+		}
+		// accumulated negatively like Long.parseLong(...) so the minimum value fits
+		long limit = (negative ? minValue : -maxValue);
+		long multiplyLimit = limit / radix;
+		long result = 0;
+		for (; pos < end; pos++) {
+			int digit = Character.digit(chars[pos], radix);
+			if (digit < 0 || result < multiplyLimit) {
+				return false;
+			}
+			result *= radix;
+			if (result < limit + digit) {
+				return false;
+			}
+			result -= digit;
+		}
+		decodedNumber = (negative ? result : -result);
+		return true;
+	}
+
+	/**
+	 * Return the string with the characters from start to end, which is shared with the other tokens that have the same
+	 * characters.
+	 */
+	private String sharedString(int start, int end) {
+		int hash = 0;
+		for (int pos = start; pos < end; pos++) {
+			hash = 31 * hash + chars[pos];
+		}
+		int mask = strings.length - 1;
+		int length = end - start;
+		// spread the bits like the HashMap does
+		int index = (hash ^ (hash >>> 16)) & mask;
+		while (true) {
+			String str = strings[index];
+			if (str == null) {
+				break;
+			}
+			if (str.length() == length && str.hashCode() == hash && regionMatches(str, start)) {
+				return str;
+			}
+			index = (index + 1) & mask;
+		}
+		String str = new String(chars, start, length);
+		strings[index] = str;
+		numStrings++;
+		if (numStrings * 2 > strings.length) {
+			growStrings();
+		}
+		return str;
+	}
+
+	private void growStrings() {
+		String[] oldStrings = strings;
+		strings = new String[oldStrings.length * 2];
+		int mask = strings.length - 1;
+		for (String str : oldStrings) {
+			if (str != null) {
+				int hash = str.hashCode();
+				int index = (hash ^ (hash >>> 16)) & mask;
+				while (strings[index] != null) {
+					index = (index + 1) & mask;
+				}
+				strings[index] = str;
+			}
+		}
+	}
+
+	private boolean regionMatches(String str, int start) {
+		for (int i = 0; i < str.length(); i++) {
+			if (str.charAt(i) != chars[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int skipOffsetDigits(int pos, int end) {
+		// hex digits and the x of the hex prefix
+		while (pos < end) {
+			char ch = chars[pos];
+			if ((ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F') || ch == 'x') {
+				pos++;
+			} else {
+				break;
+			}
+		}
+		return pos;
+	}
+
+	private boolean startsWith(int pos, int end, char first, char second) {
+		return (pos + 1 < end && chars[pos] == first && chars[pos + 1] == second);
+	}
+
+	private int indexOf(char ch, int start, int end) {
+		for (int pos = start; pos < end; pos++) {
+			if (chars[pos] == ch) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	private int findNonWhitespace(int startPos, int length) {
+		for (int pos = startPos; pos < length; pos++) {
+			if (!isWhitespace(chars[pos])) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	private int findWhitespaceWithoutEscape(int startPos, int length) {
+		boolean lastEscape = false;
+		for (int pos = startPos; pos < length; pos++) {
+			char ch = chars[pos];
+			if (ch == ' ') {
+				if (!lastEscape) {
+					return pos;
+				}
+				lastEscape = false;
+			} else if (isWhitespace(ch)) {
+				return pos;
+			} else if (ch == '\\') {
+				lastEscape = true;
+			} else {
+				lastEscape = false;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isWhitespace(char ch) {
+		if (ch > ' ') {
+			// most characters are not whitespace
+			return (ch >= 0x80 && Character.isWhitespace(ch));
+		} else {
+			return Character.isWhitespace(ch);
+		}
+	}
+
+	private static MagicEntry error(String line, String details, ErrorCallBack errorCallBack) {
+		if (errorCallBack != null) {
+			errorCallBack.error(line, details, null);
+		}
+		return null;
+	}
 }
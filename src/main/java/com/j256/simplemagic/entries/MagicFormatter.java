@@ -1,7 +1,8 @@
 package com.j256.simplemagic.entries;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Formatter that handles the C %0.2f type formats appropriately. I would have used the {@link java.util.Formatter} but
@@ -17,26 +18,39 @@ public class MagicFormatter {
 
 	public final static String FINAL_PATTERN_CHARS = "%bcdeEfFgGiosuxX";
 	public final static String PATTERN_MODIFIERS = "lqh";
-	// NOTE: the backspace is taken care of by checking the format string prefix above
-	private final static Pattern FORMAT_PATTERN =
-			Pattern.compile("([^%]*)(%[-+0-9# ." + PATTERN_MODIFIERS + "]*[" + FINAL_PATTERN_CHARS + "])?(.*)");
+	/** characters between the % and the final pattern character */
+	private final static String EXPRESSION_CHARS = "-+0123456789# ." + PATTERN_MODIFIERS;
 
 	/**
 	 * This takes a format string, breaks it up into prefix, %-thang, and suffix.
 	 */
 	public MagicFormatter(String formatString) {
-		Matcher matcher = FORMAT_PATTERN.matcher(formatString);
-		if (!matcher.matches()) {
-			// may never get here
+		// NOTE: the backspace is taken care of by checking the format string prefix above
+		int percentIndex = formatString.indexOf('%');
+		if (percentIndex < 0) {
+			percentIndex = formatString.length();
+		}
+		if (hasLineTerminator(formatString, percentIndex)) {
+			// the suffix does not span lines
 			prefix = formatString;
 			percentExpression = null;
 			suffix = null;
 			return;
 		}
-
-		String prefixMatch = matcher.group(1);
-		String percentMatch = matcher.group(2);
-		String suffixMatch = matcher.group(3);
+		String prefixMatch = formatString.substring(0, percentIndex);
+		String percentMatch = null;
+		int suffixIndex = percentIndex;
+		if (percentIndex < formatString.length()) {
+			int pos = percentIndex + 1;
+			while (pos < formatString.length() && EXPRESSION_CHARS.indexOf(formatString.charAt(pos)) >= 0) {
+				pos++;
+			}
+			if (pos < formatString.length() && FINAL_PATTERN_CHARS.indexOf(formatString.charAt(pos)) >= 0) {
+				suffixIndex = pos + 1;
+				percentMatch = formatString.substring(percentIndex, suffixIndex);
+			}
+		}
+		String suffixMatch = formatString.substring(suffixIndex);
 
 		if (percentMatch != null && percentMatch.equals("%%")) {
 			// we go recursive trying to find the first true % pattern
@@ -72,6 +86,45 @@ public class MagicFormatter {
 		}
 	}
 
+	MagicFormatter(String prefix, PercentExpression percentExpression, String suffix) {
+		this.prefix = prefix;
+		this.percentExpression = percentExpression;
+		this.suffix = suffix;
+	}
+
+	/**
+	 * Write the parts of the formatter to the compiled magic entries.
+	 */
+	void write(DataOutput output) throws IOException {
+		writeNullable(prefix, output);
+		output.writeBoolean(percentExpression != null);
+		if (percentExpression != null) {
+			percentExpression.write(output);
+		}
+		writeNullable(suffix, output);
+	}
+
+	/**
+	 * Return the Java source which creates the formatter without parsing its format string again.
+	 */
+	String getSource() {
+		String expressionSource = (percentExpression == null ? "null" : percentExpression.getSource());
+		return "new MagicFormatter(" + MagicSourceGenerator.stringSource(prefix) + ", " + expressionSource + ", "
+				+ MagicSourceGenerator.stringSource(suffix) + ")";
+	}
+
+	/**
+	 * Read a formatter that was written by {@link #write(DataOutput)}.
+	 */
+	static MagicFormatter read(DataInput input) throws IOException {
+		String prefix = readNullable(input);
+		PercentExpression percentExpression = null;
+		if (input.readBoolean()) {
+			percentExpression = PercentExpression.read(input);
+		}
+		return new MagicFormatter(prefix, percentExpression, readNullable(input));
+	}
+
 	/**
 	 * Formats the extracted value assigned and returns the associated string
 	 */
@@ -101,4 +154,29 @@ public class MagicFormatter {
 		}
 		return sb.toString();
 	}
+
+	private static boolean hasLineTerminator(String str, int startIndex) {
+		for (int i = startIndex; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			if (ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void writeNullable(String str, DataOutput output) throws IOException {
+		output.writeBoolean(str != null);
+		if (str != null) {
+			output.writeUTF(str);
+		}
+	}
+
+	private static String readNullable(DataInput input) throws IOException {
+		if (input.readBoolean()) {
+			return input.readUTF();
+		} else {
+			return null;
+		}
+	}
 }
@@ -1,5 +1,9 @@
 package com.j256.simplemagic.entries;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Classes which are able to match content according to operations and output description.
  * 
@@ -9,7 +13,8 @@ public interface MagicMatcher {
 
 	/**
 	 * Converts the test-string from the magic line to be the testValue object to be passed into
-	 * {@link #isMatch(Object, Long, boolean, Object, MutableOffset, byte[])} and {@link #getStartingBytes(Object)}.
+	 * {@link #isMatch(Object, Long, boolean, Object, MutableOffset, byte[])}, {@link #getStartingBytes(Object)}, and
+	 * {@link #getRequiredStartingBytes(Object)}.
 	 */
 	public Object convertTestString(String typeStr, String testStr);
 
@@ -46,6 +51,38 @@ public interface MagicMatcher {
 	 */
 	public byte[] getStartingBytes(Object testValue);
 
+	/**
+	 * Return the bytes that the content must start with to match the test-value or null if the test can match without
+	 * them. Unlike {@link #getStartingBytes(Object)}, the entry can be skipped if these bytes do not match.
+	 */
+	public byte[] getRequiredStartingBytes(Object testValue);
+
+	/**
+	 * Return the bytes that the content is and-ed with before it is compared to the bytes from
+	 * {@link #getRequiredStartingBytes(Object)} or null if the type does not support and-ing the content.
+	 */
+	public byte[] getRequiredBytesMask(long andValue);
+
+	/**
+	 * Write the test-value to the compiled form of the magic entries so {@link #readTestValue(DataInput)} can rebuild
+	 * it without parsing the test-string again.
+	 */
+	public void writeTestValue(Object testValue, DataOutput output) throws IOException;
+
+	/**
+	 * Read a test-value that was written by {@link #writeTestValue(Object, DataOutput)}.
+	 */
+	public Object readTestValue(DataInput input) throws IOException;
+
+	/**
+	 * Return the Java source of an expression which creates the test-value without parsing the test-string again, for
+	 * the classes that the {@link MagicSourceGenerator} generates.
+	 * 
+	 * @param matcherSource
+	 *            Java source of an expression which returns this matcher.
+	 */
+	public String getTestValueSource(Object testValue, String matcherSource);
+
 	/**
 	 * Offset which we can update.
 	 */
@@ -0,0 +1,231 @@
+package com.j256.simplemagic.entries;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.j256.simplemagic.MagicFileCompiler;
+
+/**
+ * Generates the Java source of classes which build the magic entries directly in code so that loading them does no
+ * I/O and parses nothing. The test-values, offsets, and formatters of the entries are created already decoded. The
+ * generated-entries maven profile uses this to generate the classes for the internal magic file which
+ * {@link MagicEntries#addGeneratedEntries} then loads.
+ * 
+ * <pre>
+ * java -cp simplemagic.jar com.j256.simplemagic.entries.MagicSourceGenerator magic.gz target/generated-sources/magic
+ * </pre>
+ * 
+ * <p>
+ * <b>NOTE:</b> The classes are generated into this package because they use the package protected constructors of the
+ * entries. They are split into a number of classes and methods so they stay under the size limits of the class files.
+ * </p>
+ * 
+ * @author graywatson
+ */
+public class MagicSourceGenerator {
+
+	public static final String DEFAULT_CLASS_NAME = "GeneratedMagicEntries";
+	/** name of the static method of the generated class which adds the entries */
+	static final String ADD_ENTRIES_METHOD = "addEntries";
+	private static final String PACKAGE_NAME = MagicSourceGenerator.class.getPackage().getName();
+	private static final String HEADER_COMMENT = "// generated by " + MagicSourceGenerator.class.getSimpleName()
+			+ " from the magic file, do not edit";
+	private static final int ENTRIES_PER_METHOD = 200;
+	private static final int ENTRIES_PER_CLASS = 2000;
+
+	private final File packageDir;
+	private final String className;
+	/** names of the fields of the matchers in the generated class by their type string */
+	private final Map<String, String> matcherFields = new LinkedHashMap<String, String>();
+	private final List<String> partClassNames = new ArrayList<String>();
+	private StringBuilder partSource;
+	private int numMethods;
+	private int numMethodEntries;
+	private int numPartEntries;
+
+	private MagicSourceGenerator(File sourceDirectory, String className) {
+		this.packageDir = new File(sourceDirectory, PACKAGE_NAME.replace('.', File.separatorChar));
+		this.className = className;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2 && args.length != 3) {
+			System.err.println("Usage: java " + MagicSourceGenerator.class.getName()
+					+ " magic-file-or-directory[.gz] source-directory [class-name]");
+			System.exit(1);
+		}
+		String className = (args.length == 3 ? args[2] : DEFAULT_CLASS_NAME);
+		MagicEntries entries = MagicFileCompiler.readMagicEntries(new File(args[0]), null);
+		generate(entries, new File(args[1]), className);
+	}
+
+	/**
+	 * Generate the source of the classes which build the entries into the source directory. The class with the name
+	 * adds the entries and the others are named after it with a number suffix.
+	 */
+	public static void generate(MagicEntries entries, File sourceDirectory, String className) throws IOException {
+		MagicSourceGenerator generator = new MagicSourceGenerator(sourceDirectory, className);
+		generator.packageDir.mkdirs();
+		entries.writeSource(generator);
+		generator.writePart();
+		generator.writeMainClass();
+	}
+
+	/**
+	 * Return the Java source of a string literal with the characters of the string escaped or "null" if it is null.
+	 */
+	public static String stringSource(String str) {
+		if (str == null) {
+			return "null";
+		}
+		StringBuilder sb = new StringBuilder(str.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				sb.append('\\').append(ch);
+			} else if (ch >= ' ' && ch < 0x7F) {
+				sb.append(ch);
+			} else if (ch <= 0xFF) {
+				// octal because a unicode escape of a line terminator would end the literal
+				sb.append('\\');
+				String octal = Integer.toOctalString(ch);
+				for (int j = octal.length(); j < 3; j++) {
+					sb.append('0');
+				}
+				sb.append(octal);
+			} else {
+				sb.append(String.format("\\u%04x", (int) ch));
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+
+	/**
+	 * Return the Java source which gets the matcher of the type.
+	 */
+	String getMatcherSource(String typeStr) {
+		String field = matcherFields.get(typeStr);
+		if (field == null) {
+			field = typeStr.toUpperCase(Locale.ENGLISH).replaceAll("[^A-Z0-9]", "_") + "_MATCHER";
+			matcherFields.put(typeStr, field);
+		}
+		return className + "." + field;
+	}
+
+	/**
+	 * Add the Java source of an entry which is added after the entry before it.
+	 */
+	void addEntry(String entrySource, String mimeType, boolean optional) throws IOException {
+		if (numPartEntries >= ENTRIES_PER_CLASS) {
+			writePart();
+		}
+		if (partSource == null) {
+			startPart();
+		}
+		if (numMethodEntries >= ENTRIES_PER_METHOD) {
+			partSource.append("\t}\n");
+			numMethodEntries = 0;
+		}
+		if (numMethodEntries == 0) {
+			partSource.append('\n');
+			partSource.append("\tprivate static void " + ADD_ENTRIES_METHOD + numMethods
+					+ "(MagicEntries entries, MagicEntry[] levelParents) {\n");
+			partSource.append("\t\tMagicEntry entry;\n");
+			numMethods++;
+		}
+		partSource.append("\t\tentry = entries.addEntry(levelParents, ").append(entrySource).append(");\n");
+		if (mimeType != null) {
+			partSource.append("\t\tentry.setMimeType(").append(stringSource(mimeType)).append(");\n");
+		}
+		if (optional) {
+			partSource.append("\t\tentry.setOptional(true);\n");
+		}
+		numMethodEntries++;
+		numPartEntries++;
+	}
+
+	private void startPart() {
+		partSource = new StringBuilder();
+		partSource.append(HEADER_COMMENT).append('\n');
+		partSource.append("package ").append(PACKAGE_NAME).append(";\n");
+		partSource.append('\n');
+		partSource.append("import com.j256.simplemagic.endian.EndianType;\n");
+		partSource.append("import com.j256.simplemagic.entries.MagicEntry.OffsetInfo;\n");
+		partSource.append("import com.j256.simplemagic.types.NumberComparison;\n");
+		partSource.append("import com.j256.simplemagic.types.NumberType;\n");
+		partSource.append("import com.j256.simplemagic.types.RegexType;\n");
+		partSource.append("import com.j256.simplemagic.types.StringOperator;\n");
+		partSource.append("import com.j256.simplemagic.types.StringType;\n");
+		partSource.append("import com.j256.simplemagic.types.TestOperator;\n");
+		partSource.append('\n');
+		partSource.append("@SuppressWarnings(\"unused\")\n");
+		partSource.append("class ").append(partClassName(partClassNames.size())).append(" {\n");
+		numMethods = 0;
+		numMethodEntries = 0;
+		numPartEntries = 0;
+	}
+
+	private void writePart() throws IOException {
+		if (partSource == null) {
+			return;
+		}
+		if (numMethodEntries > 0) {
+			partSource.append("\t}\n");
+		}
+		partSource.append('\n');
+		partSource.append("\tstatic void " + ADD_ENTRIES_METHOD + "(MagicEntries entries, MagicEntry[] levelParents) {\n");
+		for (int i = 0; i < numMethods; i++) {
+			partSource.append("\t\t" + ADD_ENTRIES_METHOD + i + "(entries, levelParents);\n");
+		}
+		partSource.append("\t}\n");
+		partSource.append("}\n");
+		String partClassName = partClassName(partClassNames.size());
+		writeClass(partClassName, partSource);
+		partClassNames.add(partClassName);
+		partSource = null;
+	}
+
+	private void writeMainClass() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append(HEADER_COMMENT).append('\n');
+		sb.append("package ").append(PACKAGE_NAME).append(";\n");
+		sb.append('\n');
+		sb.append("class ").append(className).append(" {\n");
+		sb.append('\n');
+		for (Map.Entry<String, String> entry : matcherFields.entrySet()) {
+			sb.append("\tstatic final MagicMatcher ").append(entry.getValue());
+			sb.append(" = MagicType.matcherfromString(").append(stringSource(entry.getKey())).append(");\n");
+		}
+		sb.append('\n');
+		sb.append("\tstatic void " + ADD_ENTRIES_METHOD + "(MagicEntries entries) {\n");
+		sb.append("\t\tMagicEntry[] levelParents = new MagicEntry[MagicEntries.MAX_LEVELS];\n");
+		for (String partClassName : partClassNames) {
+			sb.append("\t\t").append(partClassName).append("." + ADD_ENTRIES_METHOD + "(entries, levelParents);\n");
+		}
+		sb.append("\t}\n");
+		sb.append("}\n");
+		writeClass(className, sb);
+	}
+
+	private String partClassName(int partNum) {
+		return className + partNum;
+	}
+
+	private void writeClass(String name, StringBuilder source) throws IOException {
+		Writer writer = new FileWriter(new File(packageDir, name + ".java"));
+		try {
+			writer.write(source.toString());
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -135,6 +135,18 @@ public enum MagicType {
 		this.matcher = matcher;
 	}
 
+	/**
+	 * Return the type string of one of our matchers or null if it is not one of ours.
+	 */
+	public static String stringFromMatcher(MagicMatcher matcher) {
+		for (MagicType type : values()) {
+			if (type.matcher == matcher) {
+				return type.name;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Find the associated matcher to the string.
 	 */
@@ -0,0 +1,214 @@
+package com.j256.simplemagic.entries;
+
+import com.j256.simplemagic.MatchLimits;
+import com.j256.simplemagic.entries.MagicEntry.ContentData;
+import com.j256.simplemagic.entries.MagicMatcher.MutableOffset;
+import com.j256.simplemagic.types.RegexState;
+
+/**
+ * State that is reused from one match to the next so the matching of the entries does not have to allocate objects for
+ * each entry. A context must only be used by one thread at a time which is why {@link MagicEntries} keeps one per
+ * thread.
+ * 
+ * @author graywatson
+ */
+class MatchContext implements MatchLimiter {
+
+	private static final int INITIAL_LEVELS = 8;
+	/** how many entries are tested between the checks of the time */
+	private static final int DEADLINE_CHECK_MASK = 0x1F;
+	private static final byte[] NO_BYTES = new byte[0];
+
+	final MutableOffset mutableOffset = new MutableOffset(0);
+	final ContentData contentData = new ContentData();
+	final RegexState regexState = new RegexState(this);
+	/** if we are only looking for the mime-type so the messages don't need to be rendered */
+	boolean mimeTypeOnly;
+	private MultiSearch multiSearch;
+	private MultiSearch.Hits searchHits;
+	private boolean searched;
+	private final LineIndex lineIndex = new LineIndex();
+	private boolean linesIndexed;
+	private final TextClassifier textClassifier = new TextClassifier();
+	private boolean textClassified;
+	private int[] indexedIndexes = new int[0];
+	private int[] entryIndexes = new int[0];
+	private int[][] childIndexes = new int[INITIAL_LEVELS][];
+	private boolean limited;
+	private boolean limitExceeded;
+	private long deadlineNanos;
+	private int numEntries;
+	private int maxEntries;
+	private long remainingScannedBytes;
+
+	/**
+	 * Start matching new content with the multi-search of the entries, which may be null.
+	 */
+	void startMatch(boolean mimeTypeOnly, MultiSearch multiSearch) {
+		this.mimeTypeOnly = mimeTypeOnly;
+		this.multiSearch = multiSearch;
+		this.searched = false;
+		this.linesIndexed = false;
+		this.textClassified = false;
+		this.limited = false;
+		this.limitExceeded = false;
+	}
+
+	/**
+	 * Finish matching the content. The context is kept by the thread so it must not hold on to the content, which may
+	 * be large, until the next match.
+	 */
+	void finishMatch() {
+		lineIndex.reset(NO_BYTES);
+		linesIndexed = false;
+	}
+
+	/**
+	 * Set the limits of the match that we are starting, which may be null if none.
+	 */
+	void setLimits(MatchLimits limits) {
+		if (limits == null) {
+			return;
+		}
+		limited = true;
+		deadlineNanos = (limits.getMaxMillis() > 0 ? System.nanoTime() + limits.getMaxMillis() * 1000000L : 0);
+		numEntries = 0;
+		maxEntries = limits.getMaxEntries();
+		remainingScannedBytes = (limits.getMaxScannedBytes() > 0 ? limits.getMaxScannedBytes() : Long.MAX_VALUE);
+	}
+
+	/**
+	 * Count an entry that is going to be tested and return true if it can be or false if one of the limits has been
+	 * exceeded.
+	 */
+	boolean testEntry() {
+		if (!limited) {
+			return true;
+		}
+		if (limitExceeded) {
+			return false;
+		}
+		numEntries++;
+		if ((maxEntries > 0 && numEntries > maxEntries)
+				|| ((numEntries & DEADLINE_CHECK_MASK) == 0 && isPastDeadline())) {
+			limitExceeded = true;
+		}
+		return !limitExceeded;
+	}
+
+	/**
+	 * Count the bytes that an entry is going to scan and return true if it can or false if one of the limits has been
+	 * exceeded. The time is always checked because scanning is slow.
+	 */
+	@Override
+	public boolean scanBytes(int numBytes) {
+		if (!limited) {
+			return true;
+		}
+		remainingScannedBytes -= numBytes;
+		if (remainingScannedBytes < 0 || isPastDeadline()) {
+			limitExceeded = true;
+		}
+		return !limitExceeded;
+	}
+
+	@Override
+	public boolean checkTime() {
+		if (!limited) {
+			return true;
+		}
+		if (!limitExceeded && isPastDeadline()) {
+			limitExceeded = true;
+		}
+		return !limitExceeded;
+	}
+
+	/**
+	 * Return true if one of the limits was exceeded so the match was stopped.
+	 */
+	boolean isLimitExceeded() {
+		return limitExceeded;
+	}
+
+	private boolean isPastDeadline() {
+		return (deadlineNanos != 0 && System.nanoTime() - deadlineNanos > 0);
+	}
+
+	/**
+	 * Return the index of the lines of the bytes which is shared by the entries that match the content.
+	 */
+	LineIndex getLineIndex(byte[] bytes) {
+		if (!linesIndexed) {
+			lineIndex.reset(bytes);
+			linesIndexed = true;
+		}
+		return lineIndex;
+	}
+
+	/**
+	 * Return the classifier of the text of the bytes which classifies them the first time this is called for the
+	 * content.
+	 */
+	TextClassifier getTextClassifier(byte[] bytes) {
+		if (!textClassified) {
+			textClassifier.classify(bytes);
+			textClassified = true;
+		}
+		return textClassifier;
+	}
+
+	/**
+	 * Return the hits of the searches in the bytes. The first time this is called for the content, the bytes are
+	 * searched and counted as scanned once for all of the searches. Returns null if the limits don't allow it.
+	 */
+	MultiSearch.Hits getSearchHits(byte[] bytes) {
+		if (!searched) {
+			if (!scanBytes(bytes.length)) {
+				return null;
+			}
+			if (searchHits == null) {
+				searchHits = new MultiSearch.Hits(multiSearch.getNumSearches());
+			}
+			multiSearch.findHits(bytes, searchHits);
+			searched = true;
+		}
+		return searchHits;
+	}
+
+	/**
+	 * Return an array to hold the indexes of the indexed top-level entries that is at least the size.
+	 */
+	int[] getIndexedIndexes(int size) {
+		if (indexedIndexes.length < size) {
+			indexedIndexes = new int[size];
+		}
+		return indexedIndexes;
+	}
+
+	/**
+	 * Return an array to hold the indexes of the top-level entries to test that is at least the size.
+	 */
+	int[] getEntryIndexes(int size) {
+		if (entryIndexes.length < size) {
+			entryIndexes = new int[size];
+		}
+		return entryIndexes;
+	}
+
+	/**
+	 * Return an array to hold the indexes of the children to test at the level that is at least the size.
+	 */
+	int[] getChildIndexes(int level, int size) {
+		if (level >= childIndexes.length) {
+			int[][] newChildIndexes = new int[Math.max(level + 1, childIndexes.length * 2)][];
+			System.arraycopy(childIndexes, 0, newChildIndexes, 0, childIndexes.length);
+			childIndexes = newChildIndexes;
+		}
+		int[] indexes = childIndexes[level];
+		if (indexes == null || indexes.length < size) {
+			indexes = new int[size];
+			childIndexes[level] = indexes;
+		}
+		return indexes;
+	}
+}
@@ -0,0 +1,22 @@
+package com.j256.simplemagic.entries;
+
+/**
+ * Counts the work that the matchers do against the {@link com.j256.simplemagic.MatchLimits} of a match so that the
+ * scans, whose length depends on the content, can stop when one of the limits has been exceeded.
+ * 
+ * @author graywatson
+ */
+public interface MatchLimiter {
+
+	/**
+	 * Count the bytes that are going to be scanned and return true if they can be or false if one of the limits has
+	 * been exceeded.
+	 */
+	public boolean scanBytes(int numBytes);
+
+	/**
+	 * Return true if the matching can go on or false if one of the limits has been exceeded, the time limit in
+	 * particular. This is called periodically by the scans which can take longer than the bytes they are counted for.
+	 */
+	public boolean checkTime();
+}
@@ -0,0 +1,54 @@
+package com.j256.simplemagic.entries;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Set of the mime-types that a restricted {@link MagicEntries} is allowed to return. Each of the mime-types is either
+ * an exact mime-type such as "image/png" or a prefix ending with '*' such as "image/*". The mime-types are compared
+ * ignoring case.
+ * 
+ * @author graywatson
+ */
+class MimeTypeFilter {
+
+	private final Set<String> mimeTypes = new HashSet<String>();
+	private final List<String> prefixes = new ArrayList<String>();
+
+	public MimeTypeFilter(Collection<String> mimeTypes) {
+		for (String mimeType : mimeTypes) {
+			if (mimeType == null) {
+				continue;
+			}
+			mimeType = mimeType.toLowerCase(Locale.ENGLISH);
+			if (mimeType.endsWith("*")) {
+				prefixes.add(mimeType.substring(0, mimeType.length() - 1));
+			} else {
+				this.mimeTypes.add(mimeType);
+			}
+		}
+	}
+
+	/**
+	 * Return true if the mime-type is allowed by the filter.
+	 */
+	public boolean isAllowed(String mimeType) {
+		if (mimeType == null) {
+			return false;
+		}
+		mimeType = mimeType.toLowerCase(Locale.ENGLISH);
+		if (mimeTypes.contains(mimeType)) {
+			return true;
+		}
+		for (String prefix : prefixes) {
+			if (mimeType.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,274 @@
+package com.j256.simplemagic.entries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton which finds all of the search strings of the entries in one pass over the content instead of
+ * each search entry scanning the content itself. The search strings are found with their whitespace removed and their
+ * characters lower-cased in the content with its whitespace removed and its characters lower-cased. Every match of a
+ * search, with or without its whitespace and case-insensitive flags, is at one of these hits so the search only has
+ * to be tried at them.
+ * 
+ * @author graywatson
+ */
+class MultiSearch {
+
+	private static final int[] EMPTY_OFFSETS = new int[0];
+	/** lower-case version of each byte value */
+	private static final int[] FOLDED_BYTES = new int[256];
+
+	static {
+		for (int i = 0; i < FOLDED_BYTES.length; i++) {
+			char lower = Character.toLowerCase((char) i);
+			FOLDED_BYTES[i] = (lower <= 0xFF ? lower : i);
+		}
+	}
+
+	private final Map<String, Integer> searchIds = new HashMap<String, Integer>();
+	private final List<byte[]> searches = new ArrayList<byte[]>();
+	/** class of each byte of the content in our transitions, 0 if in none of the searches, or -1 if whitespace */
+	private final int[] byteClasses = new int[256];
+	private int numClasses;
+	/** next state for each state and byte class */
+	private int[] transitions;
+	/** ids of the searches found when we reach each state or null if none */
+	private int[][] stateSearchIds;
+	private int[] searchLengths;
+	/** mask for our ring of the recent offsets, one less than a power of 2 at least as big as the longest search */
+	private int offsetMask;
+
+	/**
+	 * Add a search string and return its id or -1 if it can't be found by this search. The same id is returned for
+	 * search strings which are the same without their whitespace and case.
+	 */
+	public int add(String searchString) {
+		StringBuilder sb = new StringBuilder(searchString.length());
+		for (int i = 0; i < searchString.length(); i++) {
+			char ch = searchString.charAt(i);
+			if (ch > 0xFF) {
+				// can never match a byte
+				return -1;
+			}
+			if (!Character.isWhitespace(ch)) {
+				sb.append((char) FOLDED_BYTES[ch]);
+			}
+		}
+		if (sb.length() == 0) {
+			return -1;
+		}
+		String key = sb.toString();
+		Integer id = searchIds.get(key);
+		if (id == null) {
+			id = searches.size();
+			byte[] bytes = new byte[key.length()];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) key.charAt(i);
+			}
+			searches.add(bytes);
+			searchIds.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Build the automaton after all of the search strings have been added.
+	 */
+	public void build() {
+		// each byte value that is in a search gets its own class
+		int maxLength = 1;
+		int numStates = 1;
+		numClasses = 1;
+		for (byte[] search : searches) {
+			for (byte value : search) {
+				if (byteClasses[value & 0xFF] == 0) {
+					byteClasses[value & 0xFF] = numClasses++;
+				}
+			}
+			maxLength = Math.max(maxLength, search.length);
+			numStates += search.length;
+		}
+		for (int i = 0; i < byteClasses.length; i++) {
+			if (Character.isWhitespace((char) i)) {
+				byteClasses[i] = -1;
+			} else {
+				byteClasses[i] = byteClasses[FOLDED_BYTES[i]];
+			}
+		}
+
+		// build the trie of the searches
+		int[] next = new int[numStates * numClasses];
+		Arrays.fill(next, -1);
+		List<int[]> outputs = new ArrayList<int[]>();
+		outputs.add(null);
+		searchLengths = new int[searches.size()];
+		for (int id = 0; id < searches.size(); id++) {
+			byte[] search = searches.get(id);
+			searchLengths[id] = search.length;
+			int state = 0;
+			for (byte value : search) {
+				int index = state * numClasses + byteClasses[value & 0xFF];
+				if (next[index] < 0) {
+					next[index] = outputs.size();
+					outputs.add(null);
+				}
+				state = next[index];
+			}
+			outputs.set(state, addId(outputs.get(state), id));
+		}
+		numStates = outputs.size();
+
+		// now go breadth first to turn the trie into a DFA using the failure links
+		int[] failures = new int[numStates];
+		int[] queue = new int[numStates];
+		int head = 0;
+		int tail = 0;
+		for (int c = 0; c < numClasses; c++) {
+			if (next[c] < 0) {
+				next[c] = 0;
+			} else {
+				failures[next[c]] = 0;
+				queue[tail++] = next[c];
+			}
+		}
+		while (head < tail) {
+			int state = queue[head++];
+			int[] failureIds = outputs.get(failures[state]);
+			if (failureIds != null) {
+				int[] ids = outputs.get(state);
+				for (int id : failureIds) {
+					ids = addId(ids, id);
+				}
+				outputs.set(state, ids);
+			}
+			for (int c = 0; c < numClasses; c++) {
+				int index = state * numClasses + c;
+				int failureNext = next[failures[state] * numClasses + c];
+				if (next[index] < 0) {
+					next[index] = failureNext;
+				} else {
+					failures[next[index]] = failureNext;
+					queue[tail++] = next[index];
+				}
+			}
+		}
+
+		this.transitions = Arrays.copyOf(next, numStates * numClasses);
+		this.stateSearchIds = outputs.toArray(new int[numStates][]);
+		int ringSize = 1;
+		while (ringSize < maxLength) {
+			ringSize *= 2;
+		}
+		this.offsetMask = ringSize - 1;
+	}
+
+	/**
+	 * Return the number of different searches.
+	 */
+	public int getNumSearches() {
+		return searches.size();
+	}
+
+	/**
+	 * Find all of the searches in the bytes and record the offsets of the first non-whitespace byte of each of their
+	 * hits in ascending order.
+	 */
+	public void findHits(byte[] bytes, Hits hits) {
+		hits.clear();
+		int[] recentOffsets = hits.getRecentOffsets(offsetMask + 1);
+		int state = 0;
+		int numNonWhitespace = 0;
+		for (int offset = 0; offset < bytes.length; offset++) {
+			int byteClass = byteClasses[bytes[offset] & 0xFF];
+			if (byteClass < 0) {
+				continue;
+			}
+			recentOffsets[numNonWhitespace & offsetMask] = offset;
+			numNonWhitespace++;
+			state = transitions[state * numClasses + byteClass];
+			int[] ids = stateSearchIds[state];
+			if (ids != null) {
+				for (int id : ids) {
+					hits.add(id, recentOffsets[(numNonWhitespace - searchLengths[id]) & offsetMask]);
+				}
+			}
+		}
+	}
+
+	private static int[] addId(int[] ids, int id) {
+		if (ids == null) {
+			return new int[] { id };
+		}
+		ids = Arrays.copyOf(ids, ids.length + 1);
+		ids[ids.length - 1] = id;
+		return ids;
+	}
+
+	/**
+	 * Offsets of the hits of each of the searches in some content. These are reused from one content to the next.
+	 */
+	static class Hits {
+		private final int[][] offsets;
+		private final int[] numOffsets;
+		/** ids of the searches which have hits so we only have to clear them */
+		private final int[] hitIds;
+		private int numHitIds;
+		private int[] recentOffsets = EMPTY_OFFSETS;
+
+		public Hits(int numSearches) {
+			this.offsets = new int[numSearches][];
+			this.numOffsets = new int[numSearches];
+			this.hitIds = new int[numSearches];
+		}
+
+		/**
+		 * Return the offsets of the hits of the search. Only the first {@link #getNumOffsets(int)} are valid.
+		 */
+		public int[] getOffsets(int id) {
+			int[] searchOffsets = offsets[id];
+			if (searchOffsets == null) {
+				return EMPTY_OFFSETS;
+			} else {
+				return searchOffsets;
+			}
+		}
+
+		public int getNumOffsets(int id) {
+			return numOffsets[id];
+		}
+
+		void add(int id, int offset) {
+			int num = numOffsets[id];
+			if (num == 0) {
+				hitIds[numHitIds++] = id;
+			}
+			int[] searchOffsets = offsets[id];
+			if (searchOffsets == null) {
+				searchOffsets = new int[4];
+				offsets[id] = searchOffsets;
+			} else if (num == searchOffsets.length) {
+				searchOffsets = Arrays.copyOf(searchOffsets, num * 2);
+				offsets[id] = searchOffsets;
+			}
+			searchOffsets[num] = offset;
+			numOffsets[id] = num + 1;
+		}
+
+		void clear() {
+			for (int i = 0; i < numHitIds; i++) {
+				numOffsets[hitIds[i]] = 0;
+			}
+			numHitIds = 0;
+		}
+
+		int[] getRecentOffsets(int size) {
+			if (recentOffsets.length < size) {
+				recentOffsets = new int[size];
+			}
+			return recentOffsets;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.j256.simplemagic.entries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of the entries which require particular bytes at a fixed offset or at a fixed offset from the parent's match.
+ * The entries are grouped by their offset, the number of bytes, and the and-mask so the value in the content is
+ * extracted once per group and then looked up in a hash table to get the entries that may match. It is used for the
+ * top-level entries and for the children of an entry.
+ * 
+ * @author graywatson
+ */
+class OffsetValueIndex {
+
+	/** we pack the bytes into a long so only use up to this many of the required bytes */
+	private static final int MAX_KEY_BYTES = 8;
+	private static final int[] EMPTY_INDEXES = new int[0];
+
+	private final List<Group> groups = new ArrayList<Group>();
+
+	/**
+	 * Add the index of an entry that requires the bytes at the offset. If the offset is added then it is relative to
+	 * the previous offset passed to {@link #findIndexes(byte[], int, int[], int)}. If the mask is not null then it is and-ed with
+	 * the bytes from the content before they are compared.
+	 */
+	public void add(int offset, boolean addOffset, byte[] requiredBytes, byte[] mask, int entryIndex) {
+		int length = Math.min(requiredBytes.length, MAX_KEY_BYTES);
+		long maskValue = (mask == null ? -1L : packBytes(mask, 0, length));
+		Group group = null;
+		for (Group existing : groups) {
+			if (existing.offset == offset && existing.addOffset == addOffset && existing.length == length
+					&& existing.mask == maskValue) {
+				group = existing;
+				break;
+			}
+		}
+		if (group == null) {
+			group = new Group(offset, addOffset, length, maskValue);
+			groups.add(group);
+		}
+		group.table.add(packBytes(requiredBytes, 0, length), entryIndex);
+		group.allIndexes = Arrays.copyOf(group.allIndexes, group.allIndexes.length + 1);
+		group.allIndexes[group.allIndexes.length - 1] = entryIndex;
+	}
+
+	/**
+	 * Add the indexes of the entries whose required bytes are in the content to the indexes array starting at the
+	 * count and return the new count. The indexes are not sorted and the array must be able to hold all of the indexes
+	 * in this index. The previous offset is added to the offset of the entries that were added with add-offset set.
+	 */
+	public int findIndexes(byte[] bytes, int prevOffset, int[] indexes, int count) {
+		for (Group group : groups) {
+			int offset = group.offset;
+			if (group.addOffset) {
+				offset += prevOffset;
+			}
+			int[] groupIndexes;
+			if (offset < 0) {
+				// let the entries handle the negative offset themselves
+				groupIndexes = group.allIndexes;
+			} else if (offset + group.length > bytes.length) {
+				continue;
+			} else {
+				groupIndexes = group.table.get(packBytes(bytes, offset, group.length) & group.mask);
+				if (groupIndexes == null) {
+					continue;
+				}
+			}
+			System.arraycopy(groupIndexes, 0, indexes, count, groupIndexes.length);
+			count += groupIndexes.length;
+		}
+		return count;
+	}
+
+	private static long packBytes(byte[] bytes, int offset, int length) {
+		long value = 0;
+		for (int i = 0; i < length; i++) {
+			value = (value << 8) | (bytes[offset + i] & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * Entries that share the same offset, length, and mask.
+	 */
+	private static class Group {
+		final int offset;
+		final boolean addOffset;
+		final int length;
+		final long mask;
+		final ValueTable table = new ValueTable();
+		int[] allIndexes = EMPTY_INDEXES;
+
+		public Group(int offset, boolean addOffset, int length, long mask) {
+			this.offset = offset;
+			this.addOffset = addOffset;
+			this.length = length;
+			this.mask = mask;
+		}
+	}
+
+	/**
+	 * Open addressing hash table from the packed value to the entry indexes so we don't have to box the values.
+	 */
+	private static class ValueTable {
+		private long[] keys = new long[8];
+		private int[][] values = new int[8][];
+		private int size;
+
+		void add(long key, int index) {
+			int slot = findSlot(keys, values, key);
+			int[] indexes = values[slot];
+			if (indexes == null) {
+				keys[slot] = key;
+				values[slot] = new int[] { index };
+				size++;
+				if (size * 2 > keys.length) {
+					resize();
+				}
+			} else {
+				indexes = Arrays.copyOf(indexes, indexes.length + 1);
+				indexes[indexes.length - 1] = index;
+				values[slot] = indexes;
+			}
+		}
+
+		int[] get(long key) {
+			return values[findSlot(keys, values, key)];
+		}
+
+		private void resize() {
+			long[] newKeys = new long[keys.length * 2];
+			int[][] newValues = new int[keys.length * 2][];
+			for (int i = 0; i < keys.length; i++) {
+				if (values[i] != null) {
+					int slot = findSlot(newKeys, newValues, keys[i]);
+					newKeys[slot] = keys[i];
+					newValues[slot] = values[i];
+				}
+			}
+			keys = newKeys;
+			values = newValues;
+		}
+
+		/**
+		 * Return the slot which has the key or the empty slot where it should go.
+		 */
+		private static int findSlot(long[] keys, int[][] values, long key) {
+			int mask = keys.length - 1;
+			long hash = key * 0x9E3779B97F4A7C15L;
+			int slot = (int) (hash ^ (hash >>> 32)) & mask;
+			while (values[slot] != null && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+	}
+}
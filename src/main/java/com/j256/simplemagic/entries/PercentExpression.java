@@ -1,9 +1,10 @@
 package com.j256.simplemagic.entries;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.Format;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Representation of our percent expression used by the {@link MagicFormatter} class.
@@ -15,8 +16,14 @@ public class PercentExpression {
 	private final static String ZERO_CHARS = "00000000000000000000000000000000000000000000000000000000000000000000000";
 	private final static String SPACE_CHARS = "                                                                      ";
 
-	private final static Pattern FORMAT_PATTERN = Pattern.compile("%([0#+ -]*)([0-9]*)(\\.([0-9]+))?(["
-			+ MagicFormatter.PATTERN_MODIFIERS + "]*)([" + MagicFormatter.FINAL_PATTERN_CHARS + "])");
+	private final static String FLAG_CHARS = "0#+ -";
+	/** flags of the expression in the compiled magic entries */
+	private static final int JUST_VALUE_FLAG = 1 << 0;
+	private static final int ALTERNATIVE_FORM_FLAG = 1 << 1;
+	private static final int ZERO_PREFIX_FLAG = 1 << 2;
+	private static final int PLUS_PREFIX_FLAG = 1 << 3;
+	private static final int SPACE_PREFIX_FLAG = 1 << 4;
+	private static final int LEFT_ADJUST_FLAG = 1 << 5;
 
 	private final String expression;
 	private final boolean justValue;
@@ -26,6 +33,7 @@ public class PercentExpression {
 	private final boolean spacePrefix;
 	private final boolean leftAdjust;
 	private final int totalWidth;
+	private final int dotPrecision;
 	private final int truncateWidth;
 	private final char patternChar;
 	private final Format decimalFormat;
@@ -37,8 +45,25 @@ public class PercentExpression {
 	 */
 	PercentExpression(String expression) {
 		this.expression = expression;
-		Matcher matcher = FORMAT_PATTERN.matcher(expression);
-		if (!matcher.matches() || matcher.group(6) == null || matcher.group(6).length() != 1) {
+		// %[0#+ -]*[0-9]*(.[0-9]+)?[lqh]*[bcdeEfFgGiosuxX]
+		int flagsEnd = 1;
+		while (flagsEnd < expression.length() && FLAG_CHARS.indexOf(expression.charAt(flagsEnd)) >= 0) {
+			flagsEnd++;
+		}
+		int widthEnd = skipDigits(expression, flagsEnd);
+		int precisionStart = -1;
+		int pos = widthEnd;
+		if (pos < expression.length() && expression.charAt(pos) == '.') {
+			precisionStart = pos + 1;
+			pos = skipDigits(expression, precisionStart);
+		}
+		int precisionEnd = pos;
+		// the modifiers are ignored
+		while (pos < expression.length() && MagicFormatter.PATTERN_MODIFIERS.indexOf(expression.charAt(pos)) >= 0) {
+			pos++;
+		}
+		if (!expression.startsWith("%") || precisionEnd == precisionStart || pos != expression.length() - 1
+				|| MagicFormatter.FINAL_PATTERN_CHARS.indexOf(expression.charAt(pos)) < 0) {
 			// may never get here but let's be careful
 			this.justValue = true;
 			this.alternativeForm = false;
@@ -48,6 +73,7 @@ public class PercentExpression {
 			this.spacePrefix = false;
 			this.leftAdjust = false;
 			this.totalWidth = -1;
+			this.dotPrecision = -1;
 			this.truncateWidth = -1;
 			this.decimalFormat = null;
 			this.altDecimalFormat = null;
@@ -55,51 +81,92 @@ public class PercentExpression {
 		}
 		this.justValue = false;
 
-		String flags = matcher.group(1);
-		this.alternativeForm = readFlag(flags, '#');
-		this.zeroPrefix = readFlag(flags, '0');
-		this.plusPrefix = readFlag(flags, '+');
+		this.alternativeForm = readFlag(expression, flagsEnd, '#');
+		this.zeroPrefix = readFlag(expression, flagsEnd, '0');
+		this.plusPrefix = readFlag(expression, flagsEnd, '+');
 		if (this.plusPrefix) {
 			// + overrides space
 			this.spacePrefix = false;
 		} else {
-			this.spacePrefix = readFlag(flags, ' ');
-		}
-		this.leftAdjust = readFlag(flags, '-');
-		this.totalWidth = readPrecision(matcher.group(2), -1);
-		int dotPrecision = readPrecision(matcher.group(4), -1);
-		// 5 is ignored
-		this.patternChar = matcher.group(6).charAt(0);
-		switch (this.patternChar) {
-			case 'e':
-			case 'E': {
-				this.decimalFormat = scientificFormat(dotPrecision);
-				this.altDecimalFormat = null;
-				break;
-			}
-			case 'f':
-			case 'F': {
-				this.decimalFormat = decimalFormat(dotPrecision);
-				this.altDecimalFormat = null;
-				break;
-			}
-			case 'g':
-			case 'G': {
-				// will take the shorter of the two
-				this.decimalFormat = decimalFormat(dotPrecision);
-				this.altDecimalFormat = scientificFormat(dotPrecision);
-				break;
-			}
-			default:
-				this.decimalFormat = null;
-				this.altDecimalFormat = null;
-				break;
+			this.spacePrefix = readFlag(expression, flagsEnd, ' ');
 		}
-		if (patternChar == 's' || patternChar == 'b') {
-			this.truncateWidth = dotPrecision;
+		this.leftAdjust = readFlag(expression, flagsEnd, '-');
+		this.totalWidth = readPrecision(expression, flagsEnd, widthEnd);
+		if (precisionStart < 0) {
+			this.dotPrecision = -1;
 		} else {
-			this.truncateWidth = -1;
+			this.dotPrecision = readPrecision(expression, precisionStart, precisionEnd);
+		}
+		this.patternChar = expression.charAt(pos);
+		this.decimalFormat = findDecimalFormat();
+		this.altDecimalFormat = findAltDecimalFormat();
+		this.truncateWidth = findTruncateWidth();
+	}
+
+	PercentExpression(String expression, int flags, int totalWidth, int dotPrecision, char patternChar) {
+		this.expression = expression;
+		this.justValue = ((flags & JUST_VALUE_FLAG) != 0);
+		this.alternativeForm = ((flags & ALTERNATIVE_FORM_FLAG) != 0);
+		this.zeroPrefix = ((flags & ZERO_PREFIX_FLAG) != 0);
+		this.plusPrefix = ((flags & PLUS_PREFIX_FLAG) != 0);
+		this.spacePrefix = ((flags & SPACE_PREFIX_FLAG) != 0);
+		this.leftAdjust = ((flags & LEFT_ADJUST_FLAG) != 0);
+		this.totalWidth = totalWidth;
+		this.dotPrecision = dotPrecision;
+		this.patternChar = patternChar;
+		this.decimalFormat = findDecimalFormat();
+		this.altDecimalFormat = findAltDecimalFormat();
+		this.truncateWidth = findTruncateWidth();
+	}
+
+	/**
+	 * Write the decoded expression to the compiled magic entries.
+	 */
+	void write(DataOutput output) throws IOException {
+		output.writeUTF(expression);
+		output.writeByte(findFlags());
+		output.writeInt(totalWidth);
+		output.writeInt(dotPrecision);
+		output.writeChar(patternChar);
+	}
+
+	/**
+	 * Return the Java source which creates the decoded expression without parsing it again.
+	 */
+	String getSource() {
+		return "new PercentExpression(" + MagicSourceGenerator.stringSource(expression) + ", " + findFlags() + ", "
+				+ totalWidth + ", " + dotPrecision + ", (char) " + (int) patternChar + ")";
+	}
+
+	/**
+	 * Read an expression that was written by {@link #write(DataOutput)} without parsing it again.
+	 */
+	static PercentExpression read(DataInput input) throws IOException {
+		return new PercentExpression(input.readUTF(), input.readByte(), input.readInt(), input.readInt(),
+				input.readChar());
+	}
+
+	private int findFlags() {
+		int flags = 0;
+		if (justValue) {
+			flags |= JUST_VALUE_FLAG;
+		}
+		if (alternativeForm) {
+			flags |= ALTERNATIVE_FORM_FLAG;
+		}
+		if (zeroPrefix) {
+			flags |= ZERO_PREFIX_FLAG;
+		}
+		if (plusPrefix) {
+			flags |= PLUS_PREFIX_FLAG;
 		}
+		if (spacePrefix) {
+			flags |= SPACE_PREFIX_FLAG;
+		}
+		if (leftAdjust) {
+			flags |= LEFT_ADJUST_FLAG;
+		}
+		return flags;
 	}
 
 	public void append(Object extractedValue, StringBuilder sb) {
@@ -246,26 +313,70 @@ public class PercentExpression {
 		return expression;
 	}
 
-	private static int readPrecision(String string, int defaultVal) {
-		if (string == null || string.length() == 0) {
-			return defaultVal;
+	private Format findDecimalFormat() {
+		switch (patternChar) {
+			case 'e':
+			case 'E':
+				return scientificFormat(dotPrecision);
+			case 'f':
+			case 'F':
+			case 'g':
+			case 'G':
+				return decimalFormat(dotPrecision);
+			default:
+				return null;
 		}
-		try {
-			return Integer.parseInt(string);
-		} catch (NumberFormatException e) {
-			// ignored
-			return defaultVal;
+	}
+
+	private Format findAltDecimalFormat() {
+		if (patternChar == 'g' || patternChar == 'G') {
+			// will take the shorter of the two
+			return scientificFormat(dotPrecision);
+		} else {
+			return null;
 		}
 	}
 
-	private static boolean readFlag(String flags, char flagChar) {
-		if (flags != null && flags.indexOf(flagChar) >= 0) {
-			return true;
+	private int findTruncateWidth() {
+		if (patternChar == 's' || patternChar == 'b') {
+			return dotPrecision;
 		} else {
-			return false;
+			return -1;
 		}
 	}
 
+	private static int skipDigits(String string, int pos) {
+		while (pos < string.length() && string.charAt(pos) >= '0' && string.charAt(pos) <= '9') {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Read the digits from start to end or return -1 if there are none or they are too large.
+	 */
+	private static int readPrecision(String string, int start, int end) {
+		if (start == end) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			value = value * 10 + (string.charAt(i) - '0');
+			if (value > Integer.MAX_VALUE) {
+				return -1;
+			}
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Return true if the flag character is in the flags, which start after the %.
+	 */
+	private static boolean readFlag(String expression, int flagsEnd, char flagChar) {
+		int index = expression.indexOf(flagChar, 1);
+		return (index >= 0 && index < flagsEnd);
+	}
+
 	private void appendHex(StringBuilder sb, boolean upper, Object extractedValue) {
 		long value = ((Number) extractedValue).longValue();
 		String sign = null;
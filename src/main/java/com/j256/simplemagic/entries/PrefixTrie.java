@@ -0,0 +1,98 @@
+package com.j256.simplemagic.entries;
+
+import java.util.Arrays;
+
+/**
+ * Trie of the starting bytes of the top-level entries. It allows us to look up all of the entries whose starting bytes
+ * match the start of the content by walking the content once.
+ * 
+ * @author graywatson
+ */
+class PrefixTrie {
+
+	private static final int[] EMPTY_INDEXES = new int[0];
+
+	private final Node[] rootChildren = new Node[256];
+
+	/**
+	 * Add the index of an entry whose starting bytes are the prefix.
+	 */
+	public void add(byte[] prefix, int entryIndex) {
+		Node node = rootChildren[prefix[0] & 0xFF];
+		if (node == null) {
+			node = new Node(prefix[0]);
+			rootChildren[prefix[0] & 0xFF] = node;
+		}
+		for (int i = 1; i < prefix.length; i++) {
+			node = node.findOrAddChild(prefix[i]);
+		}
+		node.addIndex(entryIndex);
+	}
+
+	/**
+	 * Add the indexes of the entries whose prefixes match the start of the bytes to the indexes array starting at the
+	 * count and return the new count. The indexes are not sorted since the shorter prefixes may come after the longer
+	 * ones in the file. The array must be able to hold all of the indexes in the trie.
+	 */
+	public int findIndexes(byte[] bytes, int[] indexes, int count) {
+		if (bytes.length == 0) {
+			return count;
+		}
+		Node node = rootChildren[bytes[0] & 0xFF];
+		for (int pos = 1; node != null; pos++) {
+			System.arraycopy(node.indexes, 0, indexes, count, node.numIndexes);
+			count += node.numIndexes;
+			if (pos >= bytes.length) {
+				break;
+			}
+			node = node.findChild(bytes[pos]);
+		}
+		return count;
+	}
+
+	/**
+	 * Node in our trie which matches a particular byte.
+	 */
+	private static class Node {
+		final byte value;
+		Node[] children;
+		int numChildren;
+		int[] indexes = EMPTY_INDEXES;
+		int numIndexes;
+
+		public Node(byte value) {
+			this.value = value;
+		}
+
+		Node findChild(byte childValue) {
+			for (int i = 0; i < numChildren; i++) {
+				if (children[i].value == childValue) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		Node findOrAddChild(byte childValue) {
+			Node child = findChild(childValue);
+			if (child != null) {
+				return child;
+			}
+			if (children == null) {
+				children = new Node[2];
+			} else if (numChildren == children.length) {
+				children = Arrays.copyOf(children, numChildren * 2);
+			}
+			child = new Node(childValue);
+			children[numChildren++] = child;
+			return child;
+		}
+
+		void addIndex(int index) {
+			if (numIndexes == indexes.length) {
+				indexes = Arrays.copyOf(indexes, numIndexes == 0 ? 1 : numIndexes * 2);
+			}
+			indexes[numIndexes++] = index;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.j256.simplemagic.entries;
+
+/**
+ * Matcher which searches for its test-value in a range of the content. The long searches of all of the entries are
+ * found in one pass over the content and then each entry only tries the hits of its search string.
+ * 
+ * @author graywatson
+ */
+public interface SearchMatcher extends MagicMatcher {
+
+	/**
+	 * Return the string that the test-value searches for in a range of the content or null if the range is too small
+	 * for it to be worth indexing. The search strings of all of the entries are found in one pass over the content and
+	 * then {@link #isSearchMatch(Object, MutableOffset, byte[], int[], int, MatchLimiter)} is called instead of
+	 * {@link #isSearchMatch(Object, MutableOffset, byte[], MatchLimiter)}.
+	 */
+	public String getSearchString(Object testValue);
+
+	/**
+	 * Matches like {@link #isMatch(Object, Long, boolean, Object, MutableOffset, byte[])} but the bytes that are
+	 * searched are counted by the limiter, which may be null if none.
+	 * 
+	 * @return The extracted-value object, or null if no match.
+	 */
+	public Object isSearchMatch(Object testValue, MutableOffset offset, byte[] bytes, MatchLimiter limiter);
+
+	/**
+	 * Matches like {@link #isSearchMatch(Object, MutableOffset, byte[], MatchLimiter)} but the search only has to be
+	 * tried at the hits of the search string. The hit offsets are in ascending order and are the offsets of the first
+	 * non-whitespace character of the places in the content where the search string, without its whitespace and
+	 * ignoring case, was found with the whitespace of the content ignored.
+	 * 
+	 * @return The extracted-value object, or null if no match.
+	 */
+	public Object isSearchMatch(Object testValue, MutableOffset offset, byte[] bytes, int[] hitOffsets, int numHits,
+			MatchLimiter limiter);
+}
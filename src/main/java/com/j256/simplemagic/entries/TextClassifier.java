@@ -0,0 +1,238 @@
+package com.j256.simplemagic.entries;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.j256.simplemagic.LineTerminator;
+import com.j256.simplemagic.TextEncoding;
+
+/**
+ * Classifies the encoding of the text of some content, or that it is binary, and finds its line terminators in one pass
+ * over its bytes. Like file(1), content is text if it has none of the control characters that don't appear in text.
+ * The magic entries whose tests only make sense for text are not tested on binary content.
+ * 
+ * <p>
+ * A classifier is reused from one content to the next so it must only be used by one thread at a time.
+ * </p>
+ * 
+ * @author graywatson
+ */
+public class TextClassifier {
+
+	/** byte which is printable or a control character that appears in text */
+	private static final byte TEXT = 0;
+	/** control character that does not appear in text */
+	private static final byte BINARY = 1;
+	/** UTF-8 continuation byte */
+	private static final byte CONTINUATION = 2;
+	/** UTF-8 lead bytes of 2, 3, and 4 byte sequences */
+	private static final byte LEAD_2 = 3;
+	private static final byte LEAD_3 = 4;
+	private static final byte LEAD_4 = 5;
+	/** high byte that is never in UTF-8 */
+	private static final byte NOT_UTF8 = 6;
+	private static final byte NEWLINE = 7;
+	private static final byte RETURN = 8;
+	private static final byte[] BYTE_CLASSES = new byte[256];
+
+	private static final int CRLF_FLAG = 1 << 0;
+	private static final int CR_FLAG = 1 << 1;
+	private static final int LF_FLAG = 1 << 2;
+
+	static {
+		for (int i = 0; i < 0x20; i++) {
+			BYTE_CLASSES[i] = BINARY;
+		}
+		// bell, backspace, tab, form-feed, and escape
+		for (int ch : new int[] { 7, 8, 9, 12, 27 }) {
+			BYTE_CLASSES[ch] = TEXT;
+		}
+		BYTE_CLASSES['\n'] = NEWLINE;
+		BYTE_CLASSES['\r'] = RETURN;
+		BYTE_CLASSES[0x7F] = BINARY;
+		for (int i = 0x80; i < 0xC0; i++) {
+			BYTE_CLASSES[i] = CONTINUATION;
+		}
+		for (int i = 0xC0; i < 0x100; i++) {
+			if (i < 0xC2 || i > 0xF4) {
+				BYTE_CLASSES[i] = NOT_UTF8;
+			} else if (i < 0xE0) {
+				BYTE_CLASSES[i] = LEAD_2;
+			} else if (i < 0xF0) {
+				BYTE_CLASSES[i] = LEAD_3;
+			} else {
+				BYTE_CLASSES[i] = LEAD_4;
+			}
+		}
+	}
+
+	private TextEncoding encoding;
+	private int lineTerminatorFlags;
+
+	/**
+	 * Classify the bytes of the content.
+	 */
+	public void classify(byte[] bytes) {
+		lineTerminatorFlags = 0;
+		encoding = classifyUtf16(bytes);
+		if (encoding != null) {
+			return;
+		}
+		boolean high = false;
+		boolean notIso8859 = false;
+		boolean utf8 = true;
+		// number of continuation bytes that the UTF-8 sequence still needs
+		int needed = 0;
+		int flags = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			if (needed == 0) {
+				// most text is printable ASCII so we skip over it without the class lookups
+				i = ByteScanner.skipPrintableAscii(bytes, i, bytes.length);
+				if (i >= bytes.length) {
+					break;
+				}
+			}
+			int value = bytes[i] & 0xFF;
+			byte byteClass = BYTE_CLASSES[value];
+			if (byteClass == TEXT || byteClass >= NEWLINE) {
+				if (needed > 0) {
+					utf8 = false;
+					needed = 0;
+				}
+				if (byteClass == NEWLINE) {
+					flags |= LF_FLAG;
+				} else if (byteClass == RETURN) {
+					if (i + 1 < bytes.length && bytes[i + 1] == '\n') {
+						flags |= CRLF_FLAG;
+						i++;
+					} else {
+						flags |= CR_FLAG;
+					}
+				}
+				continue;
+			}
+			if (byteClass == BINARY) {
+				// most binary content has one of these early on
+				encoding = TextEncoding.BINARY;
+				return;
+			}
+			high = true;
+			if (value < 0xA0) {
+				notIso8859 = true;
+			}
+			if (!utf8) {
+				continue;
+			}
+			if (byteClass == CONTINUATION) {
+				if (needed > 0) {
+					needed--;
+				} else {
+					utf8 = false;
+				}
+			} else if (needed > 0 || byteClass == NOT_UTF8) {
+				utf8 = false;
+			} else {
+				needed = byteClass - CONTINUATION;
+			}
+		}
+		lineTerminatorFlags = flags;
+		if (!high) {
+			encoding = TextEncoding.ASCII;
+		} else if (utf8) {
+			// a character that is cut off at the end of the bytes is fine
+			encoding = TextEncoding.UTF_8;
+		} else if (notIso8859) {
+			encoding = TextEncoding.EXTENDED_ASCII;
+		} else {
+			encoding = TextEncoding.ISO_8859;
+		}
+	}
+
+	/**
+	 * Return the encoding of the content that was classified.
+	 */
+	public TextEncoding getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Return the line terminators of the content that was classified. This is empty if it has none or is binary.
+	 */
+	public Set<LineTerminator> getLineTerminators() {
+		EnumSet<LineTerminator> terminators = EnumSet.noneOf(LineTerminator.class);
+		if ((lineTerminatorFlags & CRLF_FLAG) != 0) {
+			terminators.add(LineTerminator.CRLF);
+		}
+		if ((lineTerminatorFlags & CR_FLAG) != 0) {
+			terminators.add(LineTerminator.CR);
+		}
+		if ((lineTerminatorFlags & LF_FLAG) != 0) {
+			terminators.add(LineTerminator.LF);
+		}
+		return Collections.unmodifiableSet(terminators);
+	}
+
+	/**
+	 * Return true if the characters of a pattern are ASCII or UTF-8 text.
+	 */
+	public static boolean isText(CharSequence chars) {
+		byte[] bytes = new byte[chars.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			char ch = chars.charAt(i);
+			if (ch > 0xFF) {
+				return false;
+			}
+			bytes[i] = (byte) ch;
+		}
+		TextClassifier classifier = new TextClassifier();
+		classifier.classify(bytes);
+		return (classifier.encoding == TextEncoding.ASCII || classifier.encoding == TextEncoding.UTF_8);
+	}
+
+	/**
+	 * Return the UTF-16 encoding if the bytes start with a byte-order mark and none of the characters are binary or
+	 * null if not.
+	 */
+	private TextEncoding classifyUtf16(byte[] bytes) {
+		if (bytes.length < 2) {
+			return null;
+		}
+		boolean bigEndian;
+		if (bytes[0] == (byte) 0xFE && bytes[1] == (byte) 0xFF) {
+			bigEndian = true;
+		} else if (bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE) {
+			bigEndian = false;
+		} else {
+			return null;
+		}
+		int flags = 0;
+		boolean afterReturn = false;
+		for (int i = 2; i + 1 < bytes.length; i += 2) {
+			int ch;
+			if (bigEndian) {
+				ch = ((bytes[i] & 0xFF) << 8) | (bytes[i + 1] & 0xFF);
+			} else {
+				ch = ((bytes[i + 1] & 0xFF) << 8) | (bytes[i] & 0xFF);
+			}
+			if (ch < 0x80 && BYTE_CLASSES[ch] == BINARY) {
+				return null;
+			}
+			if (ch == '\n') {
+				flags |= (afterReturn ? CRLF_FLAG : LF_FLAG);
+			} else if (afterReturn) {
+				flags |= CR_FLAG;
+			}
+			afterReturn = (ch == '\r');
+		}
+		if (afterReturn) {
+			flags |= CR_FLAG;
+		}
+		lineTerminatorFlags = flags;
+		if (bigEndian) {
+			return TextEncoding.UTF_16_BIG_ENDIAN;
+		} else {
+			return TextEncoding.UTF_16_LITTLE_ENDIAN;
+		}
+	}
+}
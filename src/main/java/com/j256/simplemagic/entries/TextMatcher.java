@@ -0,0 +1,16 @@
+package com.j256.simplemagic.entries;
+
+/**
+ * Matcher whose tests may only make sense for text content. Like file(1), the top-level entries whose tests are all
+ * text tests are not tested on binary content.
+ * 
+ * @author graywatson
+ */
+public interface TextMatcher extends MagicMatcher {
+
+	/**
+	 * Return true if the test is a text test, because its pattern is text for example, or false if it can also match
+	 * binary content.
+	 */
+	public boolean isTextTest(Object testValue);
+}
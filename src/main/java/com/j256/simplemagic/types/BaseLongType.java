@@ -1,6 +1,7 @@
 package com.j256.simplemagic.types;
 
 import com.j256.simplemagic.endian.EndianType;
+import com.j256.simplemagic.entries.MagicMatcher.MutableOffset;
 
 /**
  * Base class for those types which use long types to compare.
@@ -13,14 +14,102 @@ public abstract class BaseLongType extends NumberType {
 		super(endianType);
 	}
 
+	/**
+	 * Return -1 if extractedValue is < testValue, 1 if it is >, 0 if it is equals.
+	 */
+	public abstract int compare(boolean unsignedType, long extractedValue, long testValue);
+
 	@Override
 	public Number decodeValueString(String valueStr) throws NumberFormatException {
 		return Long.decode(valueStr);
 	}
 
+	@Override
+	public int compare(boolean unsignedType, Number extractedValue, Number testValue) {
+		return compare(unsignedType, extractedValue.longValue(), testValue.longValue());
+	}
+
+	@Override
+	public Object extractValueFromBytes(int offset, byte[] bytes, boolean required) {
+		if (canExtract(offset, bytes)) {
+			return extractLong(offset, bytes);
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public Object isMatch(Object testValue, Long andValue, boolean unsignedType, Object extractedValue,
+			MutableOffset mutableOffset, byte[] bytes) {
+		if (((NumberComparison) testValue).isMatch(this, andValue, unsignedType,
+				((Number) extractedValue).longValue())) {
+			mutableOffset.offset += getBytesPerType();
+			return extractedValue;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Extract the value at the offset and match it as a primitive so it is only boxed if it matches. This is the same
+	 * as extracting the value and calling {@link #isMatch(Object, Long, boolean, Object, MutableOffset, byte[])}
+	 * without the boxing. The caller must have checked {@link #canExtract(int, byte[])}.
+	 * 
+	 * @return The extracted value or null if no match.
+	 */
+	public Object isLongMatch(Object testValue, Long andValue, boolean unsignedType, MutableOffset mutableOffset,
+			byte[] bytes) {
+		long value = extractLong(mutableOffset.offset, bytes);
+		if (((NumberComparison) testValue).isMatch(this, andValue, unsignedType, value)) {
+			mutableOffset.offset += getBytesPerType();
+			return value;
+		} else {
+			return null;
+		}
+	}
+
 	@Override
 	public byte[] getStartingBytes(Object testValue) {
 		return endianConverter.convertToByteArray(((NumberComparison) testValue).getValue().longValue(),
 				getBytesPerType());
 	}
+
+	@Override
+	public byte[] getRequiredStartingBytes(Object testValue) {
+		NumberComparison comparison = (NumberComparison) testValue;
+		// only the equals test requires the bytes to be a particular value
+		if (comparison.getOperator() == TestOperator.EQUALS) {
+			return endianConverter.convertToByteArray(comparison.getValue().longValue(), getBytesPerType());
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public byte[] getRequiredBytesMask(long andValue) {
+		return endianConverter.convertToByteArray(andValue, getBytesPerType());
+	}
+
+	/**
+	 * Compile the test-value, and-value, and unsigned flag into a number test which does not box or go through the
+	 * matcher or null if the type does not support it. The test must give the same answer as
+	 * {@link #isMatch(Object, Long, boolean, Object, MutableOffset, byte[])}.
+	 */
+	public CompiledNumberTest compileNumberTest(Object testValue, Long andValue, boolean unsignedType) {
+		boolean bigEndian;
+		if (endianConverter == EndianType.BIG.getConverter()) {
+			bigEndian = true;
+		} else if (endianConverter == EndianType.LITTLE.getConverter()) {
+			bigEndian = false;
+		} else {
+			// middle-endian is rare enough that we leave it to the converter
+			return null;
+		}
+		NumberComparison comparison = (NumberComparison) testValue;
+		long value = comparison.getValue().longValue();
+		// the signed comparisons are done on the number of bytes in the type
+		boolean unsignedCompare = (unsignedType || getBytesPerType() == LongType.BYTES_PER_LONG);
+		return new CompiledNumberTest(getBytesPerType(), bigEndian, andValue, comparison.getOperator(), value,
+				unsignedCompare, maskValue(~value));
+	}
 }
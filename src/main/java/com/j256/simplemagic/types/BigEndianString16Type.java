@@ -32,6 +32,12 @@ public class BigEndianString16Type extends StringType {
 				chars.length);
 	}
 
+	@Override
+	public byte[] getRequiredStartingBytes(Object testValue) {
+		// we match against the 2-byte characters
+		return null;
+	}
+
 	/**
 	 * Convert 2 bytes into a character.
 	 */
@@ -0,0 +1,71 @@
+package com.j256.simplemagic.types;
+
+import com.j256.simplemagic.entries.MatchLimiter;
+
+/**
+ * View of a range of bytes as characters so they can be handed to a {@link java.util.regex.Pattern} without decoding
+ * and copying them. Each byte is one character as with the ISO-8859-1 charset.
+ * 
+ * <p>
+ * A pattern can backtrack for a very long time so, if there is a limiter, it is checked every so many characters and
+ * {@link TimeExceededException} is thrown to stop the pattern if it says so.
+ * </p>
+ * 
+ * @author graywatson
+ */
+class ByteCharSequence implements CharSequence {
+
+	/** how many characters are read between the checks of the time */
+	private static final int TIME_CHECK_MASK = 0xFFF;
+
+	private final byte[] bytes;
+	private final int start;
+	private final int end;
+	private final MatchLimiter limiter;
+	private int charCount;
+
+	public ByteCharSequence(byte[] bytes, int start, int end) {
+		this(bytes, start, end, null);
+	}
+
+	public ByteCharSequence(byte[] bytes, int start, int end, MatchLimiter limiter) {
+		this.bytes = bytes;
+		this.start = start;
+		this.end = end;
+		this.limiter = limiter;
+	}
+
+	@Override
+	public int length() {
+		return end - start;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (limiter != null && (++charCount & TIME_CHECK_MASK) == 0 && !limiter.checkTime()) {
+			throw new TimeExceededException();
+		}
+		return (char) (bytes[start + index] & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int subStart, int subEnd) {
+		return new ByteCharSequence(bytes, start + subStart, start + subEnd, limiter);
+	}
+
+	@Override
+	public String toString() {
+		char[] chars = new char[end - start];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) (bytes[start + i] & 0xFF);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Thrown out of the pattern when the limiter says that the matching has run out of time.
+	 */
+	static class TimeExceededException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+}
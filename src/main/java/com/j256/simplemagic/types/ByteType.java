@@ -25,12 +25,12 @@ public class ByteType extends BaseLongType {
 	}
 
 	@Override
-	public int compare(boolean unsignedType, Number extractedValue, Number testValue) {
+	public int compare(boolean unsignedType, long extractedValue, long testValue) {
 		if (unsignedType) {
 			return LongType.staticCompare(extractedValue, testValue);
 		}
-		byte extractedByte = extractedValue.byteValue();
-		byte testByte = testValue.byteValue();
+		byte extractedByte = (byte) extractedValue;
+		byte testByte = (byte) testValue;
 		if (extractedByte > testByte) {
 			return 1;
 		} else if (extractedByte < testByte) {
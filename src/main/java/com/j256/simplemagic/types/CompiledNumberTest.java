@@ -0,0 +1,84 @@
+package com.j256.simplemagic.types;
+
+/**
+ * Test of an integer value from the bytes which has been compiled from the type, endian-ness, and-mask, operator, and
+ * test value of a magic entry into primitive fields. This avoids the boxing of the extracted value and the calls
+ * through the matcher, operator, and type for the entries that don't match which is the vast majority of them. It
+ * gives the same answer as the {@link NumberType} matching.
+ * 
+ * @author graywatson
+ */
+public final class CompiledNumberTest {
+
+	private final int size;
+	private final boolean bigEndian;
+	private final long andValue;
+	private final TestOperator operator;
+	private final long testValue;
+	/** number of bits to shift left and then right to sign extend the values or 0 to compare them as longs */
+	private final int signShift;
+	private final long signedTestValue;
+	private final long negatedTestValue;
+
+	CompiledNumberTest(int size, boolean bigEndian, Long andValue, TestOperator operator, long testValue,
+			boolean unsignedCompare, long negatedTestValue) {
+		this.size = size;
+		this.bigEndian = bigEndian;
+		this.andValue = (andValue == null ? -1L : andValue);
+		this.operator = operator;
+		this.testValue = testValue;
+		this.signShift = (unsignedCompare ? 0 : 64 - size * 8);
+		this.signedTestValue = (testValue << signShift) >> signShift;
+		this.negatedTestValue = negatedTestValue;
+	}
+
+	/**
+	 * Return true if the value at the offset in the bytes matches the test.
+	 */
+	public boolean isMatch(byte[] bytes, int offset) {
+		if (offset < 0 || offset + size > bytes.length) {
+			return false;
+		}
+		long value = 0;
+		if (bigEndian) {
+			for (int i = offset; i < offset + size; i++) {
+				value = value << 8 | (bytes[i] & 0xFF);
+			}
+		} else {
+			for (int i = offset + (size - 1); i >= offset; i--) {
+				value = value << 8 | (bytes[i] & 0xFF);
+			}
+		}
+		value &= andValue;
+		switch (operator) {
+			case EQUALS:
+				return compare(value) == 0;
+			case NOT_EQUALS:
+				return compare(value) != 0;
+			case GREATER_THAN:
+				return compare(value) > 0;
+			case LESS_THAN:
+				return compare(value) < 0;
+			case AND_ALL_SET:
+				return ((value & testValue) == testValue);
+			case AND_ALL_CLEARED:
+				return ((value & testValue) == 0);
+			case NEGATE:
+				return (value == negatedTestValue);
+			default:
+				// may not be able to get here
+				throw new IllegalStateException("Unknown operator: " + operator);
+		}
+	}
+
+	private int compare(long value) {
+		long extractedValue = (value << signShift) >> signShift;
+		if (extractedValue > signedTestValue) {
+			return 1;
+		} else if (extractedValue < signedTestValue) {
+			return -1;
+		} else {
+			return 0;
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package com.j256.simplemagic.types;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+
 import com.j256.simplemagic.entries.MagicFormatter;
 import com.j256.simplemagic.entries.MagicMatcher;
 
@@ -44,4 +47,29 @@ public class DefaultType implements MagicMatcher {
 	public byte[] getStartingBytes(Object testValue) {
 		return null;
 	}
+
+	@Override
+	public byte[] getRequiredStartingBytes(Object testValue) {
+		return null;
+	}
+
+	@Override
+	public byte[] getRequiredBytesMask(long andValue) {
+		return null;
+	}
+
+	@Override
+	public void writeTestValue(Object testValue, DataOutput output) {
+		// nothing to write
+	}
+
+	@Override
+	public Object readTestValue(DataInput input) {
+		return EMPTY;
+	}
+
+	@Override
+	public String getTestValueSource(Object testValue, String matcherSource) {
+		return "\"\"";
+	}
 }
@@ -1,5 +1,9 @@
 package com.j256.simplemagic.types;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.j256.simplemagic.endian.EndianType;
 
 /**
@@ -20,6 +24,22 @@ public class DoubleType extends NumberType {
 		return Double.parseDouble(valueStr);
 	}
 
+	@Override
+	public void writeValue(Number value, DataOutput output) throws IOException {
+		output.writeDouble(value.doubleValue());
+	}
+
+	@Override
+	public String getValueSource(Number value) {
+		// the bits so the value is exactly the same
+		return "Double.longBitsToDouble(0x" + Long.toHexString(Double.doubleToRawLongBits(value.doubleValue())) + "L)";
+	}
+
+	@Override
+	public Number readValue(DataInput input) throws IOException {
+		return input.readDouble();
+	}
+
 	@Override
 	public Object extractValueFromBytes(int offset, byte[] bytes, boolean required) {
 		Long val = endianConverter.convertNumber(offset, bytes, getBytesPerType());
@@ -48,6 +68,16 @@ public class DoubleType extends NumberType {
 		return null;
 	}
 
+	@Override
+	public byte[] getRequiredStartingBytes(Object testValue) {
+		return null;
+	}
+
+	@Override
+	public byte[] getRequiredBytesMask(long andValue) {
+		return null;
+	}
+
 	/**
 	 * Convert a long to the type.
 	 */
@@ -1,5 +1,9 @@
 package com.j256.simplemagic.types;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.j256.simplemagic.endian.EndianType;
 
 /**
@@ -20,6 +24,21 @@ public class FloatType extends DoubleType {
 		return Float.parseFloat(valueStr);
 	}
 
+	@Override
+	public void writeValue(Number value, DataOutput output) throws IOException {
+		output.writeFloat(value.floatValue());
+	}
+
+	@Override
+	public String getValueSource(Number value) {
+		return "Float.intBitsToFloat(0x" + Integer.toHexString(Float.floatToRawIntBits(value.floatValue())) + ")";
+	}
+
+	@Override
+	public Number readValue(DataInput input) throws IOException {
+		return input.readFloat();
+	}
+
 	@Override
 	public int compare(boolean unsignedType, Number extractedValue, Number testValue) {
 		float extractedFloat = extractedValue.floatValue();
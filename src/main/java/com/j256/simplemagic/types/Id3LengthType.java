@@ -14,7 +14,7 @@ public class Id3LengthType extends IntegerType {
 	}
 
 	@Override
-	public Object extractValueFromBytes(int offset, byte[] bytes, boolean required) {
+	public long extractLong(int offset, byte[] bytes) {
 		// because we only use the lower 7-bits of each byte, we need to copy into a local byte array
 		int bytesPerType = getBytesPerType();
 		byte[] sevenBitBytes = new byte[bytesPerType];
@@ -22,6 +22,18 @@ public class Id3LengthType extends IntegerType {
 			sevenBitBytes[i] = (byte) (bytes[offset + i] & 0x7F);
 		}
 		// because we've copied into a local array, we use the 0 offset
-		return endianConverter.convertNumber(0, sevenBitBytes, bytesPerType);
+		return endianConverter.convertLong(0, sevenBitBytes, bytesPerType);
+	}
+
+	@Override
+	public byte[] getRequiredStartingBytes(Object testValue) {
+		// the high bit of each byte is ignored so the bytes can be one of a number of values
+		return null;
+	}
+
+	@Override
+	public CompiledNumberTest compileNumberTest(Object testValue, Long andValue, boolean unsignedType) {
+		// the high bit of each byte is ignored when extracting
+		return null;
 	}
 }
@@ -26,12 +26,12 @@ public class IntegerType extends BaseLongType {
 	}
 
 	@Override
-	public int compare(boolean unsignedType, Number extractedValue, Number testValue) {
+	public int compare(boolean unsignedType, long extractedValue, long testValue) {
 		if (unsignedType) {
 			return LongType.staticCompare(extractedValue, testValue);
 		}
-		int extractedInt = extractedValue.intValue();
-		int testInt = testValue.intValue();
+		int extractedInt = (int) extractedValue;
+		int testInt = (int) testValue;
 		if (extractedInt > testInt) {
 			return 1;
 		} else if (extractedInt < testInt) {
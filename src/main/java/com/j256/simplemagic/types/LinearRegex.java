@@ -0,0 +1,739 @@
+package com.j256.simplemagic.types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regular expression which is matched by simulating all of the ways that it can match at the same time so the time it
+ * takes is linear in the length of the content. This handles the subset of the {@link java.util.regex.Pattern} syntax
+ * which is used by the magic files: literals, '.', character classes, groups, alternation, the greedy quantifiers, '^'
+ * and '$'. It finds the same match as {@link java.util.regex.Matcher#find()} which is the first match with the
+ * alternatives and quantifiers preferred in the same order as the backtracking.
+ * 
+ * <p>
+ * The characters are the bytes of the content as with the ISO-8859-1 charset.
+ * </p>
+ * 
+ * @author graywatson
+ */
+class LinearRegex {
+
+	/** above this the pattern is probably too big to simulate quickly */
+	private static final int MAX_INSTRUCTIONS = 5000;
+	/** how many positions are matched between the checks of the time */
+	private static final int TIME_CHECK_MASK = 0xFF;
+	private static final int NUM_CHARS = 256;
+	private static final char NEXT_LINE = '\u0085';
+
+	private static final int OP_CHARS = 0;
+	private static final int OP_SPLIT = 1;
+	private static final int OP_JUMP = 2;
+	private static final int OP_BEGIN = 3;
+	private static final int OP_END = 4;
+	private static final int OP_MATCH = 5;
+	/** the match instruction is first so the nodes can point to it */
+	private static final int MATCH_PC = 0;
+
+	private final int[] ops;
+	/** next instruction or the preferred instruction of a split */
+	private final int[] nexts;
+	/** other instruction of a split */
+	private final int[] others;
+	private final boolean[][] charSets;
+
+	private LinearRegex(Program program) {
+		int size = program.ops.size();
+		this.ops = new int[size];
+		this.nexts = new int[size];
+		this.others = new int[size];
+		this.charSets = new boolean[size][];
+		for (int i = 0; i < size; i++) {
+			ops[i] = program.ops.get(i);
+			nexts[i] = program.nexts.get(i);
+			others[i] = program.others.get(i);
+			charSets[i] = program.charSets.get(i);
+		}
+	}
+
+	/**
+	 * Compile the pattern or return null if it uses some syntax that we don't handle.
+	 */
+	public static LinearRegex compile(String pattern, boolean caseInsensitive) {
+		Node node;
+		try {
+			Parser parser = new Parser(pattern, caseInsensitive);
+			node = parser.parseAlternatives();
+			if (parser.pos < pattern.length()) {
+				// probably an unbalanced ')'
+				return null;
+			}
+		} catch (UnsupportedPatternException e) {
+			return null;
+		}
+		Program program = new Program();
+		int start = node.compile(program, MATCH_PC);
+		if (program.ops.size() > MAX_INSTRUCTIONS) {
+			return null;
+		}
+		// the start of the program is the last instruction added so put a jump to it at the front
+		program.add(OP_JUMP, start, -1, null);
+		return new LinearRegex(program);
+	}
+
+	/**
+	 * Find the first match in the bytes from the start offset to before the end offset. The start and the end offsets
+	 * of the match are left in the state.
+	 * 
+	 * @return True if there is a match or false if not.
+	 */
+	public boolean find(byte[] bytes, int start, int end, RegexState state) {
+		int size = ops.length;
+		state.ensureInstructions(size);
+		Threads current = state.current;
+		Threads next = state.next;
+		int matchStart = -1;
+		int matchEnd = -1;
+		for (int pos = start; pos <= end; pos++) {
+			if (((pos - start) & TIME_CHECK_MASK) == TIME_CHECK_MASK && state.limiter != null
+					&& !state.limiter.checkTime()) {
+				// out of time so we give up on the match
+				matchStart = -1;
+				break;
+			}
+			if (matchStart < 0) {
+				// start a new lowest priority thread at this position if we have not matched yet
+				addThread(current, size - 1, pos, bytes, start, end, pos, state.pcStack);
+			}
+			if (current.size == 0 && matchStart >= 0) {
+				// no more threads can find a better match
+				break;
+			}
+			int ch = (pos < end ? bytes[pos] & 0xFF : -1);
+			for (int i = 0; i < current.size; i++) {
+				int pc = current.pcs[i];
+				if (ops[pc] == OP_MATCH) {
+					matchStart = current.starts[i];
+					matchEnd = pos;
+					// the lower priority threads are not needed
+					break;
+				}
+				// the threads only have char and match instructions
+				if (ch >= 0 && charSets[pc][ch]) {
+					addThread(next, nexts[pc], current.starts[i], bytes, start, end, pos + 1, state.pcStack);
+				}
+			}
+			Threads temp = current;
+			current = next;
+			next = temp;
+			next.clear();
+		}
+		current.clear();
+		if (matchStart < 0) {
+			return false;
+		}
+		state.matchStart = matchStart;
+		state.matchEnd = matchEnd;
+		return true;
+	}
+
+	/**
+	 * Add the thread at the instruction following the splits and jumps in priority order. The instructions are
+	 * followed depth first with our own stack since a program can be thousands of instructions long.
+	 */
+	private void addThread(Threads threads, int firstPc, int threadStart, byte[] bytes, int start, int end, int pos,
+			int[] pcStack) {
+		int stackSize = 0;
+		pcStack[stackSize++] = firstPc;
+		while (stackSize > 0) {
+			int pc = pcStack[--stackSize];
+			if (threads.contains(pc)) {
+				continue;
+			}
+			threads.mark(pc);
+			switch (ops[pc]) {
+				case OP_JUMP:
+					pcStack[stackSize++] = nexts[pc];
+					break;
+				case OP_SPLIT:
+					// the preferred instruction is pushed last so it is followed first
+					pcStack[stackSize++] = others[pc];
+					pcStack[stackSize++] = nexts[pc];
+					break;
+				case OP_BEGIN:
+					if (pos == start) {
+						pcStack[stackSize++] = nexts[pc];
+					}
+					break;
+				case OP_END:
+					// like Pattern, $ also matches before a line terminator at the very end
+					if (pos == end || (pos == end - 1 && (char) (bytes[pos] & 0xFF) == NEXT_LINE)) {
+						pcStack[stackSize++] = nexts[pc];
+					}
+					break;
+				default:
+					threads.add(pc, threadStart);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * List of the threads at a position in priority order.
+	 */
+	static class Threads {
+		final int[] pcs;
+		final int[] starts;
+		int size;
+		/** instructions which have been visited at this position */
+		final boolean[] visited;
+		final int[] visitedPcs;
+		int numVisited;
+
+		public Threads(int numInstructions) {
+			this.pcs = new int[numInstructions];
+			this.starts = new int[numInstructions];
+			this.visited = new boolean[numInstructions];
+			this.visitedPcs = new int[numInstructions];
+		}
+
+		boolean contains(int pc) {
+			return visited[pc];
+		}
+
+		void mark(int pc) {
+			visited[pc] = true;
+			visitedPcs[numVisited++] = pc;
+		}
+
+		void add(int pc, int start) {
+			pcs[size] = pc;
+			starts[size] = start;
+			size++;
+		}
+
+		void clear() {
+			for (int i = 0; i < numVisited; i++) {
+				visited[visitedPcs[i]] = false;
+			}
+			numVisited = 0;
+			size = 0;
+		}
+	}
+
+	/**
+	 * Instructions that we are compiling.
+	 */
+	private static class Program {
+		final List<Integer> ops = new ArrayList<Integer>();
+		final List<Integer> nexts = new ArrayList<Integer>();
+		final List<Integer> others = new ArrayList<Integer>();
+		final List<boolean[]> charSets = new ArrayList<boolean[]>();
+
+		public Program() {
+			add(OP_MATCH, -1, -1, null);
+		}
+
+		int add(int op, int next, int other, boolean[] charSet) {
+			ops.add(op);
+			nexts.add(next);
+			others.add(other);
+			charSets.add(charSet);
+			return ops.size() - 1;
+		}
+	}
+
+	/**
+	 * Part of the parsed pattern.
+	 */
+	private static abstract class Node {
+
+		/**
+		 * Compile the node so it continues with the next instruction and return the first instruction of the node.
+		 * The nodes are compiled from the end so we know where each one continues.
+		 */
+		abstract int compile(Program program, int next);
+
+		/**
+		 * Return true if the node can match without any characters.
+		 */
+		abstract boolean canBeEmpty();
+	}
+
+	private static class CharsNode extends Node {
+		final boolean[] charSet;
+
+		public CharsNode(boolean[] charSet) {
+			this.charSet = charSet;
+		}
+
+		@Override
+		int compile(Program program, int next) {
+			return program.add(OP_CHARS, next, -1, charSet);
+		}
+
+		@Override
+		boolean canBeEmpty() {
+			return false;
+		}
+	}
+
+	private static class AssertNode extends Node {
+		final int op;
+
+		public AssertNode(int op) {
+			this.op = op;
+		}
+
+		@Override
+		int compile(Program program, int next) {
+			return program.add(op, next, -1, null);
+		}
+
+		@Override
+		boolean canBeEmpty() {
+			return true;
+		}
+	}
+
+	private static class SequenceNode extends Node {
+		final List<Node> nodes;
+
+		public SequenceNode(List<Node> nodes) {
+			this.nodes = nodes;
+		}
+
+		@Override
+		int compile(Program program, int next) {
+			for (int i = nodes.size() - 1; i >= 0; i--) {
+				next = nodes.get(i).compile(program, next);
+			}
+			if (nodes.isEmpty()) {
+				next = program.add(OP_JUMP, next, -1, null);
+			}
+			return next;
+		}
+
+		@Override
+		boolean canBeEmpty() {
+			for (Node node : nodes) {
+				if (!node.canBeEmpty()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class AlternativesNode extends Node {
+		final List<Node> alternatives;
+
+		public AlternativesNode(List<Node> alternatives) {
+			this.alternatives = alternatives;
+		}
+
+		@Override
+		int compile(Program program, int next) {
+			// the first alternative is preferred
+			int start = alternatives.get(alternatives.size() - 1).compile(program, next);
+			for (int i = alternatives.size() - 2; i >= 0; i--) {
+				int alternative = alternatives.get(i).compile(program, next);
+				start = program.add(OP_SPLIT, alternative, start, null);
+			}
+			return start;
+		}
+
+		@Override
+		boolean canBeEmpty() {
+			for (Node node : alternatives) {
+				if (node.canBeEmpty()) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static class RepeatNode extends Node {
+		final Node node;
+		final int min;
+		/** -1 if no maximum */
+		final int max;
+
+		public RepeatNode(Node node, int min, int max) {
+			this.node = node;
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		int compile(Program program, int next) {
+			if (max < 0) {
+				// greedy loop: split to the node or past it and then the node jumps back to the split
+				int jump = program.add(OP_JUMP, -1, -1, null);
+				int body = node.compile(program, jump);
+				int split = program.add(OP_SPLIT, body, next, null);
+				program.nexts.set(jump, split);
+				next = split;
+			} else {
+				// each optional copy is only tried if the one before it matched
+				for (int i = min; i < max; i++) {
+					int body = node.compile(program, next);
+					next = program.add(OP_SPLIT, body, next, null);
+					if (program.ops.size() > MAX_INSTRUCTIONS) {
+						return next;
+					}
+				}
+			}
+			for (int i = 0; i < min; i++) {
+				next = node.compile(program, next);
+				if (program.ops.size() > MAX_INSTRUCTIONS) {
+					return next;
+				}
+			}
+			return next;
+		}
+
+		@Override
+		boolean canBeEmpty() {
+			return (min == 0 || node.canBeEmpty());
+		}
+	}
+
+	/**
+	 * Pattern syntax that we don't handle so the pattern is matched by {@link java.util.regex.Pattern} instead.
+	 */
+	private static class UnsupportedPatternException extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Parser of the pattern into the nodes.
+	 */
+	private static class Parser {
+		final String pattern;
+		final boolean caseInsensitive;
+		int pos;
+
+		public Parser(String pattern, boolean caseInsensitive) {
+			this.pattern = pattern;
+			this.caseInsensitive = caseInsensitive;
+		}
+
+		Node parseAlternatives() throws UnsupportedPatternException {
+			List<Node> alternatives = new ArrayList<Node>();
+			alternatives.add(parseSequence());
+			while (pos < pattern.length() && pattern.charAt(pos) == '|') {
+				pos++;
+				alternatives.add(parseSequence());
+			}
+			if (alternatives.size() == 1) {
+				return alternatives.get(0);
+			} else {
+				return new AlternativesNode(alternatives);
+			}
+		}
+
+		private Node parseSequence() throws UnsupportedPatternException {
+			List<Node> nodes = new ArrayList<Node>();
+			while (pos < pattern.length()) {
+				char ch = pattern.charAt(pos);
+				if (ch == '|' || ch == ')') {
+					break;
+				}
+				Node node = parseAtom();
+				nodes.add(parseQuantifier(node));
+			}
+			return new SequenceNode(nodes);
+		}
+
+		private Node parseAtom() throws UnsupportedPatternException {
+			char ch = pattern.charAt(pos++);
+			switch (ch) {
+				case '(':
+					if (pos < pattern.length() && pattern.charAt(pos) == '?') {
+						// special groups and look-arounds
+						throw new UnsupportedPatternException();
+					}
+					Node node = parseAlternatives();
+					if (pos >= pattern.length() || pattern.charAt(pos) != ')') {
+						throw new UnsupportedPatternException();
+					}
+					pos++;
+					return node;
+				case '[':
+					return new CharsNode(parseCharClass());
+				case '.': {
+					boolean[] charSet = new boolean[NUM_CHARS];
+					for (int i = 0; i < NUM_CHARS; i++) {
+						charSet[i] = (i != '\n' && i != '\r' && i != NEXT_LINE);
+					}
+					return new CharsNode(charSet);
+				}
+				case '^':
+					return new AssertNode(OP_BEGIN);
+				case '$':
+					return new AssertNode(OP_END);
+				case '\\': {
+					boolean[] charSet = new boolean[NUM_CHARS];
+					addEscape(charSet);
+					return new CharsNode(caseInsensitive(charSet));
+				}
+				case '*':
+				case '+':
+				case '?':
+				case '{':
+					// quantifier without something to repeat
+					throw new UnsupportedPatternException();
+				default: {
+					boolean[] charSet = new boolean[NUM_CHARS];
+					addChar(charSet, ch);
+					return new CharsNode(caseInsensitive(charSet));
+				}
+			}
+		}
+
+		private Node parseQuantifier(Node node) throws UnsupportedPatternException {
+			if (pos >= pattern.length()) {
+				return node;
+			}
+			int min;
+			int max;
+			char ch = pattern.charAt(pos);
+			if (ch == '*') {
+				min = 0;
+				max = -1;
+				pos++;
+			} else if (ch == '+') {
+				min = 1;
+				max = -1;
+				pos++;
+			} else if (ch == '?') {
+				min = 0;
+				max = 1;
+				pos++;
+			} else if (ch == '{') {
+				pos++;
+				min = parseNumber();
+				max = min;
+				if (pos < pattern.length() && pattern.charAt(pos) == ',') {
+					pos++;
+					if (pos < pattern.length() && pattern.charAt(pos) == '}') {
+						max = -1;
+					} else {
+						max = parseNumber();
+					}
+				}
+				if (pos >= pattern.length() || pattern.charAt(pos) != '}' || (max >= 0 && max < min)) {
+					throw new UnsupportedPatternException();
+				}
+				pos++;
+			} else {
+				return node;
+			}
+			if (pos < pattern.length()) {
+				ch = pattern.charAt(pos);
+				if (ch == '?' || ch == '+' || ch == '*' || ch == '{') {
+					// lazy and possessive quantifiers
+					throw new UnsupportedPatternException();
+				}
+			}
+			if (node instanceof AssertNode || ((max < 0 || max > 1) && node.canBeEmpty())) {
+				// we don't try to get the same answer as the backtracking for loops that match nothing
+				throw new UnsupportedPatternException();
+			}
+			return new RepeatNode(node, min, max);
+		}
+
+		private int parseNumber() throws UnsupportedPatternException {
+			int start = pos;
+			while (pos < pattern.length() && pattern.charAt(pos) >= '0' && pattern.charAt(pos) <= '9') {
+				pos++;
+			}
+			if (pos == start || pos - start > 4) {
+				throw new UnsupportedPatternException();
+			}
+			return Integer.parseInt(pattern.substring(start, pos));
+		}
+
+		private boolean[] parseCharClass() throws UnsupportedPatternException {
+			boolean[] charSet = new boolean[NUM_CHARS];
+			boolean negate = false;
+			if (pos < pattern.length() && pattern.charAt(pos) == '^') {
+				negate = true;
+				pos++;
+			}
+			boolean first = true;
+			while (true) {
+				if (pos >= pattern.length()) {
+					throw new UnsupportedPatternException();
+				}
+				char ch = pattern.charAt(pos++);
+				if (ch == ']') {
+					if (first) {
+						// Pattern handles this differently than POSIX
+						throw new UnsupportedPatternException();
+					}
+					break;
+				}
+				first = false;
+				if (ch == '[' || (ch == '&' && pos < pattern.length() && pattern.charAt(pos) == '&')) {
+					// unions and intersections
+					throw new UnsupportedPatternException();
+				}
+				if (ch == '\\') {
+					if (isRangeStart()) {
+						// we don't handle ranges of escapes
+						throw new UnsupportedPatternException();
+					}
+					addEscape(charSet);
+					continue;
+				}
+				if (isRangeStart()) {
+					pos++;
+					char last = pattern.charAt(pos++);
+					if (last == '\\' || last == '[' || last < ch) {
+						throw new UnsupportedPatternException();
+					}
+					for (char rangeCh = ch; rangeCh <= last; rangeCh++) {
+						addChar(charSet, rangeCh);
+					}
+				} else {
+					addChar(charSet, ch);
+				}
+			}
+			charSet = caseInsensitive(charSet);
+			if (negate) {
+				for (int i = 0; i < NUM_CHARS; i++) {
+					charSet[i] = !charSet[i];
+				}
+			}
+			return charSet;
+		}
+
+		/**
+		 * Return true if the character before the position starts a range.
+		 */
+		private boolean isRangeStart() {
+			return (pos + 1 < pattern.length() && pattern.charAt(pos) == '-' && pattern.charAt(pos + 1) != ']');
+		}
+
+		private void addEscape(boolean[] charSet) throws UnsupportedPatternException {
+			if (pos >= pattern.length()) {
+				throw new UnsupportedPatternException();
+			}
+			char ch = pattern.charAt(pos++);
+			switch (ch) {
+				case 'd':
+				case 's':
+				case 'w':
+					addPredefined(charSet, ch);
+					break;
+				case 'D':
+				case 'S':
+				case 'W': {
+					boolean[] other = new boolean[NUM_CHARS];
+					addPredefined(other, Character.toLowerCase(ch));
+					for (int i = 0; i < NUM_CHARS; i++) {
+						if (!other[i]) {
+							charSet[i] = true;
+						}
+					}
+					break;
+				}
+				case 't':
+					addChar(charSet, '\t');
+					break;
+				case 'n':
+					addChar(charSet, '\n');
+					break;
+				case 'r':
+					addChar(charSet, '\r');
+					break;
+				case 'f':
+					addChar(charSet, '\f');
+					break;
+				case 'a':
+					addChar(charSet, '\u0007');
+					break;
+				case 'e':
+					addChar(charSet, '\u001B');
+					break;
+				case 'x': {
+					if (pos + 2 > pattern.length()) {
+						throw new UnsupportedPatternException();
+					}
+					int high = Character.digit(pattern.charAt(pos), 16);
+					int low = Character.digit(pattern.charAt(pos + 1), 16);
+					if (high < 0 || low < 0) {
+						throw new UnsupportedPatternException();
+					}
+					pos += 2;
+					addChar(charSet, (char) (high * 16 + low));
+					break;
+				}
+				default:
+					if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')) {
+						// boundaries, back references, properties, quoting, etc.
+						throw new UnsupportedPatternException();
+					}
+					// escaped punctuation is itself
+					addChar(charSet, ch);
+					break;
+			}
+		}
+
+		/**
+		 * Add the characters of the predefined classes which, like with Pattern by default, are only ASCII.
+		 */
+		private void addPredefined(boolean[] charSet, char ch) {
+			if (ch == 'd') {
+				addRange(charSet, '0', '9');
+			} else if (ch == 's') {
+				addChars(charSet, " \t\n\u000B\f\r");
+			} else {
+				addRange(charSet, 'a', 'z');
+				addRange(charSet, 'A', 'Z');
+				addRange(charSet, '0', '9');
+				addChar(charSet, '_');
+			}
+		}
+
+		private void addChar(boolean[] charSet, char ch) {
+			// characters above the bytes can never match
+			if (ch < NUM_CHARS) {
+				charSet[ch] = true;
+			}
+		}
+
+		private void addChars(boolean[] charSet, String chars) {
+			for (int i = 0; i < chars.length(); i++) {
+				addChar(charSet, chars.charAt(i));
+			}
+		}
+
+		private void addRange(boolean[] charSet, char first, char last) {
+			for (char ch = first; ch <= last; ch++) {
+				addChar(charSet, ch);
+			}
+		}
+
+		/**
+		 * Add the other case of the ASCII letters if we are case insensitive like Pattern does without its unicode
+		 * flag.
+		 */
+		private boolean[] caseInsensitive(boolean[] charSet) {
+			if (!caseInsensitive) {
+				return charSet;
+			}
+			boolean[] result = charSet.clone();
+			for (char ch = 'a'; ch <= 'z'; ch++) {
+				char upper = (char) (ch - 'a' + 'A');
+				if (charSet[ch] || charSet[upper]) {
+					result[ch] = true;
+					result[upper] = true;
+				}
+			}
+			return result;
+		}
+	}
+}
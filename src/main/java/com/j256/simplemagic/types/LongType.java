@@ -29,7 +29,7 @@ public class LongType extends BaseLongType {
 	}
 
 	@Override
-	public int compare(boolean unsignedType, Number extractedValue, Number testValue) {
+	public int compare(boolean unsignedType, long extractedValue, long testValue) {
 		return staticCompare(extractedValue, testValue);
 	}
 
@@ -37,8 +37,13 @@ public class LongType extends BaseLongType {
 	 * Static compare of longs which are unsigned or signed.
 	 */
 	public static int staticCompare(Number extractedValue, Number testValue) {
-		long extractedLong = extractedValue.longValue();
-		long testLong = testValue.longValue();
+		return staticCompare(extractedValue.longValue(), testValue.longValue());
+	}
+
+	/**
+	 * Static compare of primitive longs which are unsigned or signed.
+	 */
+	public static int staticCompare(long extractedLong, long testLong) {
 		if (extractedLong > testLong) {
 			return 1;
 		} else if (extractedLong < testLong) {
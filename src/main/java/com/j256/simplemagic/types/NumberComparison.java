@@ -8,6 +8,7 @@ public class NumberComparison {
 	private final NumberType numberType;
 	private final TestOperator operator;
 	private final Number value;
+	private final long longValue;
 
 	/**
 	 * Pre-process the test string into an operator and a value.
@@ -28,6 +29,17 @@ public class NumberComparison {
 		} catch (NumberFormatException e) {
 			throw new IllegalArgumentException("Could not parse number from: '" + valueStr + "'");
 		}
+		this.longValue = value.longValue();
+	}
+
+	/**
+	 * Create a comparison from an operator and a value that were already decoded.
+	 */
+	public NumberComparison(NumberType numberType, TestOperator operator, Number value) {
+		this.numberType = numberType;
+		this.operator = operator;
+		this.value = value;
+		this.longValue = value.longValue();
 	}
 
 	public boolean isMatch(Long andValue, boolean unsignedType, Number extractedValue) {
@@ -37,10 +49,24 @@ public class NumberComparison {
 		return operator.doTest(unsignedType, extractedValue, value, numberType);
 	}
 
+	/**
+	 * Primitive version of {@link #isMatch(Long, boolean, Number)} for the long types which does not box.
+	 */
+	public boolean isMatch(BaseLongType longType, Long andValue, boolean unsignedType, long extractedValue) {
+		if (andValue != null) {
+			extractedValue &= andValue;
+		}
+		return operator.doTest(unsignedType, extractedValue, longValue, longType);
+	}
+
 	public Number getValue() {
 		return value;
 	}
 
+	public TestOperator getOperator() {
+		return operator;
+	}
+
 	@Override
 	public String toString() {
 		return operator + ", value " + value;
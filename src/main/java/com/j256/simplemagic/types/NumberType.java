@@ -1,5 +1,9 @@
 package com.j256.simplemagic.types;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.j256.simplemagic.endian.EndianConverter;
 import com.j256.simplemagic.endian.EndianType;
 import com.j256.simplemagic.entries.MagicFormatter;
@@ -23,6 +27,27 @@ public abstract class NumberType implements MagicMatcher {
 	 */
 	public abstract Number decodeValueString(String valueStr) throws NumberFormatException;
 
+	/**
+	 * Write a test value that came from {@link #decodeValueString(String)} to the compiled magic entries.
+	 */
+	public void writeValue(Number value, DataOutput output) throws IOException {
+		output.writeLong(value.longValue());
+	}
+
+	/**
+	 * Return the Java source of a test value that came from {@link #decodeValueString(String)}.
+	 */
+	public String getValueSource(Number value) {
+		return value.longValue() + "L";
+	}
+
+	/**
+	 * Read a test value that was written by {@link #writeValue(Number, DataOutput)}.
+	 */
+	public Number readValue(DataInput input) throws IOException {
+		return input.readLong();
+	}
+
 	/**
 	 * Return the number of bytes in this type.
 	 */
@@ -48,6 +73,21 @@ public abstract class NumberType implements MagicMatcher {
 		return endianConverter.convertNumber(offset, bytes, getBytesPerType());
 	}
 
+	/**
+	 * Return true if there are enough bytes at the offset to extract a value of this type.
+	 */
+	public boolean canExtract(int offset, byte[] bytes) {
+		return (offset >= 0 && offset + getBytesPerType() <= bytes.length);
+	}
+
+	/**
+	 * Extract the value at the offset as a primitive long without boxing it. The caller must have checked
+	 * {@link #canExtract(int, byte[])}.
+	 */
+	public long extractLong(int offset, byte[] bytes) {
+		return endianConverter.convertLong(offset, bytes, getBytesPerType());
+	}
+
 	@Override
 	public Object isMatch(Object testValue, Long andValue, boolean unsignedType, Object extractedValue,
 			MutableOffset mutableOffset, byte[] bytes) {
@@ -63,4 +103,24 @@ public abstract class NumberType implements MagicMatcher {
 	public void renderValue(StringBuilder sb, Object extractedValue, MagicFormatter formatter) {
 		formatter.format(sb, extractedValue);
 	}
+
+	@Override
+	public void writeTestValue(Object testValue, DataOutput output) throws IOException {
+		NumberComparison comparison = (NumberComparison) testValue;
+		output.writeByte(comparison.getOperator().ordinal());
+		writeValue(comparison.getValue(), output);
+	}
+
+	@Override
+	public Object readTestValue(DataInput input) throws IOException {
+		TestOperator operator = TestOperator.values()[input.readByte()];
+		return new NumberComparison(this, operator, readValue(input));
+	}
+
+	@Override
+	public String getTestValueSource(Object testValue, String matcherSource) {
+		NumberComparison comparison = (NumberComparison) testValue;
+		return "new NumberComparison((NumberType) " + matcherSource + ", TestOperator." + comparison.getOperator().name()
+				+ ", " + getValueSource(comparison.getValue()) + ")";
+	}
 }
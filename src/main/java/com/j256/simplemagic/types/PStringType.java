@@ -53,4 +53,10 @@ public class PStringType extends StringType {
 		// we start matching past the length byte so the starting offset is +1
 		return findOffsetMatch((TestInfo) testValue, mutableOffset.offset + 1, mutableOffset, bytes, null, maxPos);
 	}
+
+	@Override
+	public byte[] getRequiredStartingBytes(Object testValue) {
+		// the string starts with the length byte
+		return null;
+	}
 }
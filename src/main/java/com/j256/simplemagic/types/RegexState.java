@@ -0,0 +1,47 @@
+package com.j256.simplemagic.types;
+
+import com.j256.simplemagic.entries.MatchLimiter;
+
+/**
+ * State of the matching of the regex entries which is reused from one match to the next so that they don't allocate
+ * it for each test. The match context keeps one per thread.
+ * 
+ * @author graywatson
+ */
+public class RegexState {
+
+	/** threads at the current position of the simulation */
+	LinearRegex.Threads current = new LinearRegex.Threads(0);
+	/** threads at the next position of the simulation */
+	LinearRegex.Threads next = new LinearRegex.Threads(0);
+	/** instructions still to be followed when adding a thread */
+	int[] pcStack = new int[0];
+	/** offsets of the last match that was found */
+	int matchStart;
+	int matchEnd;
+	/** checked periodically while matching, may be null if none */
+	final MatchLimiter limiter;
+
+	public RegexState() {
+		this(null);
+	}
+
+	public RegexState(MatchLimiter limiter) {
+		this.limiter = limiter;
+	}
+
+	/**
+	 * Make sure that the state can simulate a program of the size.
+	 */
+	void ensureInstructions(int numInstructions) {
+		if (current.pcs.length < numInstructions) {
+			current = new LinearRegex.Threads(numInstructions);
+			next = new LinearRegex.Threads(numInstructions);
+			// each instruction is followed at most once and pushes at most two others
+			pcStack = new int[numInstructions * 2 + 1];
+		} else {
+			current.clear();
+			next.clear();
+		}
+	}
+}
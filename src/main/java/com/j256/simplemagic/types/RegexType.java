@@ -1,14 +1,17 @@
 package com.j256.simplemagic.types;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.j256.simplemagic.entries.LineIndex;
+import com.j256.simplemagic.entries.LineMatcher;
 import com.j256.simplemagic.entries.MagicFormatter;
-import com.j256.simplemagic.entries.MagicMatcher;
+import com.j256.simplemagic.entries.MagicSourceGenerator;
+import com.j256.simplemagic.entries.TextClassifier;
+import com.j256.simplemagic.entries.TextMatcher;
 
 /**
  * From the magic(5) man page: A regular expression match in extended POSIX regular expression syntax (like egrep).
@@ -21,7 +24,7 @@ import com.j256.simplemagic.entries.MagicMatcher;
  * 
  * @author graywatson
  */
-public class RegexType implements MagicMatcher {
+public class RegexType implements LineMatcher, TextMatcher {
 
 	private final static Pattern TYPE_PATTERN = Pattern.compile("[^/]+(/[cs]*)?");
 	private static final String EMPTY = "";
@@ -34,16 +37,44 @@ public class RegexType implements MagicMatcher {
 			String flagsStr = matcher.group(1);
 			if (flagsStr != null && flagsStr.length() > 1) {
 				for (char ch : flagsStr.toCharArray()) {
+					// the 's' flag is accepted but the offset is always updated to the end of the match
 					if (ch == 'c') {
 						patternInfo.patternFlags |= Pattern.CASE_INSENSITIVE;
-					} else if (ch == 's') {
-						patternInfo.updateOffsetStart = true;
 					}
 				}
 			}
 		}
-		testStr = StringType.preProcessPattern(testStr);
-		patternInfo.pattern = Pattern.compile(".*(" + testStr + ").*", patternInfo.patternFlags);
+		patternInfo.compile(StringType.preProcessPattern(testStr));
+		return patternInfo;
+	}
+
+	@Override
+	public void writeTestValue(Object testValue, DataOutput output) throws IOException {
+		PatternInfo patternInfo = (PatternInfo) testValue;
+		output.writeUTF(patternInfo.pattern.pattern());
+		output.writeInt(patternInfo.patternFlags);
+	}
+
+	@Override
+	public Object readTestValue(DataInput input) throws IOException {
+		return newTestValue(input.readUTF(), input.readInt());
+	}
+
+	@Override
+	public String getTestValueSource(Object testValue, String matcherSource) {
+		PatternInfo patternInfo = (PatternInfo) testValue;
+		return "((RegexType) " + matcherSource + ").newTestValue("
+				+ MagicSourceGenerator.stringSource(patternInfo.pattern.pattern()) + ", " + patternInfo.patternFlags
+				+ ")";
+	}
+
+	/**
+	 * Create the test-value from the already processed pattern and its flags.
+	 */
+	public Object newTestValue(String pattern, int patternFlags) {
+		PatternInfo patternInfo = new PatternInfo();
+		patternInfo.patternFlags = patternFlags;
+		patternInfo.compile(pattern);
 		return patternInfo;
 	}
 
@@ -55,40 +86,56 @@ public class RegexType implements MagicMatcher {
 	@Override
 	public Object isMatch(Object testValue, Long andValue, boolean unsignedType, Object extractedValue,
 			MutableOffset mutableOffset, byte[] bytes) {
-		BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes)));
-		String line = null;
-		int bytesOffset = 0;
-		for (int i = 0; i <= mutableOffset.offset; i++) {
-			try {
-				line = reader.readLine();
-				// if eof then no match
-				if (line == null) {
-					return null;
-				}
-				// TODO: this doesn't take into account multiple line-feeds and multi-byte chars
-				if (i < mutableOffset.offset) {
-					bytesOffset += line.length() + 1;
-				}
-			} catch (IOException e) {
-				// probably won't get here
-				return null;
-			}
-		}
-		if (line == null) {
-			// may never get here
+		return isLineMatch(testValue, mutableOffset, bytes, new LineIndex(bytes));
+	}
+
+	@Override
+	public Object isLineMatch(Object testValue, MutableOffset mutableOffset, byte[] bytes, LineIndex lineIndex) {
+		return isLineMatch(testValue, mutableOffset, bytes, lineIndex, new RegexState());
+	}
+
+	/**
+	 * Same as {@link #isLineMatch(Object, MutableOffset, byte[], LineIndex)} but with the state of the matching which
+	 * is reused from one call to the next.
+	 */
+	public Object isLineMatch(Object testValue, MutableOffset mutableOffset, byte[] bytes, LineIndex lineIndex,
+			RegexState state) {
+		int line = mutableOffset.offset;
+		int lineStart = lineIndex.getLineStart(line);
+		if (lineStart < 0) {
+			// not enough lines so no match
 			return null;
 		}
 		PatternInfo patternInfo = (PatternInfo) testValue;
-		Matcher matcher = patternInfo.pattern.matcher(line);
-		if (matcher.matches()) {
-			// TODO: need to time this
-			mutableOffset.offset = bytesOffset + matcher.end(1);
-			return matcher.group(1);
-		} else {
+		int lineEnd = lineIndex.getLineEnd(line);
+		if (patternInfo.linearRegex != null) {
+			if (patternInfo.linearRegex.find(bytes, lineStart, lineEnd, state)) {
+				mutableOffset.offset = state.matchEnd;
+				return new ByteCharSequence(bytes, state.matchStart, state.matchEnd).toString();
+			} else {
+				return null;
+			}
+		}
+		CharSequence lineChars = new ByteCharSequence(bytes, lineStart, lineEnd, state.limiter);
+		Matcher matcher = patternInfo.pattern.matcher(lineChars);
+		try {
+			if (matcher.find()) {
+				mutableOffset.offset = lineStart + matcher.end();
+				return matcher.group();
+			} else {
+				return null;
+			}
+		} catch (ByteCharSequence.TimeExceededException e) {
+			// the limiter knows that the time was exceeded so the matching will stop
 			return null;
 		}
 	}
 
+	@Override
+	public boolean isTextTest(Object testValue) {
+		return TextClassifier.isText(((PatternInfo) testValue).pattern.pattern());
+	}
+
 	@Override
 	public void renderValue(StringBuilder sb, Object extractedValue, MagicFormatter formatter) {
 		formatter.format(sb, extractedValue);
@@ -99,10 +146,26 @@ public class RegexType implements MagicMatcher {
 		return null;
 	}
 
+	@Override
+	public byte[] getRequiredStartingBytes(Object testValue) {
+		return null;
+	}
+
+	@Override
+	public byte[] getRequiredBytesMask(long andValue) {
+		return null;
+	}
+
 	private static class PatternInfo {
 		int patternFlags;
-		@SuppressWarnings("unused")
-		boolean updateOffsetStart;
 		Pattern pattern;
+		/** null if the pattern uses syntax that only the {@link #pattern} handles */
+		LinearRegex linearRegex;
+
+		void compile(String patternStr) {
+			pattern = Pattern.compile(patternStr, patternFlags);
+			// most of the magic patterns can be matched without backtracking
+			linearRegex = LinearRegex.compile(patternStr, (patternFlags & Pattern.CASE_INSENSITIVE) != 0);
+		}
 	}
 }
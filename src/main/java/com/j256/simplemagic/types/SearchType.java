@@ -1,5 +1,12 @@
 package com.j256.simplemagic.types;
 
+import java.util.Arrays;
+
+import com.j256.simplemagic.entries.ByteScanner;
+import com.j256.simplemagic.entries.MatchLimiter;
+import com.j256.simplemagic.entries.SearchMatcher;
+import com.j256.simplemagic.entries.TextClassifier;
+
 /**
  * From the magic(5) man page: A literal string search starting at the given line offset. The same modifier flags can be
  * used as for string patterns. The modifier flags (if any) must be followed by /number range, that is, the number of
@@ -13,23 +20,66 @@ package com.j256.simplemagic.types;
  * 
  * @author graywatson
  */
-public class SearchType extends StringType {
+public class SearchType extends StringType implements SearchMatcher {
+
+	/** searches which try fewer positions than this are faster to do directly than to index */
+	private static final int MIN_INDEXED_RANGE = 64;
+	/** how many offsets are tried between the checks of the time */
+	private static final int TIME_CHECK_MASK = 0x3F;
+
+	@Override
+	public Object convertTestString(String typeStr, String testStr) {
+		TestInfo info = (TestInfo) super.convertTestString(typeStr, testStr);
+		info.buildSearchShifts();
+		return info;
+	}
+
+	@Override
+	public Object newTestValue(StringOperator operator, String pattern, boolean compactWhiteSpace,
+			boolean optionalWhiteSpace, boolean caseInsensitive, boolean textTest, int maxOffset) {
+		TestInfo info = (TestInfo) super.newTestValue(operator, pattern, compactWhiteSpace, optionalWhiteSpace,
+				caseInsensitive, textTest, maxOffset);
+		info.buildSearchShifts();
+		return info;
+	}
 
 	@Override
 	public Object isMatch(Object testValue, Long andValue, boolean unsignedType, Object extractedValue,
 			MutableOffset mutableOffset, byte[] bytes) {
+		return isSearchMatch(testValue, mutableOffset, bytes, null);
+	}
+
+	/**
+	 * The bytes of the range are counted by the limiter before they are searched and its time is checked as the offsets
+	 * are tried.
+	 */
+	@Override
+	public Object isSearchMatch(Object testValue, MutableOffset mutableOffset, byte[] bytes, MatchLimiter limiter) {
 		TestInfo info = (TestInfo) testValue;
-		int maxOffset = info.maxOffset;
-		if (info.optionalWhiteSpace) {
-			// we have to look at all of the bytes unfortunately
-			maxOffset = bytes.length;
+		int end = findEndOffset(info, mutableOffset.offset, bytes);
+		if (limiter != null && !limiter.scanBytes(Math.max(0, end - Math.max(0, mutableOffset.offset)))) {
+			return null;
 		}
-		// if offset is 1 then we need to pre-read 1 char
-		int end = mutableOffset.offset + maxOffset + info.pattern.length();
-		if (end > bytes.length) {
-			end = bytes.length;
+		if (info.searchShifts != null && mutableOffset.offset >= 0) {
+			return findShiftedMatch(info, end, mutableOffset, bytes, limiter);
 		}
+		/*
+		 * The whitespace flags mean that the pattern can match any number of bytes so we have to try every offset, or
+		 * every one that starts with the first character. Each one can compare up to the rest of the bytes so this is
+		 * not bounded by the range and we check the time.
+		 */
+		byte[] firstBytes = (mutableOffset.offset >= 0 ? info.searchFirstBytes : null);
+		int numTried = 0;
 		for (int offset = mutableOffset.offset; offset < end; offset++) {
+			if (firstBytes != null) {
+				offset = ByteScanner.indexOf(bytes, offset, end, firstBytes[0], firstBytes[1]);
+				if (offset < 0) {
+					return null;
+				}
+			}
+			if (limiter != null && (++numTried & TIME_CHECK_MASK) == 0 && !limiter.checkTime()) {
+				return null;
+			}
 			String match = findOffsetMatch(info, offset, mutableOffset, bytes, null, bytes.length);
 			if (match != null) {
 				return match;
@@ -37,4 +87,114 @@ public class SearchType extends StringType {
 		}
 		return null;
 	}
+
+	@Override
+	public byte[] getRequiredStartingBytes(Object testValue) {
+		// the pattern can be found anywhere in the range
+		return null;
+	}
+
+	@Override
+	public boolean isTextTest(Object testValue) {
+		TestInfo info = (TestInfo) testValue;
+		return (info.textTest || TextClassifier.isText(info.pattern));
+	}
+
+	@Override
+	public String getSearchString(Object testValue) {
+		TestInfo info = (TestInfo) testValue;
+		if (info.operator != StringOperator.EQUALS) {
+			// the other operators match other strings
+			return null;
+		}
+		if (!info.optionalWhiteSpace && info.maxOffset + info.pattern.length() < MIN_INDEXED_RANGE) {
+			return null;
+		}
+		return info.pattern;
+	}
+
+	/**
+	 * The bytes that are compared at each hit are counted by the limiter before they are compared.
+	 */
+	@Override
+	public Object isSearchMatch(Object testValue, MutableOffset mutableOffset, byte[] bytes, int[] hitOffsets,
+			int numHits, MatchLimiter limiter) {
+		TestInfo info = (TestInfo) testValue;
+		int startOffset = mutableOffset.offset;
+		if (startOffset < 0) {
+			return isSearchMatch(testValue, mutableOffset, bytes, limiter);
+		}
+		int end = findEndOffset(info, startOffset, bytes);
+		int hitIndex = Arrays.binarySearch(hitOffsets, 0, numHits, startOffset);
+		if (hitIndex < 0) {
+			hitIndex = -hitIndex - 1;
+		}
+		for (; hitIndex < numHits; hitIndex++) {
+			int hitOffset = hitOffsets[hitIndex];
+			/*
+			 * The whitespace before the hit may be matched by whitespace in the pattern or skipped. Since the hits are
+			 * not whitespace, we won't try any offset twice.
+			 */
+			int offset = hitOffset;
+			while (offset > startOffset && Character.isWhitespace((char) (bytes[offset - 1] & 0xFF))) {
+				offset--;
+			}
+			if (offset >= end) {
+				break;
+			}
+			int numCompared = Math.min(hitOffset - offset + info.pattern.length(), bytes.length - offset);
+			if (limiter != null && !limiter.scanBytes(numCompared)) {
+				return null;
+			}
+			for (; offset <= hitOffset && offset < end; offset++) {
+				if (limiter != null && (offset & TIME_CHECK_MASK) == 0 && !limiter.checkTime()) {
+					return null;
+				}
+				String match = findOffsetMatch(info, offset, mutableOffset, bytes, null, bytes.length);
+				if (match != null) {
+					return match;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Search for the pattern using the Horspool shifts which skip the offsets where the pattern can't match.
+	 */
+	private String findShiftedMatch(TestInfo info, int end, MutableOffset mutableOffset, byte[] bytes,
+			MatchLimiter limiter) {
+		int length = info.pattern.length();
+		int[] shifts = info.searchShifts;
+		int lastOffset = Math.min(end - 1, bytes.length - length);
+		int numTried = 0;
+		for (int offset = mutableOffset.offset; offset <= lastOffset;) {
+			if (limiter != null && (++numTried & TIME_CHECK_MASK) == 0 && !limiter.checkTime()) {
+				return null;
+			}
+			String match = findOffsetMatch(info, offset, mutableOffset, bytes, null, bytes.length);
+			if (match != null) {
+				return match;
+			}
+			offset += shifts[bytes[offset + length - 1] & 0xFF];
+		}
+		return null;
+	}
+
+	/**
+	 * Return the offset after the last one that we try the search at.
+	 */
+	private int findEndOffset(TestInfo info, int startOffset, byte[] bytes) {
+		int maxOffset = info.maxOffset;
+		if (info.optionalWhiteSpace) {
+			// we have to look at all of the bytes unfortunately
+			maxOffset = bytes.length;
+		}
+		// if offset is 1 then we need to pre-read 1 char
+		int end = startOffset + maxOffset + info.pattern.length();
+		if (end > bytes.length) {
+			end = bytes.length;
+		}
+		return end;
+	}
 }
@@ -26,12 +26,12 @@ public class ShortType extends BaseLongType {
 	}
 
 	@Override
-	public int compare(boolean unsignedType, Number extractedValue, Number testValue) {
+	public int compare(boolean unsignedType, long extractedValue, long testValue) {
 		if (unsignedType) {
 			return LongType.staticCompare(extractedValue, testValue);
 		}
-		short extractedShort = extractedValue.shortValue();
-		short testShort = testValue.shortValue();
+		short extractedShort = (short) extractedValue;
+		short testShort = (short) testValue;
 		if (extractedShort > testShort) {
 			return 1;
 		} else if (extractedShort < testShort) {
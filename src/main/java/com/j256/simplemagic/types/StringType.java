@@ -1,11 +1,15 @@
 package com.j256.simplemagic.types;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.j256.simplemagic.entries.MagicFormatter;
-import com.j256.simplemagic.entries.MagicMatcher;
+import com.j256.simplemagic.entries.MagicSourceGenerator;
+import com.j256.simplemagic.entries.TextMatcher;
 
 /**
  * From the magic(5) man page: A string of bytes. The string type specification can be optionally followed by /[Bbc]*.
@@ -15,19 +19,35 @@ import com.j256.simplemagic.entries.MagicMatcher;
  * characters in the magic match both lower and upper case characters in the target, whereas upper case characters in
  * the magic only match upper-case characters in the target.
  * 
+ * <p>
+ * Like file(1), a string test is only a text test if it has the ``t'' flag. Many binary formats start with text so the
+ * pattern being text doesn't make it a text test as it does for the search and regex types.
+ * </p>
+ * 
  * @author graywatson
  */
-public class StringType implements MagicMatcher {
+public class StringType implements TextMatcher {
 
 	private final static Pattern TYPE_PATTERN = Pattern.compile("[^/]+(/\\d+)?(/[BbcwWt]*)?");
 	protected static final String EMPTY = "";
+	/** whether each of the byte values is whitespace */
+	private static final boolean[] WHITESPACE = new boolean[256];
+	/** lower-case of each of the byte values */
+	private static final char[] LOWER_CASE = new char[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			WHITESPACE[i] = Character.isWhitespace((char) i);
+			LOWER_CASE[i] = Character.toLowerCase((char) i);
+		}
+	}
 
 	@Override
 	public Object convertTestString(String typeStr, String testStr) {
 		Matcher matcher = TYPE_PATTERN.matcher(typeStr);
 		if (!matcher.matches()) {
 			// may not be able to get here
-			return new TestInfo(StringOperator.DEFAULT_OPERATOR, (testStr), false, false, false, 0);
+			return new TestInfo(StringOperator.DEFAULT_OPERATOR, (testStr), false, false, false, false, 0);
 		}
 		// max-offset is ignored by the string type
 		int maxOffset = 0;
@@ -44,6 +64,7 @@ public class StringType implements MagicMatcher {
 		boolean compactWhiteSpace = false;
 		boolean optionalWhiteSpace = false;
 		boolean caseInsensitive = false;
+		boolean textTest = false;
 		String flagsStr = matcher.group(2);
 		if (flagsStr != null) {
 			// look at flags/modifiers
@@ -59,6 +80,8 @@ public class StringType implements MagicMatcher {
 						caseInsensitive = true;
 						break;
 					case 't':
+						textTest = true;
+						break;
 					case 'w':
 					case 'W':
 						// XXX: no idea what these do
@@ -74,7 +97,7 @@ public class StringType implements MagicMatcher {
 		}
 		String processedPattern = preProcessPattern(testStr);
 		return new TestInfo(operator, processedPattern, compactWhiteSpace, optionalWhiteSpace, caseInsensitive,
-				maxOffset);
+				textTest, maxOffset);
 	}
 
 	@Override
@@ -102,12 +125,71 @@ public class StringType implements MagicMatcher {
 		}
 	}
 
+	@Override
+	public byte[] getRequiredStartingBytes(Object testValue) {
+		if (testValue == null) {
+			return null;
+		} else {
+			return ((TestInfo) testValue).getRequiredStartingBytes();
+		}
+	}
+
+	@Override
+	public byte[] getRequiredBytesMask(long andValue) {
+		return null;
+	}
+
+	@Override
+	public boolean isTextTest(Object testValue) {
+		return ((TestInfo) testValue).textTest;
+	}
+
+	@Override
+	public void writeTestValue(Object testValue, DataOutput output) throws IOException {
+		TestInfo info = (TestInfo) testValue;
+		output.writeByte(info.operator.ordinal());
+		output.writeUTF(info.pattern);
+		output.writeBoolean(info.compactWhiteSpace);
+		output.writeBoolean(info.optionalWhiteSpace);
+		output.writeBoolean(info.caseInsensitive);
+		output.writeBoolean(info.textTest);
+		output.writeInt(info.maxOffset);
+	}
+
+	@Override
+	public Object readTestValue(DataInput input) throws IOException {
+		StringOperator operator = StringOperator.values()[input.readByte()];
+		return newTestValue(operator, input.readUTF(), input.readBoolean(), input.readBoolean(), input.readBoolean(),
+				input.readBoolean(), input.readInt());
+	}
+
+	@Override
+	public String getTestValueSource(Object testValue, String matcherSource) {
+		TestInfo info = (TestInfo) testValue;
+		return "((StringType) " + matcherSource + ").newTestValue(StringOperator." + info.operator.name() + ", "
+				+ MagicSourceGenerator.stringSource(info.pattern) + ", " + info.compactWhiteSpace + ", "
+				+ info.optionalWhiteSpace + ", " + info.caseInsensitive + ", " + info.textTest + ", " + info.maxOffset
+				+ ")";
+	}
+
+	/**
+	 * Create the test-value from its already processed parts.
+	 */
+	public Object newTestValue(StringOperator operator, String pattern, boolean compactWhiteSpace,
+			boolean optionalWhiteSpace, boolean caseInsensitive, boolean textTest, int maxOffset) {
+		return new TestInfo(operator, pattern, compactWhiteSpace, optionalWhiteSpace, caseInsensitive, textTest,
+				maxOffset);
+	}
+
 	/**
 	 * Find offset match either in an array of bytes or chars, which ever is not null.
 	 */
 	protected String findOffsetMatch(TestInfo info, int startOffset, MutableOffset mutableOffset, byte[] bytes,
 			char[] chars, int maxPos) {
 
+		if (bytes != null && info.patternBytes != null) {
+			return findBytesMatch(info, startOffset, mutableOffset, bytes, maxPos);
+		}
 		int targetPos = startOffset;
 		boolean lastMagicCompactWhitespace = false;
 		for (int magicPos = 0; magicPos < info.pattern.length(); magicPos++) {
@@ -128,13 +210,13 @@ public class StringType implements MagicMatcher {
 			// if it matches, we can continue
 			if (info.operator.doTest(targetCh, magicCh, lastChar)) {
 				if (info.compactWhiteSpace) {
-					lastMagicCompactWhitespace = Character.isWhitespace(magicCh);
+					lastMagicCompactWhitespace = isWhitespace(magicCh);
 				}
 				continue;
 			}
 
 			// if it doesn't match, maybe the target is a whitespace
-			if ((lastMagicCompactWhitespace || info.optionalWhiteSpace) && Character.isWhitespace(targetCh)) {
+			if ((lastMagicCompactWhitespace || info.optionalWhiteSpace) && isWhitespace(targetCh)) {
 				do {
 					if (targetPos >= maxPos) {
 						break;
@@ -145,11 +227,11 @@ public class StringType implements MagicMatcher {
 						targetCh = charFromByte(bytes, targetPos);
 					}
 					targetPos++;
-				} while (Character.isWhitespace(targetCh));
+				} while (isWhitespace(targetCh));
 				// now that we get to the first non-whitespace, it must match
 				if (info.operator.doTest(targetCh, magicCh, lastChar)) {
 					if (info.compactWhiteSpace) {
-						lastMagicCompactWhitespace = Character.isWhitespace(magicCh);
+						lastMagicCompactWhitespace = isWhitespace(magicCh);
 					}
 					continue;
 				}
@@ -158,7 +240,7 @@ public class StringType implements MagicMatcher {
 
 			// maybe it doesn't match because of case insensitive handling and magic-char is lowercase
 			if (info.caseInsensitive && Character.isLowerCase(magicCh)) {
-				if (info.operator.doTest(Character.toLowerCase(targetCh), magicCh, lastChar)) {
+				if (info.operator.doTest(toLowerCase(targetCh), magicCh, lastChar)) {
 					// matches
 					continue;
 				}
@@ -168,6 +250,50 @@ public class StringType implements MagicMatcher {
 			return null;
 		}
 
+		mutableOffset.offset = targetPos;
+		if (info.isExactMatch()) {
+			// the matched characters are the pattern so we don't need to build a new string
+			return info.pattern;
+		}
+		return matchedString(startOffset, targetPos, bytes, chars);
+	}
+
+	/**
+	 * Find the match of a pattern which is compared one byte to one character without the operators or the whitespace
+	 * flags. This is most of the string tests so the bytes are compared directly with the encoded pattern.
+	 */
+	private String findBytesMatch(TestInfo info, int startOffset, MutableOffset mutableOffset, byte[] bytes,
+			int maxPos) {
+		byte[] patternBytes = info.patternBytes;
+		int length = patternBytes.length;
+		if (startOffset < 0 || maxPos - startOffset < length) {
+			return null;
+		}
+		boolean[] caseFolded = info.caseFolded;
+		if (caseFolded == null) {
+			for (int i = 0; i < length; i++) {
+				if (bytes[startOffset + i] != patternBytes[i]) {
+					return null;
+				}
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				byte targetByte = bytes[startOffset + i];
+				if (targetByte != patternBytes[i]
+						&& (!caseFolded[i] || LOWER_CASE[targetByte & 0xFF] != (patternBytes[i] & 0xFF))) {
+					return null;
+				}
+			}
+		}
+		int targetPos = startOffset + length;
+		mutableOffset.offset = targetPos;
+		if (caseFolded == null) {
+			return info.pattern;
+		}
+		return matchedString(startOffset, targetPos, bytes, null);
+	}
+
+	private String matchedString(int startOffset, int targetPos, byte[] bytes, char[] chars) {
 		if (bytes == null) {
 			chars = Arrays.copyOfRange(chars, startOffset, targetPos);
 		} else {
@@ -176,7 +302,6 @@ public class StringType implements MagicMatcher {
 				chars[i] = charFromByte(bytes, startOffset + i);
 			}
 		}
-		mutableOffset.offset = targetPos;
 		return new String(chars);
 	}
 
@@ -184,6 +309,22 @@ public class StringType implements MagicMatcher {
 		return (char) (bytes[index] & 0xFF);
 	}
 
+	private static boolean isWhitespace(char ch) {
+		if (ch < WHITESPACE.length) {
+			return WHITESPACE[ch];
+		} else {
+			return Character.isWhitespace(ch);
+		}
+	}
+
+	private static char toLowerCase(char ch) {
+		if (ch < LOWER_CASE.length) {
+			return LOWER_CASE[ch];
+		} else {
+			return Character.toLowerCase(ch);
+		}
+	}
+
 	/**
 	 * Pre-processes the pattern by handling \007 type of escapes and others.
 	 */
@@ -289,17 +430,113 @@ public class StringType implements MagicMatcher {
 		final boolean compactWhiteSpace;
 		final boolean optionalWhiteSpace;
 		final boolean caseInsensitive;
+		/** whether the test is a text test because of the 't' flag */
+		final boolean textTest;
 		// ignored by the string type
 		final int maxOffset;
+		/** Horspool shift of the search for each byte value or null if the pattern is not searched for that way */
+		int[] searchShifts;
+		/** the two byte values which can start a match of the search or null if the offsets aren't skipped that way */
+		byte[] searchFirstBytes;
+		/** pattern encoded as bytes if it is compared one byte to one character or null if not */
+		final byte[] patternBytes;
+		/** whether each of the pattern characters also matches upper-case or null if none of them do */
+		final boolean[] caseFolded;
 
 		public TestInfo(StringOperator operator, String pattern, boolean compactWhiteSpace, boolean optionalWhiteSpace,
-				boolean caseInsensitive, int maxOffset) {
+				boolean caseInsensitive, boolean textTest, int maxOffset) {
 			this.operator = operator;
 			this.pattern = pattern;
 			this.compactWhiteSpace = compactWhiteSpace;
 			this.optionalWhiteSpace = optionalWhiteSpace;
 			this.caseInsensitive = caseInsensitive;
+			this.textTest = textTest;
 			this.maxOffset = maxOffset;
+			this.patternBytes = encodePattern();
+			this.caseFolded = findCaseFolded();
+		}
+
+		private byte[] encodePattern() {
+			if (operator != StringOperator.EQUALS || compactWhiteSpace || optionalWhiteSpace || pattern == null) {
+				return null;
+			}
+			byte[] bytes = new byte[pattern.length()];
+			for (int i = 0; i < bytes.length; i++) {
+				char ch = pattern.charAt(i);
+				if (ch > 0xFF) {
+					// can never match a byte
+					return null;
+				}
+				bytes[i] = (byte) ch;
+			}
+			return bytes;
+		}
+
+		private boolean[] findCaseFolded() {
+			if (!caseInsensitive || patternBytes == null) {
+				return null;
+			}
+			boolean[] folded = new boolean[patternBytes.length];
+			for (int i = 0; i < folded.length; i++) {
+				folded[i] = Character.isLowerCase(pattern.charAt(i));
+			}
+			return folded;
+		}
+
+		/**
+		 * Build the Horspool shifts so the search for the pattern can skip the offsets where it can't match. If the last
+		 * byte under the pattern can't match any of the earlier characters then we can move past it. This is only done
+		 * for patterns which are matched one character to one byte which is not the case with the whitespace flags.
+		 * With the compact whitespace flag the first byte of a match must still be the first character so the search
+		 * skips to the bytes which are it instead.
+		 */
+		void buildSearchShifts() {
+			if (operator != StringOperator.EQUALS || optionalWhiteSpace || pattern.length() == 0) {
+				return;
+			}
+			if (compactWhiteSpace) {
+				this.searchFirstBytes = findFirstBytes();
+				return;
+			}
+			int length = pattern.length();
+			int[] shifts = new int[256];
+			Arrays.fill(shifts, length);
+			for (int i = 0; i < length - 1; i++) {
+				char magicCh = pattern.charAt(i);
+				for (int value = 0; value < shifts.length; value++) {
+					char targetCh = (char) value;
+					if (targetCh == magicCh || (caseInsensitive && Character.isLowerCase(magicCh)
+							&& Character.toLowerCase(targetCh) == magicCh)) {
+						shifts[value] = length - 1 - i;
+					}
+				}
+			}
+			this.searchShifts = shifts;
+		}
+
+		/**
+		 * Return the byte values which match the first character of the pattern or null if there are more than two.
+		 */
+		private byte[] findFirstBytes() {
+			char magicCh = pattern.charAt(0);
+			byte[] firstBytes = new byte[2];
+			int numFirstBytes = 0;
+			for (int value = 0; value < 256; value++) {
+				if (value == magicCh || (caseInsensitive && Character.isLowerCase(magicCh)
+						&& LOWER_CASE[value] == magicCh)) {
+					if (numFirstBytes == firstBytes.length) {
+						return null;
+					}
+					firstBytes[numFirstBytes++] = (byte) value;
+				}
+			}
+			if (numFirstBytes == 0) {
+				// can never match a byte but this is rare enough to leave to the match
+				return null;
+			} else if (numFirstBytes == 1) {
+				firstBytes[1] = firstBytes[0];
+			}
+			return firstBytes;
 		}
 
 		/**
@@ -314,6 +551,25 @@ public class StringType implements MagicMatcher {
 			}
 		}
 
+		/**
+		 * Return true if the matched characters must be exactly the pattern.
+		 */
+		public boolean isExactMatch() {
+			return (operator == StringOperator.EQUALS && !compactWhiteSpace && !optionalWhiteSpace && !caseInsensitive);
+		}
+
+		/**
+		 * Get the bytes that must start the content for the pattern to match or null if the pattern can match other
+		 * bytes because of the operator or the flags.
+		 */
+		public byte[] getRequiredStartingBytes() {
+			if (pattern == null || pattern.length() == 0 || !isExactMatch()) {
+				return null;
+			}
+			// the exact patterns are already encoded unless they can never match a byte
+			return patternBytes;
+		}
+
 		@Override
 		public String toString() {
 			return pattern;
@@ -0,0 +1,83 @@
+package com.j256.simplemagic.entries;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Java 17 version of the scanning kernels which is in META-INF/versions/17 of the multi-release jar. The bytes are read
+ * 8 at a time as a little-endian long and tested with SWAR (SIMD within a register) bit tricks so the lowest flagged
+ * byte of the long is the first byte of interest. The jdk.incubator.vector module would need to be added to the JVMs
+ * of the users so it isn't used.
+ * 
+ * @author graywatson
+ */
+public class ByteScanner {
+
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	/** 0x01 in each byte */
+	private static final long ONES = 0x0101010101010101L;
+	/** 0x80 in each byte */
+	private static final long HIGHS = 0x8080808080808080L;
+
+	/**
+	 * For static calls only.
+	 */
+	private ByteScanner() {
+	}
+
+	/**
+	 * Return the offset of the first byte in the range that is not printable ASCII, 0x20 to 0x7E, or the end of the
+	 * range if they all are.
+	 */
+	public static int skipPrintableAscii(byte[] bytes, int start, int end) {
+		int i = start;
+		for (; i + Long.BYTES <= end; i += Long.BYTES) {
+			long word = (long) LONGS.get(bytes, i);
+			long low = word & ~HIGHS;
+			// the high bytes, the bytes below 0x20 which borrow, and the 0x7F bytes which carry into the high bit
+			long flags = (word & HIGHS) | ((low - 0x20 * ONES) & HIGHS) | ((low + ONES) & HIGHS);
+			if (flags != 0) {
+				// a borrow can only flag the bytes above the one that borrowed so the lowest is right
+				return i + (Long.numberOfTrailingZeros(flags) >>> 3);
+			}
+		}
+		for (; i < end; i++) {
+			int value = bytes[i] & 0xFF;
+			if (value < 0x20 || value >= 0x7F) {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Return the offset of the first byte in the range that is either of the values or -1 if none.
+	 */
+	public static int indexOf(byte[] bytes, int start, int end, byte value, byte otherValue) {
+		long values = (value & 0xFFL) * ONES;
+		long otherValues = (otherValue & 0xFFL) * ONES;
+		int i = start;
+		for (; i + Long.BYTES <= end; i += Long.BYTES) {
+			long word = (long) LONGS.get(bytes, i);
+			long flags = zeroBytes(word ^ values) | zeroBytes(word ^ otherValues);
+			if (flags != 0) {
+				return i + (Long.numberOfTrailingZeros(flags) >>> 3);
+			}
+		}
+		for (; i < end; i++) {
+			if (bytes[i] == value || bytes[i] == otherValue) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Flag the zero bytes of the word. Only the lowest flag is exact because the borrow of a zero byte can flag the
+	 * 0x01 byte above it.
+	 */
+	private static long zeroBytes(long word) {
+		return (word - ONES) & ~word & HIGHS;
+	}
+}
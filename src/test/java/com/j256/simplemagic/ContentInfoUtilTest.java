@@ -1,12 +1,16 @@
 package com.j256.simplemagic;
 
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -21,12 +25,17 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.easymock.EasyMock;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.j256.simplemagic.ContentInfoUtil.ErrorCallBack;
+
 public class ContentInfoUtilTest {
 
 	private ContentInfoUtil contentInfoUtil;
@@ -219,6 +228,270 @@ public class ContentInfoUtilTest {
 		}
 	}
 
+	@Test
+	public void testFindMimeType() throws Exception {
+		ContentInfoUtil util = getContentInfoUtil();
+		for (FileType fileType : fileTypes) {
+			InputStream stream = getClass().getResourceAsStream(fileType.fileName);
+			try {
+				assertEquals("bad mime-type of " + fileType.fileName, fileType.expectedMimeType,
+						util.findMimeType(stream));
+			} finally {
+				stream.close();
+			}
+		}
+		assertEquals(ContentType.EMPTY.getMimeType(), util.findMimeType(new byte[0]));
+		assertEquals("image/gif", util.findMimeType(new File("src/test/resources/files/x.gif")));
+	}
+
+	@Test
+	public void testRestrictToMimeTypes() throws Exception {
+		ContentInfoUtil util = getContentInfoUtil().restrictToMimeTypes("image/*");
+		for (FileType fileType : fileTypes) {
+			ContentInfo info = contentInfoFromResource(util, fileType.fileName);
+			if (fileType.expectedMimeType != null && fileType.expectedMimeType.startsWith("image/")) {
+				checkInfo(fileType, info);
+			} else if (info != null) {
+				assertTrue("bad mime-type of " + fileType.fileName, info.getMimeType().startsWith("image/"));
+			}
+		}
+	}
+
+	@Test
+	public void testRestrictTo() throws Exception {
+		ContentInfoUtil util = getContentInfoUtil().restrictTo(ContentType.PNG, ContentType.GIF);
+		ContentInfo info = contentInfoFromResource(util, "/files/x.gif");
+		assertNotNull(info);
+		assertEquals(ContentType.GIF, info.getContentType());
+		assertEquals("image/png", util.findMimeType(new File("src/test/resources/files/x.png")));
+		assertNull(contentInfoFromResource(util, "/files/x.pdf"));
+		assertNull(util.findMimeType(new File("src/test/resources/files/x.jp2")));
+		// the original is not changed
+		assertEquals("application/pdf", getContentInfoUtil().findMimeType(new File("src/test/resources/files/x.pdf")));
+	}
+
+	@Test
+	public void testMatches() throws Exception {
+		ContentInfoUtil util = getContentInfoUtil();
+		for (FileType fileType : fileTypes) {
+			if (fileType.expectedMimeType != null) {
+				assertTrue("bad mime-type of " + fileType.fileName,
+						util.matchesMimeType(bytesFromResource(fileType.fileName), fileType.expectedMimeType));
+			}
+		}
+		byte[] gifBytes = bytesFromResource("/files/x.gif");
+		assertTrue(util.matches(gifBytes, ContentType.GIF));
+		assertTrue(util.matchesMimeType(gifBytes, "IMAGE/GIF"));
+		assertFalse(util.matches(gifBytes, ContentType.PNG));
+		assertFalse(util.matches(gifBytes, ContentType.PDF));
+		assertFalse(util.matchesMimeType(gifBytes, "unknown/type"));
+		assertFalse(util.matchesMimeType(gifBytes, null));
+		assertTrue(util.matches(new byte[0], ContentType.EMPTY));
+		assertFalse(util.restrictTo(ContentType.PNG).matches(gifBytes, ContentType.GIF));
+	}
+
+	@Test
+	public void testFindMatchWithFileName() throws Exception {
+		ContentInfoUtil util = getContentInfoUtil();
+		for (FileType fileType : fileTypes) {
+			// the message may come from another entry of the same type
+			ContentInfo info = util.findMatch(bytesFromResource(fileType.fileName), fileType.fileName);
+			assertNotNull(info);
+			assertEquals("bad type for " + fileType.fileName, fileType.expectedType, info.getContentType());
+			assertEquals("bad mime-type for " + fileType.fileName, fileType.expectedMimeType, info.getMimeType());
+		}
+		byte[] gifBytes = bytesFromResource("/files/x.gif");
+		// wrong extension falls back to the other entries
+		assertEquals(ContentType.GIF, util.findMatch(gifBytes, "foo.png").getContentType());
+		assertEquals(ContentType.GIF, util.findMatch(gifBytes, "foo.unknown").getContentType());
+		assertEquals(ContentType.GIF, util.findMatch(gifBytes, null).getContentType());
+		assertEquals(ContentInfo.EMPTY_INFO, util.findMatch(new byte[0], "foo.gif"));
+		assertNull(util.findMatch(new byte[] { 1, 2, 3, 4 }, "foo.gif"));
+	}
+
+	@Test
+	public void testTextEntriesSkipBinary() throws Exception {
+		ContentInfoUtil util = getContentInfoUtil();
+		byte[] htmlBytes = " <html><body>hello</body></html>".getBytes("US-ASCII");
+		assertEquals(ContentType.HTML, util.findMatch(htmlBytes).getContentType());
+		// the html entries only have text tests so they aren't tested on binary content
+		htmlBytes[0] = 0;
+		assertNull(util.findMatch(htmlBytes));
+	}
+
+	@Test
+	public void testStringTextFlag() throws Exception {
+		Reader reader = new StringReader( //
+				"0   string/t   HELLO   text hello\n" //
+						+ "0   string     WORLD   binary world\n");
+		ContentInfoUtil util = new ContentInfoUtil(reader, null);
+		assertEquals("text hello", util.findMatch("HELLO there".getBytes("US-ASCII")).getMessage());
+		// only the string test with the text flag is a text test
+		assertNull(util.findMatch("HELLO\0there".getBytes("US-ASCII")));
+		assertEquals("binary world", util.findMatch("WORLD\0there".getBytes("US-ASCII")).getMessage());
+	}
+
+	@Test
+	public void testTextEncoding() throws Exception {
+		ContentInfoUtil util = getContentInfoUtil();
+		ContentInfo info = util.findMatch("<html><body>\r\nhello\r\n</body></html>".getBytes("US-ASCII"));
+		assertEquals(ContentType.HTML, info.getContentType());
+		assertEquals(TextEncoding.ASCII, info.getTextEncoding());
+		assertEquals(EnumSet.of(LineTerminator.CRLF), info.getLineTerminators());
+		assertEquals("ASCII text, with CRLF line terminators", info.getTextDescription());
+
+		info = util.findMatch("<html><body>café</body></html>\n".getBytes("UTF-8"));
+		assertEquals(TextEncoding.UTF_8, info.getTextEncoding());
+		assertEquals("UTF-8 Unicode text", info.getTextDescription());
+
+		info = util.findMatch(bytesFromResource("/files/x.gif"));
+		assertEquals(TextEncoding.BINARY, info.getTextEncoding());
+		assertNull(info.getTextDescription());
+		assertNull(ContentInfo.EMPTY_INFO.getTextEncoding());
+	}
+
+	@Test
+	public void testMatchLimits() throws Exception {
+		ContentInfoUtil util = new ContentInfoUtil();
+		byte[] xmlBytes = bytesFromResource("/files/1.xml");
+		ContentInfo expected = util.findMatch(xmlBytes);
+
+		// limits which are not reached don't change the match
+		util.setMatchLimits(new MatchLimits(60000, 1000000, 1000000000L));
+		ContentInfo info = util.findMatch(xmlBytes);
+		assertFalse(info.isLimitExceeded());
+		assertEquals(expected.getMessage(), info.getMessage());
+		util.setMatchLimits(new MatchLimits());
+		assertFalse(util.findMatch(xmlBytes).isLimitExceeded());
+
+		util.setMatchLimits(new MatchLimits(0, 1, 0));
+		info = util.findMatch(xmlBytes);
+		assertTrue(info.isLimitExceeded());
+		assertEquals(ContentType.OTHER, info.getContentType());
+		assertTrue(util.findMatch(xmlBytes, "foo.xml").isLimitExceeded());
+
+		util.setMatchLimits(new MatchLimits(0, 0, 1));
+		assertTrue(util.findMatch(xmlBytes).isLimitExceeded());
+
+		// the mime-type methods are also limited
+		util.setMatchLimits(new MatchLimits(0, 1, 0));
+		info = util.findMimeTypeInfo(xmlBytes);
+		assertTrue(info.isLimitExceeded());
+		assertEquals(ContentType.OTHER, info.getContentType());
+		assertNull(util.findMimeType(xmlBytes));
+		info = util.matchMimeType(xmlBytes, expected.getMimeType());
+		assertTrue(info.isLimitExceeded());
+		assertFalse(util.matchesMimeType(xmlBytes, expected.getMimeType()));
+		util.setMatchLimits(new MatchLimits(60000, 1000000, 1000000000L));
+		info = util.findMimeTypeInfo(xmlBytes);
+		assertFalse(info.isLimitExceeded());
+		assertEquals(expected.getMimeType(), info.getMimeType());
+		info = util.matchMimeType(xmlBytes, expected.getMimeType());
+		assertFalse(info.isLimitExceeded());
+		assertEquals(expected.getMimeType(), info.getMimeType());
+		assertTrue(util.matchesMimeType(xmlBytes, expected.getMimeType()));
+		assertNull(util.matchMimeType(xmlBytes, "image/gif"));
+		util.setMatchLimits(new MatchLimits(0, 0, 1));
+
+		// the limits are kept by the restricted utility
+		assertTrue(util.restrictTo(ContentType.XML).findMatch(xmlBytes).isLimitExceeded());
+		util.setMatchLimits(null);
+		assertFalse(util.findMatch(xmlBytes).isLimitExceeded());
+	}
+
+	@Test
+	public void testScannedBytesLimit() throws Exception {
+		Reader reader = new StringReader( //
+				"0   search/1      PK          short search\n" //
+						+ "0   search/10000  MAGICWORD   long search\n");
+		ContentInfoUtil util = new ContentInfoUtil(reader, null);
+		byte[] bytes = new byte[10000];
+		Arrays.fill(bytes, (byte) 'x');
+		bytes[0] = 'P';
+		bytes[1] = 'K';
+		// the short search only scans its range, not the rest of the content
+		util.setMatchLimits(new MatchLimits(0, 0, 100));
+		ContentInfo info = util.findMatch(bytes);
+		assertFalse(info.isLimitExceeded());
+		assertEquals("short search", info.getMessage());
+
+		System.arraycopy("MAGICWORD".getBytes(), 0, bytes, 0, 9);
+		// the long search is found with one pass over the content and then the hit is compared
+		info = util.findMatch(bytes);
+		assertTrue(info.isLimitExceeded());
+		util.setMatchLimits(new MatchLimits(0, 0, bytes.length + 100));
+		info = util.findMatch(bytes);
+		assertFalse(info.isLimitExceeded());
+		assertEquals("long search", info.getMessage());
+	}
+
+	@Test
+	public void testMultipleThreads() throws Exception {
+		final ContentInfoUtil util = getContentInfoUtil();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 20; j++) {
+							for (FileType fileType : fileTypes) {
+								checkFile(util, fileType);
+							}
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// the match contexts are per-thread so they should not interfere with each other
+		assertNull("thread failed: " + failure.get(), failure.get());
+	}
+
+	@Test
+	public void testPreload() throws Exception {
+		Future<ContentInfoUtil> future = ContentInfoUtil.preload();
+		ContentInfoUtil util = future.get();
+		assertTrue(future.isDone());
+		for (FileType fileType : fileTypes) {
+			checkFile(util, fileType);
+		}
+		// the later calls share the same load and each get a new utility
+		Future<ContentInfoUtil> otherFuture = ContentInfoUtil.preload(true);
+		assertTrue(otherFuture.isDone());
+		assertNotSame(util, otherFuture.get());
+		assertFalse(otherFuture.cancel(true));
+	}
+
+	@Test
+	public void testInternalEntriesConcurrently() throws Exception {
+		final ContentInfoUtil[] utils = new ContentInfoUtil[4];
+		Thread[] threads = new Thread[utils.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					utils[index] = new ContentInfoUtil();
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (ContentInfoUtil util : utils) {
+			assertNotNull(util);
+			checkFile(util, fileTypes[0]);
+		}
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testMagicNotFound() throws Exception {
 		new ContentInfoUtil("some-unknown-resource", null);
@@ -312,6 +585,59 @@ public class ContentInfoUtilTest {
 		assertEquals(ContentType.EMPTY, util.findMatch(fileType.fileName).getContentType());
 	}
 
+	@Test
+	public void testLazyParsingProperty() throws Exception {
+		String magic = "0 string abc ABC data\n>3 string\n";
+		ErrorCallBack errorCallBack = EasyMock.createMock(ErrorCallBack.class);
+		// by default the lines of the children are parsed, and their problems reported, when they are read
+		errorCallBack.error(eq(">3 string"), isA(String.class), (Exception) anyObject());
+		replay(errorCallBack);
+		new ContentInfoUtil(new StringReader(magic), errorCallBack);
+		verify(errorCallBack);
+
+		EasyMock.reset(errorCallBack);
+		replay(errorCallBack);
+		ContentInfoUtil util;
+		System.setProperty(ContentInfoUtil.LAZY_PARSING_PROPERTY, "true");
+		try {
+			util = new ContentInfoUtil(new StringReader(magic), errorCallBack);
+		} finally {
+			System.clearProperty(ContentInfoUtil.LAZY_PARSING_PROPERTY);
+		}
+		verify(errorCallBack);
+
+		// the lines of the children are parsed when their entry first matches
+		EasyMock.reset(errorCallBack);
+		errorCallBack.error(eq(">3 string"), isA(String.class), (Exception) anyObject());
+		replay(errorCallBack);
+		assertEquals("ABC data", util.findMatch("abcdef".getBytes()).getMessage());
+		verify(errorCallBack);
+	}
+
+	@Test
+	public void testCompiledMagicFile() throws Exception {
+		File magicFile = new File(OUTPUT_TEST_DIR, "magic.gz");
+		copyResourceToFile("/magic.gz", magicFile);
+		File compiledFile = new File(OUTPUT_TEST_DIR, "magic.bin");
+		MagicFileCompiler.compile(magicFile, compiledFile, null);
+		ContentInfoUtil compiledUtil = new ContentInfoUtil(compiledFile);
+		ContentInfoUtil parsedUtil = new ContentInfoUtil("/magic.gz", null);
+		for (FileType fileType : fileTypes) {
+			checkFile(compiledUtil, fileType);
+			checkFile(parsedUtil, fileType);
+		}
+		assertNotNull(new ContentInfoUtil(compiledFile.getPath(), null));
+	}
+
+	@Test
+	public void testInternalCompiledMagicFile() throws Exception {
+		// the build compiles the internal magic file which is what the default constructor loads
+		ContentInfoUtil util = new ContentInfoUtil("/magic.bin", null);
+		for (FileType fileType : fileTypes) {
+			checkFile(util, fileType);
+		}
+	}
+
 	@Test
 	public void testFindExtension() {
 		assertNull(ContentInfoUtil.findExtensionMatch(""));
@@ -372,7 +698,7 @@ public class ContentInfoUtilTest {
 
 	private ContentInfo contentInfoFromResource(ContentInfoUtil util, String resource) throws IOException {
 		InputStream stream = getClass().getResourceAsStream(resource);
-		assertNotNull("Could not file resource: " + resource, stream);
+		assertNotNull("Could not find resource: " + resource, stream);
 		try {
 			return util.findMatch(stream);
 		} finally {
@@ -380,8 +706,9 @@ public class ContentInfoUtilTest {
 		}
 	}
 
-	private ContentInfo contentInfoFromStreamWrapper(ContentInfoUtil util, String resource) throws IOException {
+	private byte[] bytesFromResource(String resource) throws IOException {
 		InputStream resourceStream = getClass().getResourceAsStream(resource);
+		assertNotNull("Could not find resource: " + resource, resourceStream);
 		ByteArrayOutputStream outputStream;
 		try {
 			outputStream = new ByteArrayOutputStream();
@@ -389,7 +716,11 @@ public class ContentInfoUtilTest {
 		} finally {
 			resourceStream.close();
 		}
-		byte[] resourceBytes = outputStream.toByteArray();
+		return outputStream.toByteArray();
+	}
+
+	private ContentInfo contentInfoFromStreamWrapper(ContentInfoUtil util, String resource) throws IOException {
+		byte[] resourceBytes = bytesFromResource(resource);
 
 		ByteArrayInputStream inputSteam = new ByteArrayInputStream(resourceBytes);
 		ContentInfoInputStreamWrapper wrappedStream = new ContentInfoInputStreamWrapper(inputSteam, util);
@@ -400,7 +731,7 @@ public class ContentInfoUtilTest {
 		try {
 			return wrappedStream.findMatch();
 		} finally {
-			resourceStream.close();
+			wrappedStream.close();
 		}
 	}
 
@@ -0,0 +1,170 @@
+package com.j256.simplemagic;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.j256.simplemagic.entries.MagicEntries;
+import com.j256.simplemagic.entries.MagicEntryParser;
+import com.j256.simplemagic.logger.Log.Level;
+import com.j256.simplemagic.logger.LoggerFactory;
+
+/**
+ * Times the internal magic entries. This is not run as part of the tests because the timings depend on the machine
+ * and what else it is doing. The benchmarks to run can be passed as arguments so each can be run in a new JVM.
+ * 
+ * <pre>
+ * java -cp target/classes:target/test-classes:junit.jar com.j256.simplemagic.PerformanceBenchmark numbers load parse
+ * </pre>
+ * 
+ * <p>
+ * <b>NOTE:</b> The simplemagicLocalLog.properties in the test resources turns on trace logging which swamps the
+ * timings so it should be removed from the class-path first.
+ * </p>
+ * 
+ * @author graywatson
+ */
+public class PerformanceBenchmark {
+
+	private static final int COMPARE_ITERATIONS = 200;
+	private static final int COMPARE_ROUNDS = 5;
+	private static final int LOAD_ITERATIONS = 5;
+	private static final int PARSE_ITERATIONS = 20;
+
+	public static void main(String[] args) throws Exception {
+		if (LoggerFactory.getLogger(PerformanceBenchmark.class).isLevelEnabled(Level.TRACE)) {
+			System.err.println("Trace logging is enabled so the timings will mostly be the logging");
+		}
+		if (args.length == 0) {
+			args = new String[] { "numbers", "load", "parse" };
+		}
+		for (String arg : args) {
+			if (arg.equals("numbers")) {
+				timeCompiledNumberTests();
+			} else if (arg.equals("load")) {
+				timeCompiledLoad();
+			} else if (arg.equals("parse")) {
+				timeParseLines();
+			} else {
+				System.err.println("Unknown benchmark: " + arg);
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Time matching the files with and without the compiled number tests. The two are run in turn so neither gets all
+	 * of the warming up.
+	 */
+	private static void timeCompiledNumberTests() throws Exception {
+		MagicEntries interpretedEntries = PerformanceTest.readInternalEntries();
+		MagicEntries compiledEntries = PerformanceTest.readInternalEntries();
+		compiledEntries.compileNumberTests();
+		byte[][] files = PerformanceTest.readCompareFiles();
+		for (int round = 0; round < COMPARE_ROUNDS; round++) {
+			long interpretedMillis = timeEntries(interpretedEntries, files);
+			long compiledMillis = timeEntries(compiledEntries, files);
+			System.out.println("round " + round + ": interpreted number tests took " + interpretedMillis
+					+ "ms, compiled took " + compiledMillis + "ms");
+		}
+	}
+
+	/**
+	 * Time loading the compiled entries and parsing the magic file. The first loads are the closest to what a new JVM
+	 * sees so the order is switched each iteration so the first load of one doesn't warm up the other. Run just this
+	 * benchmark in a new JVM for the first loads.
+	 */
+	private static void timeCompiledLoad() throws Exception {
+		// read the compiled entries that the build wrote so the magic file isn't parsed before we time it
+		byte[] compiled = readCompiledResource();
+		for (int i = 0; i < LOAD_ITERATIONS; i++) {
+			long compiledMillis;
+			long parsedMillis;
+			if (i % 2 == 0) {
+				compiledMillis = timeCompiledLoad(compiled);
+				parsedMillis = timeParsedLoad();
+			} else {
+				parsedMillis = timeParsedLoad();
+				compiledMillis = timeCompiledLoad(compiled);
+			}
+			System.out.println("load " + i + ": compiled entries took " + compiledMillis + "ms, parsed took "
+					+ parsedMillis + "ms" + (i % 2 == 0 ? "" : " (parsed first)"));
+		}
+	}
+
+	private static byte[] readCompiledResource() throws Exception {
+		InputStream stream = PerformanceBenchmark.class.getResourceAsStream("/magic.bin");
+		if (stream == null) {
+			throw new IllegalStateException("Could not find the compiled entries, run mvn process-classes first");
+		}
+		try {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int numRead;
+			while ((numRead = stream.read(buffer)) >= 0) {
+				output.write(buffer, 0, numRead);
+			}
+			return output.toByteArray();
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static long timeCompiledLoad(byte[] compiled) throws Exception {
+		long start = System.nanoTime();
+		PerformanceTest.readCompiledEntries(compiled);
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	private static long timeParsedLoad() throws Exception {
+		long start = System.nanoTime();
+		PerformanceTest.readInternalEntries();
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	/**
+	 * Time parsing the lines of the internal magic file without building the entries.
+	 */
+	private static void timeParseLines() throws Exception {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(PerformanceBenchmark.class.getResourceAsStream("/magic.gz"))));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() > 0 && line.charAt(0) != '#') {
+					lines.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		for (int i = 0; i < PARSE_ITERATIONS; i++) {
+			long start = System.nanoTime();
+			MagicEntryParser parser = new MagicEntryParser();
+			int numEntries = 0;
+			for (String line : lines) {
+				if (parser.parse(null, line, null) != null) {
+					numEntries++;
+				}
+			}
+			long millis = (System.nanoTime() - start) / 1000000;
+			System.out.println("parse " + i + ": " + numEntries + " entries from " + lines.size() + " lines took "
+					+ millis + "ms");
+		}
+	}
+
+	private static long timeEntries(MagicEntries entries, byte[][] files) {
+		long start = System.nanoTime();
+		for (int i = 0; i < COMPARE_ITERATIONS; i++) {
+			for (byte[] file : files) {
+				entries.findMatch(file);
+			}
+		}
+		return (System.nanoTime() - start) / 1000000;
+	}
+}
@@ -4,14 +4,23 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Test;
 
+import com.j256.simplemagic.entries.MagicEntries;
+
 public class PerformanceTest {
 
 	private static final String DIFFICULT_FILE_TYPE_RESOURCE = "/files/exif2.jpg";
+	private static final String[] COMPARE_FILE_RESOURCES = new String[] { "/files/x.doc", "/files/x.gif",
+			"/files/x.class", "/files/dos.exe", "/files/x.wav", "/files/x.png", "/files/x.zip", "/files/x.perl" };
 
 	@Test
 	public void testLargeRun() throws Exception {
@@ -39,4 +48,76 @@ public class PerformanceTest {
 			assertEquals("bad message", "JPEG image data, EXIF standard 2.2", details.getMessage());
 		}
 	}
+
+	@Test
+	public void testCompiledNumberTests() throws Exception {
+		MagicEntries interpretedEntries = readInternalEntries();
+		MagicEntries compiledEntries = readInternalEntries();
+		compiledEntries.compileNumberTests();
+		assertSameMatches(compiledEntries, interpretedEntries, readCompareFiles());
+	}
+
+	@Test
+	public void testCompiledLoad() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		readInternalEntries().writeCompiledEntries(output);
+		MagicEntries compiledEntries = readCompiledEntries(output.toByteArray());
+		assertSameMatches(compiledEntries, readInternalEntries(), readCompareFiles());
+	}
+
+	/**
+	 * Check that the entries get the same results as the other entries for the files.
+	 */
+	private void assertSameMatches(MagicEntries entries, MagicEntries otherEntries, byte[][] files) {
+		for (byte[] file : files) {
+			ContentInfo info = entries.findMatch(file);
+			ContentInfo otherInfo = otherEntries.findMatch(file);
+			assertNotNull(info);
+			assertNotNull(otherInfo);
+			assertEquals(otherInfo.getName(), info.getName());
+			assertEquals(otherInfo.getMimeType(), info.getMimeType());
+			assertEquals(otherInfo.getMessage(), info.getMessage());
+		}
+	}
+
+	static byte[][] readCompareFiles() throws Exception {
+		byte[][] files = new byte[COMPARE_FILE_RESOURCES.length][];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = readResource(COMPARE_FILE_RESOURCES[i]);
+		}
+		return files;
+	}
+
+	static MagicEntries readInternalEntries() throws Exception {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(PerformanceTest.class.getResourceAsStream("/magic.gz"))));
+		try {
+			MagicEntries entries = new MagicEntries();
+			entries.readEntries(reader, null);
+			entries.optimizeFirstBytes();
+			return entries;
+		} finally {
+			reader.close();
+		}
+	}
+
+	static MagicEntries readCompiledEntries(byte[] compiled) throws Exception {
+		MagicEntries entries = new MagicEntries();
+		entries.readCompiledEntries(new ByteArrayInputStream(compiled));
+		entries.optimizeFirstBytes();
+		return entries;
+	}
+
+	private static byte[] readResource(String resource) throws Exception {
+		InputStream stream = PerformanceTest.class.getResourceAsStream(resource);
+		assertNotNull(stream);
+		try {
+			byte[] bytes = new byte[ContentInfoUtil.DEFAULT_READ_SIZE];
+			int numRead = stream.read(bytes);
+			assertTrue(numRead > 0);
+			return Arrays.copyOf(bytes, numRead);
+		} finally {
+			stream.close();
+		}
+	}
 }
@@ -17,6 +17,7 @@ public class BigEndianConverterTest {
 		Long result = converter.convertNumber(0, bytes, 8);
 		byte[] outBytes = converter.convertToByteArray(result, 8);
 		assertTrue(Arrays.equals(bytes, outBytes));
+		assertEquals(result.longValue(), converter.convertLong(0, bytes, 8));
 		assertNull(converter.convertNumber(0, bytes, bytes.length + 1));
 		assertNull(converter.convertNumber(-1, bytes, bytes.length));
 	}
@@ -17,6 +17,7 @@ public class MiddleEndianConverterTest {
 		long val = converter.convertNumber(0, bytes, 4);
 		// BADC: 2*2^24 + 1*2^16 + 4*2^8 + 3
 		assertEquals(33620995, val);
+		assertEquals(val, converter.convertLong(0, bytes, 4));
 		byte[] outBytes = converter.convertToByteArray(val, 4);
 		assertTrue(Arrays.equals(bytes, outBytes));
 		assertNull(converter.convertNumber(-1, bytes, 4));
@@ -0,0 +1,83 @@
+package com.j256.simplemagic.entries;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ByteScannerTest {
+
+	private static final String VERSIONED_DIRECTORY = "/META-INF/versions/17/";
+
+	@Test
+	public void testSkipPrintableAscii() {
+		byte[] bytes = new byte[20];
+		for (int pos = 0; pos < bytes.length; pos++) {
+			for (int value : new int[] { 0, '\n', 0x1F, 0x7F, 0x80, 0xC3, 0xFF }) {
+				fillPrintable(bytes);
+				bytes[pos] = (byte) value;
+				assertEquals(pos, ByteScanner.skipPrintableAscii(bytes, 0, bytes.length));
+				assertEquals(pos, ByteScanner.skipPrintableAscii(bytes, pos, bytes.length));
+				assertEquals(pos, ByteScanner.skipPrintableAscii(bytes, 0, pos));
+			}
+		}
+		fillPrintable(bytes);
+		assertEquals(bytes.length, ByteScanner.skipPrintableAscii(bytes, 3, bytes.length));
+	}
+
+	@Test
+	public void testIndexOf() {
+		byte[] bytes = new byte[20];
+		for (int pos = 0; pos < bytes.length; pos++) {
+			fillPrintable(bytes);
+			bytes[pos] = 'X';
+			assertEquals(pos, ByteScanner.indexOf(bytes, 0, bytes.length, (byte) 'x', (byte) 'X'));
+			assertEquals(pos, ByteScanner.indexOf(bytes, pos, bytes.length, (byte) 'X', (byte) 'X'));
+			assertEquals(-1, ByteScanner.indexOf(bytes, 0, pos, (byte) 'x', (byte) 'X'));
+			assertEquals(-1, ByteScanner.indexOf(bytes, pos + 1, bytes.length, (byte) 'x', (byte) 'X'));
+		}
+	}
+
+	@Test
+	public void testVersionedSameAsBase() throws Exception {
+		URL versionedUrl = getClass().getResource(VERSIONED_DIRECTORY);
+		if (versionedUrl == null || System.getProperty("java.specification.version").startsWith("1.")) {
+			// the versioned classes are only built with the java17-kernels profile and they need Java 17 to load
+			return;
+		}
+		// no parent so we get the versioned class instead of ours
+		ClassLoader loader = new URLClassLoader(new URL[] { versionedUrl }, null);
+		Class<?> versionedClass = loader.loadClass(ByteScanner.class.getName());
+		Method skipPrintableAscii =
+				versionedClass.getMethod("skipPrintableAscii", byte[].class, int.class, int.class);
+		Method indexOf = versionedClass.getMethod("indexOf", byte[].class, int.class, int.class, byte.class,
+				byte.class);
+		Random random = new Random(1);
+		byte[] bytes = new byte[40];
+		for (int i = 0; i < 10000; i++) {
+			fillPrintable(bytes);
+			// a few of the bytes are anything so the runs of printable characters are different lengths
+			for (int j = random.nextInt(3); j > 0; j--) {
+				bytes[random.nextInt(bytes.length)] = (byte) random.nextInt(256);
+			}
+			int start = random.nextInt(bytes.length);
+			int end = start + random.nextInt(bytes.length - start + 1);
+			assertEquals(ByteScanner.skipPrintableAscii(bytes, start, end),
+					skipPrintableAscii.invoke(null, bytes, start, end));
+			byte value = bytes[random.nextInt(bytes.length)];
+			byte otherValue = (byte) random.nextInt(256);
+			assertEquals(ByteScanner.indexOf(bytes, start, end, value, otherValue),
+					indexOf.invoke(null, bytes, start, end, value, otherValue));
+		}
+	}
+
+	private void fillPrintable(byte[] bytes) {
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (0x20 + i % 0x5F);
+		}
+	}
+}
@@ -292,6 +292,17 @@ public class FormatterTest {
 		formatToString(new MagicFormatter("%1000s"), "wow");
 	}
 
+	@Test
+	public void testBadExpressions() {
+		// no digits after the dot
+		assertEquals("a12b", formatToString(new MagicFormatter("a%.sb"), "12"));
+		// width is too large for an int
+		assertEquals("a12b", formatToString(new MagicFormatter("a%99999999999sb"), "12"));
+		// the suffix can't span lines so the format is left alone
+		assertEquals("a%s\nb", formatToString(new MagicFormatter("a%s\nb"), "12"));
+		assertEquals("a\n12b", formatToString(new MagicFormatter("a\n%sb"), "12"));
+	}
+
 	private String formatToString(MagicFormatter formatter, Object value) {
 		StringBuilder sb = new StringBuilder();
 		formatter.format(sb, value);
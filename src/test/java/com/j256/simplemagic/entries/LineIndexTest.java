@@ -0,0 +1,51 @@
+package com.j256.simplemagic.entries;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LineIndexTest {
+
+	@Test
+	public void testBasic() {
+		LineIndex index = new LineIndex("one\ntwo\r\nthree\rfour".getBytes());
+		assertEquals(0, index.getLineStart(0));
+		assertEquals(3, index.getLineEnd(0));
+		assertEquals(4, index.getLineStart(1));
+		assertEquals(7, index.getLineEnd(1));
+		assertEquals(9, index.getLineStart(2));
+		assertEquals(14, index.getLineEnd(2));
+		assertEquals(15, index.getLineStart(3));
+		assertEquals(19, index.getLineEnd(3));
+		assertEquals(-1, index.getLineStart(4));
+		assertEquals(-1, index.getLineEnd(4));
+		assertEquals(-1, index.getLineStart(-1));
+	}
+
+	@Test
+	public void testEmptyLines() {
+		LineIndex index = new LineIndex("\n\nx\n".getBytes());
+		assertEquals(0, index.getLineStart(0));
+		assertEquals(0, index.getLineEnd(0));
+		assertEquals(1, index.getLineStart(1));
+		assertEquals(2, index.getLineStart(2));
+		assertEquals(3, index.getLineEnd(2));
+		// like BufferedReader, there is no empty line after the last line-feed
+		assertEquals(-1, index.getLineStart(3));
+	}
+
+	@Test
+	public void testReset() {
+		LineIndex index = new LineIndex();
+		assertEquals(-1, index.getLineStart(0));
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			sb.append("line").append(i).append('\n');
+		}
+		index.reset(sb.toString().getBytes());
+		assertEquals(sb.indexOf("line99"), index.getLineStart(99));
+		index.reset("x".getBytes());
+		assertEquals(0, index.getLineStart(0));
+		assertEquals(-1, index.getLineStart(1));
+	}
+}
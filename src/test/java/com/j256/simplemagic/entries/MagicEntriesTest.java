@@ -0,0 +1,176 @@
+package com.j256.simplemagic.entries;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import com.j256.simplemagic.ContentInfo;
+import com.j256.simplemagic.ContentInfoUtil.ErrorCallBack;
+
+public class MagicEntriesTest {
+
+	@Test
+	public void testParallelSameAsSerial() throws Exception {
+		List<String> lines = readMagicLines();
+		List<List<String>> fileLines = new ArrayList<List<String>>();
+		fileLines.add(lines);
+		// the second file starts from the middle so its first lines are not top level
+		fileLines.add(lines.subList(lines.size() / 2 + 1, lines.size()));
+
+		MagicEntries serialEntries = new MagicEntries();
+		LocalErrorCallBack serialErrors = new LocalErrorCallBack();
+		serialEntries.readEntries(fileLines, serialErrors, null);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		MagicEntries parallelEntries = new MagicEntries();
+		LocalErrorCallBack parallelErrors = new LocalErrorCallBack();
+		try {
+			parallelEntries.readEntries(fileLines, parallelErrors, executor);
+		} finally {
+			executor.shutdown();
+		}
+
+		assertTrue(serialErrors.errors.size() > 0);
+		assertEquals(serialErrors.errors, parallelErrors.errors);
+		assertArrayEquals(compiledBytes(serialEntries), compiledBytes(parallelEntries));
+	}
+
+	@Test
+	public void testFilesNotLinked() throws Exception {
+		List<List<String>> fileLines = new ArrayList<List<String>>();
+		fileLines.add(Arrays.asList("0 string abc ABC data", "!:mime text/abc"));
+		fileLines.add(Arrays.asList(">3 string def DEF data", "!:mime text/def", "0 string ghi GHI data"));
+		MagicEntries entries = new MagicEntries();
+		LocalErrorCallBack errors = new LocalErrorCallBack();
+		entries.readEntries(fileLines, errors);
+
+		assertEquals(
+				Collections.singletonList(">3 string def DEF data: first entry of the file but the level 1 should be 0"),
+				errors.errors);
+		ContentInfo info = entries.findMatch("abcdef".getBytes());
+		assertNotNull(info);
+		assertEquals("text/abc", info.getMimeType());
+		assertEquals("ABC data", info.getMessage());
+		info = entries.findMatch("ghi".getBytes());
+		assertNotNull(info);
+		assertNull(info.getMimeType());
+	}
+
+	@Test
+	public void testNoStaleParents() throws Exception {
+		List<List<String>> fileLines = Collections.singletonList(Arrays.asList("0 string abc ABC data",
+				">3 string def DEF data", ">>6 string ghi GHI data", ">3 string xyz XYZ data",
+				">>>9 string jkl JKL data"));
+		MagicEntries entries = new MagicEntries();
+		LocalErrorCallBack errors = new LocalErrorCallBack();
+		entries.readEntries(fileLines, errors);
+
+		// the level 2 entry under the earlier level 1 entry is not the parent of the last line
+		assertEquals(Collections.singletonList(
+				">>>9 string jkl JKL data: entry has level 3 but no parent entry with level 2"), errors.errors);
+		ContentInfo info = entries.findMatch("abcdefghijkl".getBytes());
+		assertNotNull(info);
+		assertEquals("ABC data DEF data GHI data", info.getMessage());
+	}
+
+	@Test
+	public void testLazySameAsEager() throws Exception {
+		List<List<String>> fileLines = Collections.singletonList(readMagicLines());
+		MagicEntries eagerEntries = new MagicEntries();
+		eagerEntries.readEntries(fileLines, null);
+		eagerEntries.optimizeFirstBytes();
+		MagicEntries lazyEntries = new MagicEntries();
+		lazyEntries.setLazyParsing(true);
+		lazyEntries.readEntries(fileLines, null);
+		lazyEntries.optimizeFirstBytes();
+
+		byte[] gif = new byte[] { 'G', 'I', 'F', '8', '9', 'a', 0x10, 0, 0x20, 0 };
+		assertMatchEquals(eagerEntries.findMatch(gif), lazyEntries.findMatch(gif));
+		byte[] pdf = "%PDF-1.4\n".getBytes();
+		assertMatchEquals(eagerEntries.findMatch(pdf), lazyEntries.findMatch(pdf));
+
+		// the mime-types of the children are known before they are parsed
+		Set<String> mimeTypes = Collections.singleton("application/pdf");
+		MagicEntries lazyRestricted = lazyEntries.restrictToMimeTypes(mimeTypes);
+		assertMatchEquals(eagerEntries.restrictToMimeTypes(mimeTypes).findMatch(pdf), lazyRestricted.findMatch(pdf));
+		assertNull(lazyRestricted.findMatch(gif));
+
+		// writing the entries parses all of the children
+		assertArrayEquals(compiledBytes(eagerEntries), compiledBytes(lazyEntries));
+	}
+
+	@Test
+	public void testLazyErrors() throws Exception {
+		List<List<String>> fileLines = Collections.singletonList(
+				Arrays.asList("0 string abc ABC data", ">3 string", ">3 string def DEF data", "!:mime text/def"));
+		MagicEntries entries = new MagicEntries();
+		entries.setLazyParsing(true);
+		LocalErrorCallBack errors = new LocalErrorCallBack();
+		entries.readEntries(fileLines, errors);
+		entries.optimizeFirstBytes();
+		assertEquals(Collections.emptyList(), errors.errors);
+
+		// the mime-type of the child is found without parsing it
+		assertNotNull(entries.restrictToMimeTypes(Collections.singleton("text/def")).findMatch("abcdef".getBytes()));
+		ContentInfo info = entries.findMatch("abcdef".getBytes());
+		assertNotNull(info);
+		assertEquals("text/def", info.getMimeType());
+		assertEquals("ABC data DEF data", info.getMessage());
+		assertEquals(1, errors.errors.size());
+		assertTrue(errors.errors.get(0).startsWith(">3 string: "));
+	}
+
+	private List<String> readMagicLines() throws Exception {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(getClass().getResourceAsStream("/magic.gz"))));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	private void assertMatchEquals(ContentInfo expected, ContentInfo info) {
+		assertNotNull(expected);
+		assertNotNull(info);
+		assertEquals(expected.getName(), info.getName());
+		assertEquals(expected.getMimeType(), info.getMimeType());
+		assertEquals(expected.getMessage(), info.getMessage());
+	}
+
+	private byte[] compiledBytes(MagicEntries entries) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		entries.writeCompiledEntries(output);
+		return output.toByteArray();
+	}
+
+	private static class LocalErrorCallBack implements ErrorCallBack {
+		final List<String> errors = new ArrayList<String>();
+
+		@Override
+		public void error(String line, String details, Exception e) {
+			errors.add(line + ": " + details);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.j256.simplemagic.entries;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
@@ -111,11 +112,47 @@ public class MagicEntryParserTest {
 		assertNotNull(error.details);
 	}
 
+	@Test
+	public void testBadAddOffset() {
+		// no offset after the &
+		LocalErrorCallBack error = new LocalErrorCallBack();
+		assertNull(MagicEntryParser.parseLine(null, ">&   string   SONG   Format", error));
+		assertEquals("invalid offset number:", error.details);
+		assertNull(error.e);
+
+		error = new LocalErrorCallBack();
+		assertNull(MagicEntryParser.parseLine(null, ">(4.q+1)   string   SONG   Format", error));
+		assertEquals("invalid offset pattern: (4.q+1)", error.details);
+
+		error = new LocalErrorCallBack();
+		assertNull(MagicEntryParser.parseLine(null, ">0x100000000   string   SONG   Format", error));
+		assertEquals("invalid offset number:0x100000000", error.details);
+	}
+
+	@Test
+	public void testReuseParser() {
+		StringBuilder longFormat = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			longFormat.append(" word").append(i);
+		}
+		String[] lines = new String[] { "0   string   SONG   Format", ">-1   belong&0xff00   >0x10   \\b, %d", //
+				">>&(9.b+19)   byte   x   \\b.%c", ">>&(0x3c.l-4)   byte   !-010   %%done", //
+				">>&(8.S*16)   ubyte   0   ", ">0 \t string/c\ta\\ b  " + longFormat, }; //
+		MagicEntryParser parser = new MagicEntryParser();
+		// twice so the shared strings are used
+		for (int i = 0; i < 2; i++) {
+			for (String line : lines) {
+				MagicEntry entry = parser.parse(null, line, null);
+				assertNotNull(line, entry);
+				assertEquals(MagicEntryParser.parseLine(null, line, null).toString(), entry.toString());
+			}
+		}
+	}
+
 	private static class LocalErrorCallBack implements ErrorCallBack {
 		@SuppressWarnings("unused")
 		String line;
 		String details;
-		@SuppressWarnings("unused")
 		Exception e;
 
 		@Override
@@ -0,0 +1,73 @@
+package com.j256.simplemagic.entries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class MagicSourceGeneratorTest {
+
+	private static final File OUTPUT_TEST_DIR = new File("target/" + MagicSourceGeneratorTest.class.getSimpleName());
+
+	@Test
+	public void testStringSource() {
+		assertEquals("null", MagicSourceGenerator.stringSource(null));
+		assertEquals("\"\"", MagicSourceGenerator.stringSource(""));
+		assertEquals("\"PNG image\"", MagicSourceGenerator.stringSource("PNG image"));
+		assertEquals("\"\\\"\\\\\"", MagicSourceGenerator.stringSource("\"\\"));
+		assertEquals("\"\\211PNG\\015\\012\\000\"", MagicSourceGenerator.stringSource("\u0089PNG\r\n\0"));
+		assertEquals("\"\\u20ac\"", MagicSourceGenerator.stringSource("\u20ac"));
+	}
+
+	@Test
+	public void testGenerate() throws Exception {
+		String magic = "0 string \\x89PNG PNG image data\n" //
+				+ "!:mime image/png\n" //
+				+ ">16 belong >0 \\b, %d x\n" //
+				+ "0 search/1024 <html> HTML document\n" //
+				+ "0 regex/c ^#!.*python Python script\n";
+		MagicEntries entries = new MagicEntries();
+		entries.readEntries(new BufferedReader(new StringReader(magic)), null);
+		File packageDir = new File(OUTPUT_TEST_DIR, "com/j256/simplemagic/entries");
+		MagicSourceGenerator.generate(entries, OUTPUT_TEST_DIR, "TestMagicEntries");
+
+		String mainSource = readFile(new File(packageDir, "TestMagicEntries.java"));
+		assertTrue(mainSource.contains("BELONG_MATCHER = MagicType.matcherfromString(\"belong\")"));
+		assertTrue(mainSource.contains("TestMagicEntries0.addEntries(entries, levelParents)"));
+		assertFalse(new File(packageDir, "TestMagicEntries1.java").exists());
+
+		String partSource = readFile(new File(packageDir, "TestMagicEntries0.java"));
+		assertTrue(partSource.contains("newTestValue(StringOperator.EQUALS, \"\\211PNG\""));
+		assertTrue(partSource.contains("entry.setMimeType(\"image/png\")"));
+		assertTrue(partSource.contains("new NumberComparison((NumberType) TestMagicEntries.BELONG_MATCHER"));
+		assertTrue(partSource.contains("new PercentExpression(\"%d\""));
+		assertTrue(partSource.contains("((RegexType) TestMagicEntries.REGEX_MATCHER).newTestValue(\"^#!.*python\", 2"));
+	}
+
+	@Test
+	public void testGeneratedClassMissing() {
+		assertFalse(new MagicEntries().addGeneratedEntries(MagicSourceGeneratorTest.class.getPackage().getName()
+				+ ".NoSuchMagicEntries"));
+	}
+
+	private String readFile(File file) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line).append('\n');
+			}
+		} finally {
+			reader.close();
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,93 @@
+package com.j256.simplemagic.entries;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.j256.simplemagic.entries.MagicMatcher.MutableOffset;
+import com.j256.simplemagic.types.SearchType;
+
+public class MultiSearchTest {
+
+	@Test
+	public void testBasic() {
+		MultiSearch search = new MultiSearch();
+		int he = search.add("he");
+		int she = search.add("she");
+		int hers = search.add("hers");
+		search.build();
+
+		MultiSearch.Hits hits = new MultiSearch.Hits(search.getNumSearches());
+		search.findHits("ushers she".getBytes(), hits);
+		assertArrayEquals(new int[] { 2, 8 }, findOffsets(hits, he));
+		assertArrayEquals(new int[] { 1, 7 }, findOffsets(hits, she));
+		assertArrayEquals(new int[] { 2 }, findOffsets(hits, hers));
+
+		// the hits are cleared for the next content
+		search.findHits("hehe".getBytes(), hits);
+		assertArrayEquals(new int[] { 0, 2 }, findOffsets(hits, he));
+		assertArrayEquals(new int[0], findOffsets(hits, she));
+		assertArrayEquals(new int[0], findOffsets(hits, hers));
+	}
+
+	@Test
+	public void testWhitespaceAndCase() {
+		MultiSearch search = new MultiSearch();
+		int id = search.add("<?xml version");
+		assertEquals(id, search.add("<?XMLversion"));
+		search.build();
+
+		MultiSearch.Hits hits = new MultiSearch.Hits(search.getNumSearches());
+		search.findHits("  <? Xml\tVERSION <?xmlversion".getBytes(), hits);
+		assertArrayEquals(new int[] { 2, 17 }, findOffsets(hits, id));
+	}
+
+	@Test
+	public void testNotSearchable() {
+		MultiSearch search = new MultiSearch();
+		assertEquals(-1, search.add(" \t"));
+		assertEquals(-1, search.add("\u1234"));
+	}
+
+	@Test
+	public void testSameAsSearchType() {
+		String[] typeStrs = new String[] { "search/100", "search/1/b", "search/100/c", "search/1/cb", "search/100/B" };
+		String[] patterns = new String[] { "ab", "a b", "aB", " ab", "b  a", "abab", "\u00e0B" };
+		SearchType type = new SearchType();
+		byte[] chars = new byte[] { 'a', 'b', 'A', 'B', ' ', '\t', '\n', 'x', (byte) 0xC0, (byte) 0xE0 };
+		Random random = new Random(1234);
+		for (String typeStr : typeStrs) {
+			for (String pattern : patterns) {
+				Object info = type.convertTestString(typeStr, pattern);
+				MultiSearch search = new MultiSearch();
+				int id = search.add(type.getSearchString(info));
+				search.build();
+				MultiSearch.Hits hits = new MultiSearch.Hits(search.getNumSearches());
+				for (int i = 0; i < 200; i++) {
+					byte[] bytes = new byte[random.nextInt(30)];
+					for (int j = 0; j < bytes.length; j++) {
+						bytes[j] = chars[random.nextInt(chars.length)];
+					}
+					int offset = random.nextInt(5);
+					search.findHits(bytes, hits);
+					MutableOffset expectedOffset = new MutableOffset(offset);
+					Object expected = type.isMatch(info, null, false, null, expectedOffset, bytes);
+					MutableOffset mutableOffset = new MutableOffset(offset);
+					Object match = type.isSearchMatch(info, mutableOffset, bytes, hits.getOffsets(id),
+							hits.getNumOffsets(id), null);
+					String label = typeStr + " '" + pattern + "' in '" + new String(bytes) + "' at " + offset;
+					assertEquals(label, expected, match);
+					assertEquals(label, expectedOffset.offset, mutableOffset.offset);
+				}
+			}
+		}
+	}
+
+	private int[] findOffsets(MultiSearch.Hits hits, int id) {
+		return Arrays.copyOf(hits.getOffsets(id), hits.getNumOffsets(id));
+	}
+}
@@ -0,0 +1,65 @@
+package com.j256.simplemagic.entries;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class OffsetValueIndexTest {
+
+	@Test
+	public void testBasic() {
+		OffsetValueIndex index = new OffsetValueIndex();
+		index.add(2, false, new byte[] { 'a', 'b' }, null, 0);
+		index.add(2, false, new byte[] { 'c', 'd' }, null, 1);
+		index.add(1, false, new byte[] { 'x' }, null, 2);
+		index.add(2, false, new byte[] { 'a', 'b' }, null, 3);
+
+		assertArrayEquals(new int[] { 0, 3 }, findIndexes(index, new byte[] { 0, 0, 'a', 'b' }, 0));
+		assertArrayEquals(new int[] { 1, 2 }, findIndexes(index, new byte[] { 0, 'x', 'c', 'd', 'e' }, 0));
+		assertArrayEquals(new int[] { 2 }, findIndexes(index, new byte[] { 0, 'x', 'c' }, 0));
+		assertArrayEquals(new int[0], findIndexes(index, new byte[] { 0, 'y', 'a', 'c' }, 0));
+		assertArrayEquals(new int[0], findIndexes(index, new byte[0], 0));
+	}
+
+	@Test
+	public void testMask() {
+		OffsetValueIndex index = new OffsetValueIndex();
+		index.add(1, false, new byte[] { 0x12, 0x30 }, new byte[] { (byte) 0xFF, (byte) 0xF0 }, 0);
+		index.add(1, false, new byte[] { 0x12, 0x34 }, null, 1);
+		assertArrayEquals(new int[] { 0, 1 }, findIndexes(index, new byte[] { 0, 0x12, 0x34 }, 0));
+		assertArrayEquals(new int[] { 0 }, findIndexes(index, new byte[] { 0, 0x12, 0x3F }, 0));
+		assertArrayEquals(new int[0], findIndexes(index, new byte[] { 0, 0x13, 0x34 }, 0));
+	}
+
+	@Test
+	public void testAddOffset() {
+		OffsetValueIndex index = new OffsetValueIndex();
+		index.add(1, true, new byte[] { 'a' }, null, 0);
+		index.add(1, false, new byte[] { 'a' }, null, 1);
+		index.add(-1, true, new byte[] { 'b' }, null, 2);
+		assertArrayEquals(new int[] { 0, 2 }, findIndexes(index, new byte[] { 'b', 'b', 'x', 'a' }, 2));
+		assertArrayEquals(new int[] { 1 }, findIndexes(index, new byte[] { 'b', 'a', 'b', 'x' }, 2));
+		// negative offsets are left to the entries
+		assertArrayEquals(new int[] { 0, 1, 2 }, findIndexes(index, new byte[] { 'x', 'a' }, 0));
+	}
+
+	@Test
+	public void testManyValues() {
+		OffsetValueIndex index = new OffsetValueIndex();
+		for (int i = 0; i < 1000; i++) {
+			index.add(0, false, new byte[] { (byte) (i >> 8), (byte) i, 'a', 'b', 'c', 'd', 'e', 'f', 'g' }, null, i);
+		}
+		assertArrayEquals(new int[] { 513 },
+				findIndexes(index, new byte[] { 2, 1, 'a', 'b', 'c', 'd', 'e', 'f', 'z' }, 0));
+	}
+
+	private int[] findIndexes(OffsetValueIndex index, byte[] bytes, int prevOffset) {
+		int[] indexes = new int[1000];
+		int count = index.findIndexes(bytes, prevOffset, indexes, 0);
+		indexes = Arrays.copyOf(indexes, count);
+		Arrays.sort(indexes);
+		return indexes;
+	}
+}
@@ -0,0 +1,45 @@
+package com.j256.simplemagic.entries;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class PrefixTrieTest {
+
+	@Test
+	public void testBasic() {
+		PrefixTrie trie = new PrefixTrie();
+		trie.add(new byte[] { 'a', 'b', 'c' }, 0);
+		trie.add(new byte[] { 'a', 'b', 'd' }, 1);
+		trie.add(new byte[] { 'a' }, 2);
+		trie.add(new byte[] { 'b', 'c' }, 3);
+		trie.add(new byte[] { 'a', 'b', 'c' }, 4);
+
+		assertArrayEquals(new int[] { 0, 2, 4 }, findIndexes(trie, new byte[] { 'a', 'b', 'c', 'd' }));
+		assertArrayEquals(new int[] { 1, 2 }, findIndexes(trie, new byte[] { 'a', 'b', 'd' }));
+		assertArrayEquals(new int[] { 2 }, findIndexes(trie, new byte[] { 'a', 'b' }));
+		assertArrayEquals(new int[] { 3 }, findIndexes(trie, new byte[] { 'b', 'c' }));
+		assertArrayEquals(new int[0], findIndexes(trie, new byte[] { 'b' }));
+		assertArrayEquals(new int[0], findIndexes(trie, new byte[] { 'c' }));
+		assertArrayEquals(new int[0], findIndexes(trie, new byte[0]));
+	}
+
+	@Test
+	public void testHighBytes() {
+		PrefixTrie trie = new PrefixTrie();
+		trie.add(new byte[] { (byte) 0xFF, (byte) 0xD8 }, 0);
+		trie.add(new byte[] { (byte) 0xFF }, 1);
+		assertArrayEquals(new int[] { 0, 1 }, findIndexes(trie, new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF }));
+		assertArrayEquals(new int[] { 1 }, findIndexes(trie, new byte[] { (byte) 0xFF, (byte) 0xD9 }));
+	}
+
+	private int[] findIndexes(PrefixTrie trie, byte[] bytes) {
+		int[] indexes = new int[10];
+		int count = trie.findIndexes(bytes, indexes, 0);
+		indexes = Arrays.copyOf(indexes, count);
+		Arrays.sort(indexes);
+		return indexes;
+	}
+}
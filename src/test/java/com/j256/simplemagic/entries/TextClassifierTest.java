@@ -0,0 +1,106 @@
+package com.j256.simplemagic.entries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.j256.simplemagic.LineTerminator;
+import com.j256.simplemagic.TextEncoding;
+
+public class TextClassifierTest {
+
+	@Test
+	public void testClassify() throws Exception {
+		assertEquals(TextEncoding.ASCII, classify(new byte[0]));
+		assertEquals(TextEncoding.ASCII, classify("hello\r\n\tthere\f\u001B[0m".getBytes("US-ASCII")));
+		assertEquals(TextEncoding.UTF_8, classify("café €".getBytes("UTF-8")));
+		assertEquals(TextEncoding.ISO_8859, classify("cafés".getBytes("ISO-8859-1")));
+		assertEquals(TextEncoding.EXTENDED_ASCII, classify("“quoted”".getBytes("windows-1252")));
+		assertEquals(TextEncoding.UTF_16_BIG_ENDIAN, classify("﻿hello".getBytes("UTF-16BE")));
+		assertEquals(TextEncoding.UTF_16_LITTLE_ENDIAN, classify("﻿hello".getBytes("UTF-16LE")));
+		assertEquals(TextEncoding.BINARY, classify("hello\0there".getBytes("US-ASCII")));
+		assertEquals(TextEncoding.BINARY, classify(new byte[] { 'a', 0x7F }));
+		assertEquals(TextEncoding.BINARY, classify("﻿\u0001".getBytes("UTF-16BE")));
+		// without the byte-order mark the zero bytes are binary
+		assertEquals(TextEncoding.BINARY, classify("hello".getBytes("UTF-16BE")));
+	}
+
+	@Test
+	public void testTruncatedUtf8() throws Exception {
+		byte[] bytes = "café€".getBytes("UTF-8");
+		byte[] truncated = new byte[bytes.length - 1];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		assertEquals(TextEncoding.UTF_8, classify(truncated));
+		// but not in the middle where the 0x82 byte is not printable in ISO-8859
+		truncated[4] = 'x';
+		assertEquals(TextEncoding.EXTENDED_ASCII, classify(truncated));
+	}
+
+	@Test
+	public void testPrintableAscii() throws Exception {
+		byte[] bytes = "longer than a few words of printable ascii".getBytes("US-ASCII");
+		for (int i = 0; i < bytes.length; i++) {
+			byte[] copy = bytes.clone();
+			copy[i] = 0x7F;
+			assertEquals(TextEncoding.BINARY, classify(copy));
+			copy[i] = (byte) 0xFF;
+			assertEquals(TextEncoding.ISO_8859, classify(copy));
+		}
+		// an ASCII character in the middle of a UTF-8 character
+		assertEquals(TextEncoding.ISO_8859, classify(new byte[] { 'a', (byte) 0xC3, 'x', (byte) 0xA9, 'b' }));
+		assertEquals(TextEncoding.EXTENDED_ASCII, classify(new byte[] { (byte) 0xE2, (byte) 0x82, 'x', (byte) 0xAC }));
+		// the ASCII character after a cut off UTF-8 character is tested again
+		assertEquals(TextEncoding.BINARY, classify(new byte[] { 'a', (byte) 0xC3, 0x7F, 'b' }));
+	}
+
+	@Test
+	public void testLineTerminatorAfterLeadByte() throws Exception {
+		byte[] bytes = new byte[] { 'a', (byte) 0xC3, '\r', '\n', 'b', (byte) 0xC3, '\n', (byte) 0xA9 };
+		assertEquals(TextEncoding.ISO_8859, classify(bytes));
+		assertEquals(EnumSet.of(LineTerminator.CRLF, LineTerminator.LF), findLineTerminators(bytes));
+		bytes = new byte[] { (byte) 0xC3, '\r', (byte) 0xA9, 'a' };
+		assertEquals(TextEncoding.ISO_8859, classify(bytes));
+		assertEquals(EnumSet.of(LineTerminator.CR), findLineTerminators(bytes));
+	}
+
+	@Test
+	public void testLineTerminators() throws Exception {
+		assertEquals(Collections.emptySet(), findLineTerminators("no lines".getBytes("US-ASCII")));
+		assertEquals(EnumSet.of(LineTerminator.LF), findLineTerminators("a\nb\n".getBytes("US-ASCII")));
+		assertEquals(EnumSet.of(LineTerminator.CRLF), findLineTerminators("a\r\nb\r\n".getBytes("US-ASCII")));
+		assertEquals(EnumSet.of(LineTerminator.CR, LineTerminator.LF),
+				findLineTerminators("a\rb\n\r".getBytes("US-ASCII")));
+		assertEquals(EnumSet.of(LineTerminator.CRLF, LineTerminator.LF),
+				findLineTerminators("﻿a\r\nb\n".getBytes("UTF-16LE")));
+		assertEquals(Collections.emptySet(), findLineTerminators("a\nb\0".getBytes("US-ASCII")));
+	}
+
+	@Test
+	public void testIsText() {
+		assertTrue(TextClassifier.isText("<html"));
+		assertTrue(TextClassifier.isText("#!/bin/sh\n"));
+		assertFalse(TextClassifier.isText("PK\u0003\u0004"));
+		assertFalse(TextClassifier.isText("été"));
+		assertFalse(TextClassifier.isText("ሴ"));
+		assertFalse(TextEncoding.BINARY.isText());
+		assertTrue(TextEncoding.UTF_16_BIG_ENDIAN.isText());
+	}
+
+	private TextEncoding classify(byte[] bytes) {
+		TextClassifier classifier = new TextClassifier();
+		classifier.classify(bytes);
+		return classifier.getEncoding();
+	}
+
+	private Set<LineTerminator> findLineTerminators(byte[] bytes) {
+		TextClassifier classifier = new TextClassifier();
+		classifier.classify(bytes);
+		return classifier.getLineTerminators();
+	}
+}
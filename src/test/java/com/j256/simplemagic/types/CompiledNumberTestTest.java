@@ -0,0 +1,66 @@
+package com.j256.simplemagic.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.j256.simplemagic.endian.EndianType;
+import com.j256.simplemagic.entries.MagicMatcher.MutableOffset;
+
+public class CompiledNumberTestTest {
+
+	private static final String[] TESTS = new String[] { "5", "=0x7F", "!5", ">-3", "<0x80", ">0x7FFF", "<0xFFFFFFFF",
+			"&0x3", "^0x3", "~0x5", "-1" };
+	private static final Long[] AND_VALUES = new Long[] { null, 0xF0L, 0xFFFFFF00L };
+
+	@Test
+	public void testSameAsNumberType() {
+		BaseLongType[] types = new BaseLongType[] { new ByteType(), new ShortType(EndianType.BIG),
+				new ShortType(EndianType.LITTLE), new IntegerType(EndianType.BIG), new IntegerType(EndianType.LITTLE),
+				new LongType(EndianType.BIG), new LongType(EndianType.LITTLE), new UtcDateType(EndianType.BIG) };
+		Random random = new Random(1);
+		byte[] bytes = new byte[16];
+		for (BaseLongType type : types) {
+			for (String test : TESTS) {
+				Object testValue = type.convertTestString("type", test);
+				for (Long andValue : AND_VALUES) {
+					for (boolean unsignedType : new boolean[] { false, true }) {
+						CompiledNumberTest compiledTest = type.compileNumberTest(testValue, andValue, unsignedType);
+						assertNotNull(compiledTest);
+						for (int i = 0; i < 1000; i++) {
+							// small values make the matches more likely
+							for (int j = 0; j < bytes.length; j++) {
+								bytes[j] = (byte) (random.nextBoolean() ? random.nextInt() : random.nextInt(8));
+							}
+							int offset = random.nextInt(bytes.length);
+							Object val = type.extractValueFromBytes(offset, bytes, false);
+							boolean expected = (val != null && type.isMatch(testValue, andValue, unsignedType, val,
+									new MutableOffset(offset), bytes) != null);
+							assertEquals(type + " " + test + " " + andValue + " " + unsignedType, expected,
+									compiledTest.isMatch(bytes, offset));
+							if (val != null) {
+								// the primitive match must agree with the boxed one
+								assertTrue(val instanceof Number);
+								assertEquals(expected, ((BaseLongType) type).isLongMatch(testValue, andValue,
+										unsignedType, new MutableOffset(offset), bytes) != null);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNotCompiled() {
+		IntegerType middleType = new IntegerType(EndianType.MIDDLE);
+		assertNull(middleType.compileNumberTest(middleType.convertTestString("melong", "1"), null, false));
+		Id3LengthType id3Type = new Id3LengthType(EndianType.BIG);
+		assertNull(id3Type.compileNumberTest(id3Type.convertTestString("beid3", "1"), null, false));
+	}
+}
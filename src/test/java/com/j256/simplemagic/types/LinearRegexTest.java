@@ -0,0 +1,130 @@
+package com.j256.simplemagic.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class LinearRegexTest {
+
+	private static final String[] ATOMS = new String[] { "a", "b", "B", ".", "[ab]", "[^a]", "[a-c]", "\\s", "\\w",
+			"\\.", " ", "à" };
+	private static final String[] QUANTIFIERS = new String[] { "", "", "", "*", "+", "?", "{2}", "{1,3}", "{2,}" };
+	private static final char[] CHARS = new char[] { 'a', 'b', 'A', 'B', 'c', '.', ' ', '\t', 'à', 'À',
+			'\u0085' };
+
+	@Test
+	public void testBasic() {
+		LinearRegex regex = LinearRegex.compile("b+c", false);
+		assertNotNull(regex);
+		RegexState state = new RegexState();
+		byte[] bytes = "abbbcd".getBytes();
+		assertTrue(regex.find(bytes, 0, bytes.length, state));
+		assertEquals(1, state.matchStart);
+		assertEquals(5, state.matchEnd);
+		assertFalse(regex.find(bytes, 0, 4, state));
+	}
+
+	@Test
+	public void testAnchors() {
+		LinearRegex regex = LinearRegex.compile("^b|c$", false);
+		RegexState state = new RegexState();
+		byte[] bytes = "abcbc".getBytes();
+		assertTrue(regex.find(bytes, 1, bytes.length, state));
+		assertEquals(1, state.matchStart);
+		assertTrue(regex.find(bytes, 0, bytes.length, state));
+		assertEquals(4, state.matchStart);
+		assertFalse(regex.find(bytes, 0, 4, state));
+	}
+
+	@Test
+	public void testLongPattern() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			sb.append("a?");
+		}
+		sb.append('b');
+		LinearRegex regex = LinearRegex.compile(sb.toString(), false);
+		assertNotNull(regex);
+		RegexState state = new RegexState();
+		byte[] bytes = "xaab".getBytes();
+		assertTrue(regex.find(bytes, 0, bytes.length, state));
+		assertEquals(1, state.matchStart);
+		assertEquals(4, state.matchEnd);
+	}
+
+	@Test
+	public void testUnsupported() {
+		assertNull(LinearRegex.compile("(a)\\1", false));
+		assertNull(LinearRegex.compile("a*?", false));
+		assertNull(LinearRegex.compile("(?i)a", false));
+		assertNull(LinearRegex.compile("\\bword", false));
+		assertNull(LinearRegex.compile("(a*)*", false));
+		assertNull(LinearRegex.compile("[a&&b]", false));
+	}
+
+	@Test
+	public void testSameAsPattern() {
+		Random random = new Random(5678);
+		int numCompared = 0;
+		// the state is reused by the patterns like in the match context
+		RegexState state = new RegexState();
+		for (int i = 0; i < 2000; i++) {
+			String pattern = randomPattern(random, 2);
+			boolean caseInsensitive = random.nextBoolean();
+			LinearRegex regex = LinearRegex.compile(pattern, caseInsensitive);
+			if (regex == null) {
+				continue;
+			}
+			numCompared++;
+			Pattern expected = Pattern.compile(pattern, (caseInsensitive ? Pattern.CASE_INSENSITIVE : 0));
+			for (int j = 0; j < 20; j++) {
+				char[] chars = new char[random.nextInt(12)];
+				byte[] bytes = new byte[chars.length];
+				for (int k = 0; k < chars.length; k++) {
+					chars[k] = CHARS[random.nextInt(CHARS.length)];
+					bytes[k] = (byte) chars[k];
+				}
+				Matcher matcher = expected.matcher(new String(chars));
+				String label = "'" + pattern + "' in '" + new String(chars) + "'";
+				boolean found = matcher.find();
+				assertEquals(label, found, regex.find(bytes, 0, bytes.length, state));
+				if (found) {
+					assertEquals(label, matcher.start(), state.matchStart);
+					assertEquals(label, matcher.end(), state.matchEnd);
+				}
+			}
+		}
+		assertTrue(numCompared > 1000);
+	}
+
+	private String randomPattern(Random random, int depth) {
+		StringBuilder sb = new StringBuilder();
+		if (random.nextInt(5) == 0) {
+			sb.append('^');
+		}
+		int numAtoms = 1 + random.nextInt(3);
+		for (int i = 0; i < numAtoms; i++) {
+			if (depth > 0 && random.nextInt(4) == 0) {
+				sb.append('(').append(randomPattern(random, depth - 1)).append(')');
+			} else {
+				sb.append(ATOMS[random.nextInt(ATOMS.length)]);
+			}
+			sb.append(QUANTIFIERS[random.nextInt(QUANTIFIERS.length)]);
+		}
+		if (random.nextInt(5) == 0) {
+			sb.append('$');
+		}
+		if (random.nextInt(3) == 0) {
+			sb.append('|').append(randomPattern(random, depth - 1));
+		}
+		return sb.toString();
+	}
+}
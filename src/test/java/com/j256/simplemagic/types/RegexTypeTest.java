@@ -2,11 +2,17 @@ package com.j256.simplemagic.types;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
 
 import org.junit.Test;
 
+import com.j256.simplemagic.entries.LineIndex;
 import com.j256.simplemagic.entries.MagicFormatter;
 import com.j256.simplemagic.entries.MagicMatcher.MutableOffset;
+import com.j256.simplemagic.entries.MatchLimiter;
 
 public class RegexTypeTest {
 
@@ -30,6 +36,38 @@ public class RegexTypeTest {
 		assertEquals("helloa", renderValue(extracted, type, new MagicFormatter("%s")));
 	}
 
+	@Test
+	public void testFirstMatch() {
+		RegexType type = new RegexType();
+		Object test = type.convertTestString("regex", "[0-9.]+");
+		MutableOffset offset = new MutableOffset(0);
+		assertEquals("1.22", type.isMatch(test, null, false, null, offset, "version 1.22 or 3".getBytes()));
+		assertEquals(12, offset.offset);
+	}
+
+	@Test
+	public void testLineOffset() {
+		RegexType type = new RegexType();
+		Object test = type.convertTestString("regex", "b+");
+		byte[] bytes = "abb\r\nxbbb\nbb".getBytes();
+		MutableOffset offset = new MutableOffset(1);
+		assertEquals("bbb", type.isMatch(test, null, false, null, offset, bytes));
+		assertEquals(9, offset.offset);
+		offset = new MutableOffset(2);
+		assertEquals("bb", type.isMatch(test, null, false, null, offset, bytes));
+		assertEquals(12, offset.offset);
+		assertNull(type.isMatch(test, null, false, null, new MutableOffset(3), bytes));
+		assertNull(type.isMatch(test, null, false, null, new MutableOffset(0), new byte[0]));
+	}
+
+	@Test
+	public void testHighBytes() {
+		RegexType type = new RegexType();
+		Object test = type.convertTestString("regex", "a\\xe9+");
+		byte[] bytes = new byte[] { 'x', 'a', (byte) 0xE9, (byte) 0xE9, 'y' };
+		assertEquals("a\u00e9\u00e9", type.isMatch(test, null, false, null, new MutableOffset(0), bytes));
+	}
+
 	@Test
 	public void testExtractValueFromBytes() {
 		new RegexType().extractValueFromBytes(0, null, true);
@@ -40,4 +78,39 @@ public class RegexTypeTest {
 		type.renderValue(sb, extracted, formatter);
 		return sb.toString();
 	}
+
+	@Test
+	public void testOutOfTime() {
+		RegexType type = new RegexType();
+		byte[] bytes = new byte[10000];
+		Arrays.fill(bytes, (byte) 'x');
+		System.arraycopy("hello".getBytes(), 0, bytes, 9000, 5);
+		LineIndex lineIndex = new LineIndex(bytes);
+		// the linear matcher and the pattern, for the lazy quantifier, both check the time
+		for (String pattern : new String[] { "hel+o", "hel+?o" }) {
+			Object test = type.convertTestString("regex", pattern);
+			assertNotNull(type.isLineMatch(test, new MutableOffset(0), bytes, lineIndex, new RegexState()));
+			OutOfTimeLimiter limiter = new OutOfTimeLimiter();
+			assertNull(type.isLineMatch(test, new MutableOffset(0), bytes, lineIndex, new RegexState(limiter)));
+			assertTrue(limiter.numChecks > 0);
+		}
+	}
+
+	/**
+	 * Limiter which says that the time has run out.
+	 */
+	private static class OutOfTimeLimiter implements MatchLimiter {
+		int numChecks;
+
+		@Override
+		public boolean scanBytes(int numBytes) {
+			return true;
+		}
+
+		@Override
+		public boolean checkTime() {
+			numChecks++;
+			return false;
+		}
+	}
 }
@@ -2,10 +2,15 @@ package com.j256.simplemagic.types;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Test;
 
 import com.j256.simplemagic.entries.MagicMatcher.MutableOffset;
+import com.j256.simplemagic.entries.MatchLimiter;
 
 public class SearchTypeTest {
 
@@ -85,4 +90,78 @@ public class SearchTypeTest {
 		info = type.convertTestString("search/9/b", str);
 		assertEquals("hel l o", type.isMatch(info, null, false, null, new MutableOffset(1), bytes));
 	}
+
+	@Test
+	public void testShiftedSearch() {
+		String[] typeStrs =
+				new String[] { "search/3", "search/20", "search/20/c", "search/8/c", "search/20/B", "search/8/Bc" };
+		String[] patterns = new String[] { "a", "ab", "aab", "aBa", "abcab", "\\xe0b", "a\\ b", "b\\ \\ a" };
+		byte[] chars = new byte[] { 'a', 'b', 'c', 'A', 'B', ' ', (byte) 0xC0, (byte) 0xE0 };
+		SearchType type = new SearchType();
+		StringType stringType = new StringType();
+		Random random = new Random(4321);
+		for (String typeStr : typeStrs) {
+			for (String pattern : patterns) {
+				Object info = type.convertTestString(typeStr, pattern);
+				Object stringInfo = stringType.convertTestString(typeStr, pattern);
+				for (int i = 0; i < 200; i++) {
+					byte[] bytes = new byte[random.nextInt(30)];
+					for (int j = 0; j < bytes.length; j++) {
+						bytes[j] = chars[random.nextInt(chars.length)];
+					}
+					int startOffset = random.nextInt(5);
+					// try each of the offsets with the string type
+					MutableOffset expectedOffset = new MutableOffset(startOffset);
+					Object expected = null;
+					StringType.TestInfo testInfo = (StringType.TestInfo) info;
+					int end = Math.min(startOffset + testInfo.maxOffset + testInfo.pattern.length(), bytes.length);
+					for (int offset = startOffset; offset < end && expected == null; offset++) {
+						expectedOffset.offset = offset;
+						expected = stringType.isMatch(stringInfo, null, false, null, expectedOffset, bytes);
+					}
+					MutableOffset mutableOffset = new MutableOffset(startOffset);
+					Object match = type.isMatch(info, null, false, null, mutableOffset, bytes);
+					String label = typeStr + " '" + pattern + "' in " + Arrays.toString(bytes) + " at " + startOffset;
+					assertEquals(label, expected, match);
+					if (expected != null) {
+						assertEquals(label, expectedOffset.offset, mutableOffset.offset);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testOutOfTime() {
+		SearchType type = new SearchType();
+		byte[] bytes = new byte[10000];
+		Arrays.fill(bytes, (byte) 'x');
+		System.arraycopy("hello".getBytes(), 0, bytes, 9000, 5);
+		// both the shifted search and the search that tries every offset check the time
+		for (String typeStr : new String[] { "search/10000", "search/10000/w" }) {
+			Object info = type.convertTestString(typeStr, "hello");
+			assertEquals("hello", type.isSearchMatch(info, new MutableOffset(0), bytes, null));
+			OutOfTimeLimiter limiter = new OutOfTimeLimiter();
+			assertNull(type.isSearchMatch(info, new MutableOffset(0), bytes, limiter));
+			assertTrue(limiter.numChecks > 0);
+		}
+	}
+
+	/**
+	 * Limiter which says that the time has run out.
+	 */
+	private static class OutOfTimeLimiter implements MatchLimiter {
+		int numChecks;
+
+		@Override
+		public boolean scanBytes(int numBytes) {
+			return true;
+		}
+
+		@Override
+		public boolean checkTime() {
+			numChecks++;
+			return false;
+		}
+	}
 }
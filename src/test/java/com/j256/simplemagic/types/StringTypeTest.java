@@ -1,8 +1,11 @@
 package com.j256.simplemagic.types;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.StringReader;
@@ -76,6 +79,31 @@ public class StringTypeTest {
 		assertNull(type.isMatch(info, null, false, extract, new MutableOffset(0), bytes));
 	}
 
+	@Test
+	public void testCaseInsensitiveHighBytes() {
+		StringType type = new StringType();
+		Object info = type.convertTestString("string/c", "caf\u00e9S");
+		byte[] bytes = new byte[] { 'C', 'A', 'F', (byte) 0xC9, 'S', 'x' };
+		MutableOffset offset = new MutableOffset(0);
+		assertEquals("CAF\u00c9S", type.isMatch(info, null, false, null, offset, bytes));
+		assertEquals(5, offset.offset);
+		bytes = new byte[] { 'c', 'a', 'f', (byte) 0xE9, 's' };
+		assertNull(type.isMatch(info, null, false, null, new MutableOffset(0), bytes));
+		bytes = new byte[] { 'c', 'a', 'f', (byte) 0xE9 };
+		assertNull(type.isMatch(info, null, false, null, new MutableOffset(0), bytes));
+	}
+
+	@Test
+	public void testExactMatchReturnsPattern() {
+		StringType type = new StringType();
+		Object info = type.convertTestString("string", "\\x89PNG");
+		byte[] bytes = new byte[] { 'x', (byte) 0x89, 'P', 'N', 'G' };
+		MutableOffset offset = new MutableOffset(1);
+		assertSame(info.toString(), type.isMatch(info, null, false, null, offset, bytes));
+		assertEquals(5, offset.offset);
+		assertNull(type.isMatch(info, null, false, null, new MutableOffset(2), bytes));
+	}
+
 	@Test
 	public void testCompactWhitespace() {
 		StringType type = new StringType();
@@ -218,4 +246,15 @@ public class StringTypeTest {
 		new ContentInfoUtil(reader);
 	}
 
+	@Test
+	public void testTextTest() {
+		StringType type = new StringType();
+		// like file(1), text patterns are not text tests since binary formats often start with text
+		assertFalse(type.isTextTest(type.convertTestString("string", "hello")));
+		assertTrue(type.isTextTest(type.convertTestString("string/t", "hello")));
+		SearchType searchType = new SearchType();
+		assertTrue(searchType.isTextTest(searchType.convertTestString("search/10", "hello")));
+		assertFalse(searchType.isTextTest(searchType.convertTestString("search/10", "\\0hello")));
+		assertTrue(searchType.isTextTest(searchType.convertTestString("search/10/t", "\\0hello")));
+	}
 }